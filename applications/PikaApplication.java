@@ -2,9 +2,15 @@ package applications;
 
 import java.io.File;
 
+import asmCodeGenerator.codeStorage.ASMBinaryFormat;
+
 public class PikaApplication {
 	private static final int EXIT_CODE_FOR_ERROR = 1;
 	private static String outputDirectory = "output/";
+	
+	// -Dpika.binaryASM=true makes the compiler and optimizer write binary .asmb
+	// files, for handing code from one to the other; text is for the emulator.
+	protected static boolean writesBinaryASM = Boolean.getBoolean("pika.binaryASM");
 
 	public PikaApplication() {
 		super();
@@ -51,6 +57,9 @@ public class PikaApplication {
 	protected static String outputFilename(String filename) {
 		return outputDirectory + basename(filename) + ".asm";
 	}
+	protected static String binaryOutputFilename(String filename) {
+		return outputDirectory + basename(filename) + ASMBinaryFormat.EXTENSION;
+	}
 	// removes preceding directory names and the file extension
 	// e.g. /usr/root/tricks/bigBag.cpp  ->  bigBag
 	protected static String basename(String filename) {
@@ -3,11 +3,14 @@ package applications;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.PrintStream;
 
 import optimizer.Optimizer;
+import astOptimizer.ASTOptimizer;
+import astOptimizer.ProgramEvaluator;
 import asmCodeGenerator.ASMCodeGenerator;
+import asmCodeGenerator.PrecomputedOutputGenerator;
 import asmCodeGenerator.codeStorage.ASMCodeFragment;
+import asmCodeGenerator.codeStorage.ASMWriter;
 import lexicalAnalyzer.LexicalAnalyzer;
 import lexicalAnalyzer.Scanner;
 import parseTree.ParseNode;
@@ -16,6 +19,10 @@ import semanticAnalyzer.SemanticAnalyzer;
 import tokens.Tokens;
 
 public class PikaCompiler extends PikaApplication {
+	// largest number of AST nodes to evaluate at compile time; 0 turns evaluation off.
+	private static int evaluationStepBudget = 
+			Integer.getInteger("pika.evaluationSteps", ProgramEvaluator.DEFAULT_STEP_BUDGET);
+	
 	/** Compiles a Pika file.
 	 * @param args
 	 * @throws FileNotFoundException 
@@ -41,7 +48,7 @@ public class PikaCompiler extends PikaApplication {
 
 	private static void generateCodeIfNoErrors(String filename, ParseNode decoratedTree)
 			throws FileNotFoundException {
-		String outfile = outputFilename(filename);
+		String outfile = writesBinaryASM ? binaryOutputFilename(filename) : outputFilename(filename);
 		
 		if(thereAreErrors()) {
 			stopProcessing(outfile);
@@ -67,19 +74,35 @@ public class PikaCompiler extends PikaApplication {
 		}
 	}
 	
+	public static void setEvaluationStepBudget(int stepBudget) {
+		evaluationStepBudget = stepBudget;
+	}
+	
 	// normal code generation and optimization.
 	private static void generateOptimizeAndPrintCode(String outfile, ParseNode decoratedTree) 
 			throws FileNotFoundException {
-		ASMCodeFragment code = ASMCodeGenerator.generate(decoratedTree);
+		ASMCodeFragment code = generateCode(decoratedTree);
 		ASMCodeFragment optimized = Optimizer.optimize(code);
 		printCodeToFile(outfile, optimized);
 	}
-	private static void printCodeToFile(String filename, ASMCodeFragment code)
-			throws FileNotFoundException {
-		File file = new File(filename);
-		PrintStream out = new PrintStream(file);
-		out.print(code);
-		out.close();
+	/** The code for a decorated tree without errors, before the ASM optimizer.  A program
+	 *  whose output can be computed here compiles to a program that prints that output.
+	 */
+	public static ASMCodeFragment generateCode(ParseNode decoratedTree) {
+		String output = ProgramEvaluator.evaluate(decoratedTree, evaluationStepBudget);
+		if(output != null) {
+			return PrecomputedOutputGenerator.generate(output);
+		}
+		ParseNode optimizedTree = ASTOptimizer.optimize(decoratedTree);
+		return ASMCodeGenerator.generate(optimizedTree);
+	}
+	private static void printCodeToFile(String filename, ASMCodeFragment code) {
+		if(writesBinaryASM) {
+			code.writeBinaryTo(filename, true);
+		}
+		else {
+			ASMWriter.writeToFileInParallel(filename, code);
+		}
 	}
 
 	private static boolean thereAreErrors() {
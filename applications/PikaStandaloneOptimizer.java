@@ -3,10 +3,11 @@ package applications;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.PrintStream;
 
 import optimizer.Optimizer;
+import asmCodeGenerator.codeStorage.ASMBinaryFormat;
 import asmCodeGenerator.codeStorage.ASMCodeFragment;
+import asmCodeGenerator.codeStorage.ASMWriter;
 import tokens.Tokens;
 
 public class PikaStandaloneOptimizer extends PikaApplication {
@@ -34,8 +35,7 @@ public class PikaStandaloneOptimizer extends PikaApplication {
 
 	private static void writeCodeIfNoErrors(String filename, ASMCodeFragment fragment)
 			throws FileNotFoundException {
-		String outfile = filename + "o";		// foo.asm -> foo.asmo
-		//String outfile = filename;		// foo.asm -> foo.asmo
+		String outfile = optimizedFilename(filename);
 		
 		if(thereAreErrors()) {
 			stopProcessing(outfile);
@@ -46,6 +46,15 @@ public class PikaStandaloneOptimizer extends PikaApplication {
 		}
 	}
 
+	// foo.asm or foo.asmb -> foo.asmo, or foo.opt.asmb if writing binary.
+	private static String optimizedFilename(String filename) {
+		int extensionStart = filename.lastIndexOf('.');
+		String stem = extensionStart > Math.max(filename.lastIndexOf('/'), filename.lastIndexOf('\\'))
+				? filename.substring(0, extensionStart)
+				: filename;
+		return writesBinaryASM ? stem + ".opt" + ASMBinaryFormat.EXTENSION : stem + ".asmo";
+	}
+
 	// stopProcessing -- inform user and clean up.
 	private static void stopProcessing(String outfile) {
 		informUserNoCodeGenerated();
@@ -61,12 +70,13 @@ public class PikaStandaloneOptimizer extends PikaApplication {
 		}
 	}
 	
-	private static void printCodeToFile(String filename, ASMCodeFragment code)
-			throws FileNotFoundException {
-		File file = new File(filename);
-		PrintStream out = new PrintStream(file);
-		out.print(code);
-		out.close();
+	private static void printCodeToFile(String filename, ASMCodeFragment code) {
+		if(writesBinaryASM) {
+			code.writeBinaryTo(filename, true);
+		}
+		else {
+			ASMWriter.writeToFileInParallel(filename, code);
+		}
 	}
 
 	private static boolean thereAreErrors() {
@@ -15,4 +15,64 @@ public class FixtureDefinitions {
 
 	public static final String SEMANTIC_INPUT_FILENAME          = FIXTURE_DIRECTORY + "coinTest.pika";
 	public static final String SEMANTIC_EXPECTED_FILENAME       = FIXTURE_DIRECTORY + "coinTestSemantics.txt";
+
+	public static final String CSE_INPUT_FILENAME               = FIXTURE_DIRECTORY + "cseTest.pika";
+	public static final String CSE_EXPECTED_FILENAME            = FIXTURE_DIRECTORY + "cseTestOutput.txt";
+
+	public static final String ALGEBRAIC_INPUT_FILENAME         = FIXTURE_DIRECTORY + "algebraicTest.pika";
+	public static final String ALGEBRAIC_EXPECTED_FILENAME      = FIXTURE_DIRECTORY + "algebraicTestOutput.txt";
+
+	public static final String VALUE_RANGE_INPUT_FILENAME       = FIXTURE_DIRECTORY + "valueRangeTest.pika";
+	public static final String VALUE_RANGE_EXPECTED_FILENAME    = FIXTURE_DIRECTORY + "valueRangeTestOutput.txt";
+
+	public static final String JUMPING_CODE_INPUT_FILENAME      = FIXTURE_DIRECTORY + "jumpingCodeTest.pika";
+	public static final String JUMPING_CODE_EXPECTED_FILENAME   = FIXTURE_DIRECTORY + "jumpingCodeTestOutput.txt";
+
+	public static final String EVALUATOR_INPUT_FILENAME         = FIXTURE_DIRECTORY + "evaluatorTest.pika";
+	public static final String EVALUATOR_EXPECTED_FILENAME      = FIXTURE_DIRECTORY + "evaluatorTestOutput.txt";
+
+	public static final String PRINT_INPUT_FILENAME             = FIXTURE_DIRECTORY + "printTest.pika";
+	public static final String PRINT_EXPECTED_FILENAME          = FIXTURE_DIRECTORY + "printTestOutput.txt";
+
+	public static final String INFINITY_INPUT_FILENAME          = FIXTURE_DIRECTORY + "infinityTest.pika";
+	public static final String INFINITY_EXPECTED_FILENAME       = FIXTURE_DIRECTORY + "infinityTestOutput.txt";
+
+	public static final String STRING_POOL_INPUT_FILENAME       = FIXTURE_DIRECTORY + "stringPoolTest.pika";
+	public static final String STRING_POOL_EXPECTED_FILENAME    = FIXTURE_DIRECTORY + "stringPoolTestOutput.txt";
+
+	public static final String NESTING_INPUT_FILENAME           = FIXTURE_DIRECTORY + "nestingTest.pika";
+	public static final String NESTING_EXPECTED_FILENAME        = FIXTURE_DIRECTORY + "nestingTestOutput.txt";
+
+	public static final String PEEPHOLE_INPUT_FILENAME          = FIXTURE_DIRECTORY + "peepholeTest.asm";
+	public static final String PEEPHOLE_EXPECTED_FILENAME       = FIXTURE_DIRECTORY + "peepholeTestOutput.txt";
+
+	public static final String UNREACHABLE_CODE_INPUT_FILENAME  = FIXTURE_DIRECTORY + "unreachableCodeTest.asm";
+	public static final String UNREACHABLE_CODE_EXPECTED_FILENAME = FIXTURE_DIRECTORY + "unreachableCodeTestOutput.txt";
+
+	public static final String JUMP_THREADING_INPUT_FILENAME    = FIXTURE_DIRECTORY + "jumpThreadingTest.asm";
+	public static final String JUMP_THREADING_EXPECTED_FILENAME = FIXTURE_DIRECTORY + "jumpThreadingTestOutput.txt";
+
+	public static final String CONSTANT_FOLDING_INPUT_FILENAME  = FIXTURE_DIRECTORY + "constantFoldingTest.asm";
+	public static final String CONSTANT_FOLDING_EXPECTED_FILENAME = FIXTURE_DIRECTORY + "constantFoldingTestOutput.txt";
+
+	public static final String FLOAT_OPERAND_INPUT_FILENAME     = FIXTURE_DIRECTORY + "floatOperandTest.pika";
+	public static final String FLOAT_OPERAND_EXPECTED_FILENAME  = FIXTURE_DIRECTORY + "floatOperandTestOutput.txt";
+
+	public static final String DEAD_STORE_INPUT_FILENAME        = FIXTURE_DIRECTORY + "deadStoreTest.asm";
+	public static final String DEAD_STORE_EXPECTED_FILENAME     = FIXTURE_DIRECTORY + "deadStoreTestOutput.txt";
+
+	public static final String STORE_FORWARDING_INPUT_FILENAME  = FIXTURE_DIRECTORY + "storeForwardingTest.asm";
+	public static final String STORE_FORWARDING_EXPECTED_FILENAME = FIXTURE_DIRECTORY + "storeForwardingTestOutput.txt";
+
+	public static final String VALUE_NUMBERING_INPUT_FILENAME   = FIXTURE_DIRECTORY + "valueNumberingTest.asm";
+	public static final String VALUE_NUMBERING_EXPECTED_FILENAME = FIXTURE_DIRECTORY + "valueNumberingTestOutput.txt";
+
+	public static final String TREE_SHAKING_INPUT_FILENAME      = FIXTURE_DIRECTORY + "treeShakingTest.asm";
+	public static final String TREE_SHAKING_EXPECTED_FILENAME   = FIXTURE_DIRECTORY + "treeShakingTestOutput.txt";
+
+	public static final String BLOCK_LAYOUT_INPUT_FILENAME      = FIXTURE_DIRECTORY + "blockLayoutTest.asm";
+	public static final String BLOCK_LAYOUT_EXPECTED_FILENAME   = FIXTURE_DIRECTORY + "blockLayoutTestOutput.txt";
+
+	public static final String INLINING_INPUT_FILENAME          = FIXTURE_DIRECTORY + "inliningTest.asm";
+	public static final String INLINING_EXPECTED_FILENAME       = FIXTURE_DIRECTORY + "inliningTestOutput.txt";
 }
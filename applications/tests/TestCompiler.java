@@ -0,0 +1,123 @@
+package applications.tests;
+
+import static applications.tests.FixtureDefinitions.CSE_INPUT_FILENAME;
+import static applications.tests.FixtureDefinitions.CSE_EXPECTED_FILENAME;
+import static applications.tests.FixtureDefinitions.ALGEBRAIC_INPUT_FILENAME;
+import static applications.tests.FixtureDefinitions.ALGEBRAIC_EXPECTED_FILENAME;
+import static applications.tests.FixtureDefinitions.VALUE_RANGE_INPUT_FILENAME;
+import static applications.tests.FixtureDefinitions.VALUE_RANGE_EXPECTED_FILENAME;
+import static applications.tests.FixtureDefinitions.JUMPING_CODE_INPUT_FILENAME;
+import static applications.tests.FixtureDefinitions.JUMPING_CODE_EXPECTED_FILENAME;
+import static applications.tests.FixtureDefinitions.EVALUATOR_INPUT_FILENAME;
+import static applications.tests.FixtureDefinitions.EVALUATOR_EXPECTED_FILENAME;
+import static applications.tests.FixtureDefinitions.PRINT_INPUT_FILENAME;
+import static applications.tests.FixtureDefinitions.PRINT_EXPECTED_FILENAME;
+import static applications.tests.FixtureDefinitions.INFINITY_INPUT_FILENAME;
+import static applications.tests.FixtureDefinitions.INFINITY_EXPECTED_FILENAME;
+import static applications.tests.FixtureDefinitions.STRING_POOL_INPUT_FILENAME;
+import static applications.tests.FixtureDefinitions.STRING_POOL_EXPECTED_FILENAME;
+import static applications.tests.FixtureDefinitions.NESTING_INPUT_FILENAME;
+import static applications.tests.FixtureDefinitions.NESTING_EXPECTED_FILENAME;
+import static applications.tests.FixtureDefinitions.FLOAT_OPERAND_INPUT_FILENAME;
+import static applications.tests.FixtureDefinitions.FLOAT_OPERAND_EXPECTED_FILENAME;
+
+import lexicalAnalyzer.LexicalAnalyzer;
+import optimizer.Optimizer;
+import parseTree.ParseNode;
+import parser.Parser;
+import semanticAnalyzer.SemanticAnalyzer;
+import tests.ASMEmulator;
+import tests.FileFixturesTestCase;
+import applications.PikaCompiler;
+import asmCodeGenerator.codeStorage.ASMCodeFragment;
+import astOptimizer.ASTOptimizer;
+import astOptimizer.AlgebraicSimplifier;
+import astOptimizer.ProgramEvaluator;
+
+// Compiles fixture programs and runs them on ASMEmulator.  Each program must
+// print its expected output whether it is evaluated at compile time or not,
+// and both before and after the ASM optimizer.
+public class TestCompiler extends FileFixturesTestCase {
+	private static final int[] EVALUATION_STEP_BUDGETS = { 0, ProgramEvaluator.DEFAULT_STEP_BUDGET };
+
+	public void testCommonSubexpressions() throws Exception {
+		compilerSingleTest(CSE_INPUT_FILENAME, CSE_EXPECTED_FILENAME);
+	}
+	public void testAlgebraicSimplification() throws Exception {
+		compilerSingleTest(ALGEBRAIC_INPUT_FILENAME, ALGEBRAIC_EXPECTED_FILENAME);
+		assertTrue(AlgebraicSimplifier.simplify(decoratedTreeFor(ALGEBRAIC_INPUT_FILENAME)) > 0);
+	}
+	// the divisor that may be zero keeps its check.
+	public void testValueRanges() throws Exception {
+		compilerSingleTest(VALUE_RANGE_INPUT_FILENAME, VALUE_RANGE_EXPECTED_FILENAME);
+		ASTOptimizer optimizer = new ASTOptimizer(decoratedTreeFor(VALUE_RANGE_INPUT_FILENAME));
+		optimizer.optimize();
+		assertTrue(optimizer.getDivisionChecksRemoved() > 0);
+	}
+	public void testJumpingCode() throws Exception {
+		compilerSingleTest(JUMPING_CODE_INPUT_FILENAME, JUMPING_CODE_EXPECTED_FILENAME);
+	}
+	// the evaluated program just prints.
+	public void testCompileTimeEvaluation() throws Exception {
+		compilerSingleTest(EVALUATOR_INPUT_FILENAME, EVALUATOR_EXPECTED_FILENAME);
+		String code = codeFor(EVALUATOR_INPUT_FILENAME, ProgramEvaluator.DEFAULT_STEP_BUDGET).toString();
+		assertFalse(code.contains("FDivide"));
+		assertFalse(code.contains("Multiply"));
+	}
+	// what is printed before a division by zero is printed before it halts.
+	public void testPrintStatements() throws Exception {
+		compilerSingleTest(PRINT_INPUT_FILENAME, PRINT_EXPECTED_FILENAME);
+	}
+	// infinite literals are printed by Printf, not put in the format.
+	public void testInfiniteLiterals() throws Exception {
+		compilerSingleTest(INFINITY_INPUT_FILENAME, INFINITY_EXPECTED_FILENAME);
+	}
+	// "hi" is stored once.
+	public void testStringPool() throws Exception {
+		compilerSingleTest(STRING_POOL_INPUT_FILENAME, STRING_POOL_EXPECTED_FILENAME);
+		String code = codeFor(STRING_POOL_INPUT_FILENAME, 0).toString();
+		assertEquals(1, occurrences(code, "%% \"hi\""));
+	}
+	public void testNestedBlocksAndExpressions() throws Exception {
+		compilerSingleTest(NESTING_INPUT_FILENAME, NESTING_EXPECTED_FILENAME);
+	}
+	// the literals print and compute as their six-digit text, optimized or not.
+	public void testInexactFloatingOperands() throws Exception {
+		compilerSingleTest(FLOAT_OPERAND_INPUT_FILENAME, FLOAT_OPERAND_EXPECTED_FILENAME);
+	}
+
+	public void compilerSingleTest(String inputFilename, String expectedFilename) throws Exception {
+		String expectedOutput = programOutput(getContents(expectedFilename));
+		for(int stepBudget: EVALUATION_STEP_BUDGETS) {
+			ASMCodeFragment code = codeFor(inputFilename, stepBudget);
+			assertEquals(expectedOutput, ASMEmulator.outputOf(code));
+			assertEquals(expectedOutput, ASMEmulator.outputOf(Optimizer.optimize(code)));
+		}
+	}
+	// the code for a program, before the ASM optimizer.
+	public static ASMCodeFragment codeFor(String filename, int evaluationStepBudget) throws Exception {
+		ParseNode decoratedTree = decoratedTreeFor(filename);
+		PikaCompiler.setEvaluationStepBudget(evaluationStepBudget);
+		try {
+			return PikaCompiler.generateCode(decoratedTree);
+		}
+		finally {
+			PikaCompiler.setEvaluationStepBudget(ProgramEvaluator.DEFAULT_STEP_BUDGET);
+		}
+	}
+	public static ParseNode decoratedTreeFor(String filename) throws Exception {
+		ParseNode syntaxTree = Parser.parse(LexicalAnalyzer.make(filename));
+		return SemanticAnalyzer.analyze(syntaxTree);
+	}
+	// fixtures have the tree's line ends; programs print "\n".
+	public static String programOutput(String fixtureContents) {
+		return fixtureContents.replace("\r\n", "\n");
+	}
+	private static int occurrences(String text, String part) {
+		int result = 0;
+		for(int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1)) {
+			result++;
+		}
+		return result;
+	}
+}
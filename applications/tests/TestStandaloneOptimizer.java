@@ -0,0 +1,181 @@
+package applications.tests;
+
+import static applications.tests.FixtureDefinitions.PEEPHOLE_INPUT_FILENAME;
+import static applications.tests.FixtureDefinitions.PEEPHOLE_EXPECTED_FILENAME;
+import static applications.tests.FixtureDefinitions.UNREACHABLE_CODE_INPUT_FILENAME;
+import static applications.tests.FixtureDefinitions.UNREACHABLE_CODE_EXPECTED_FILENAME;
+import static applications.tests.FixtureDefinitions.JUMP_THREADING_INPUT_FILENAME;
+import static applications.tests.FixtureDefinitions.JUMP_THREADING_EXPECTED_FILENAME;
+import static applications.tests.FixtureDefinitions.CONSTANT_FOLDING_INPUT_FILENAME;
+import static applications.tests.FixtureDefinitions.CONSTANT_FOLDING_EXPECTED_FILENAME;
+import static applications.tests.FixtureDefinitions.DEAD_STORE_INPUT_FILENAME;
+import static applications.tests.FixtureDefinitions.DEAD_STORE_EXPECTED_FILENAME;
+import static applications.tests.FixtureDefinitions.STORE_FORWARDING_INPUT_FILENAME;
+import static applications.tests.FixtureDefinitions.STORE_FORWARDING_EXPECTED_FILENAME;
+import static applications.tests.FixtureDefinitions.VALUE_NUMBERING_INPUT_FILENAME;
+import static applications.tests.FixtureDefinitions.VALUE_NUMBERING_EXPECTED_FILENAME;
+import static applications.tests.FixtureDefinitions.TREE_SHAKING_INPUT_FILENAME;
+import static applications.tests.FixtureDefinitions.TREE_SHAKING_EXPECTED_FILENAME;
+import static applications.tests.FixtureDefinitions.BLOCK_LAYOUT_INPUT_FILENAME;
+import static applications.tests.FixtureDefinitions.BLOCK_LAYOUT_EXPECTED_FILENAME;
+import static applications.tests.FixtureDefinitions.INLINING_INPUT_FILENAME;
+import static applications.tests.FixtureDefinitions.INLINING_EXPECTED_FILENAME;
+import static asmCodeGenerator.codeStorage.ASMOpcode.*;
+
+import java.util.Map;
+
+import optimizer.Optimizer;
+import tests.ASMEmulator;
+import tests.FileFixturesTestCase;
+import asmCodeGenerator.codeStorage.ASMCodeFragment;
+import asmCodeGenerator.codeStorage.ASMReader;
+import asmCodeGenerator.codeStorage.LabelTable;
+import asmCodeGenerator.runtime.MemoryManager;
+
+// Optimizes ASM programs and runs them on ASMEmulator: each must print the
+// same before and after, and the pass it exercises must have done its work.
+public class TestStandaloneOptimizer extends FileFixturesTestCase {
+
+	// each rule the fixture is written around fires.
+	public void testPeepholeRules() throws Exception {
+		Optimizer optimizer = optimizerSingleTest(PEEPHOLE_INPUT_FILENAME, PEEPHOLE_EXPECTED_FILENAME);
+		Map<String, Integer> hits = optimizer.getPeepholeHitCounts();
+		String[] rules = { "push-address-exchange", "add-zero", "multiply-one", "duplicate-pop",
+						   "negate-negate", "jump-to-next", "unreferenced-label" };
+		for(String rule: rules) {
+			assertTrue(rule, hits.containsKey(rule) && hits.get(rule) > 0);
+		}
+	}
+
+	// neither the code after a Jump nor a subroutine nothing calls is reached.
+	public void testUnreachableCode() throws Exception {
+		Optimizer optimizer = optimizerSingleTest(UNREACHABLE_CODE_INPUT_FILENAME, UNREACHABLE_CODE_EXPECTED_FILENAME);
+		assertTrue(optimizer.getUnreachableInstructionsRemoved() > 0);
+	}
+
+	// the JumpFalse to a Jump goes straight to that Jump's target.
+	public void testJumpThreading() throws Exception {
+		Optimizer optimizer = optimizerSingleTest(JUMP_THREADING_INPUT_FILENAME, JUMP_THREADING_EXPECTED_FILENAME);
+		assertTrue(optimizer.getJumpThreader().getJumpsRetargeted() > 0);
+	}
+
+	// a product that a six-digit PushF cannot hold is left to run time.
+	public void testConstantFolding() throws Exception {
+		Optimizer optimizer = optimizerSingleTest(CONSTANT_FOLDING_INPUT_FILENAME, CONSTANT_FOLDING_EXPECTED_FILENAME);
+		assertEquals(1, optimizer.getConstantFolder().getOperationsFolded());
+	}
+
+	// the 7 is overwritten on both paths before it is read.
+	public void testDeadStores() throws Exception {
+		Optimizer optimizer = optimizerSingleTest(DEAD_STORE_INPUT_FILENAME, DEAD_STORE_EXPECTED_FILENAME);
+		assertTrue(optimizer.getDeadStoresRemoved() > 0);
+	}
+
+	// the second field is printed from the accumulator, not reloaded.
+	public void testStoreForwarding() throws Exception {
+		Optimizer optimizer = optimizerSingleTest(STORE_FORWARDING_INPUT_FILENAME, STORE_FORWARDING_EXPECTED_FILENAME);
+		assertTrue(optimizer.getStoreForwarder().getLoadsForwarded() > 0);
+	}
+
+	// the second input - 3 is a Duplicate of the first.
+	public void testValueNumbering() throws Exception {
+		Optimizer optimizer = optimizerSingleTest(VALUE_NUMBERING_INPUT_FILENAME, VALUE_NUMBERING_EXPECTED_FILENAME);
+		assertTrue(optimizer.getValueNumbering().getInstructionsSaved() > 0);
+	}
+
+	// a floating value reused across a store is spilled to a slot that the
+	// heap, which starts at the last DLabel, must not overlap.
+	public void testSpillSlotsAreNotInTheHeap() throws Exception {
+		LabelTable labels = new LabelTable();
+		ASMCodeFragment code = new ASMCodeFragment(ASMCodeFragment.CodeType.GENERATES_VOID);
+		code.add(DLabel, "$eat-location-zero");
+		code.add(DataZ, 8);
+		code.add(DLabel, "int-format");
+		code.add(DataS, "%d\n");
+		code.add(DLabel, "floating-format");
+		code.add(DataS, "%g\n");
+		code.add(DLabel, "block");
+		code.add(DataZ, 4);
+		code.add(DLabel, "x");
+		code.add(DataF, 5.0);
+		code.append(MemoryManager.codeForInitialization(labels));
+
+		allocate(code, 16);
+		code.add(PushD, "block");
+		code.add(Exchange);
+		code.add(StoreI);
+		appendProduct(code);
+		code.add(PushF, 1.0);
+		code.add(FAdd);
+		appendProduct(code);
+		code.add(FAdd);
+		code.add(PushD, "floating-format");
+		code.add(Printf);
+
+		code.add(PushD, "block");
+		code.add(LoadI);
+		code.add(Call, MemoryManager.MEM_MANAGER_DEALLOCATE);
+		for(int i = 0; i < 2; i++) {
+			allocate(code, 16);
+			code.add(PushD, "block");
+			code.add(LoadI);
+			code.add(Subtract);
+			code.add(PushD, "int-format");
+			code.add(Printf);
+		}
+		code.add(Halt);
+		code.append(MemoryManager.codeForAfterApplication(labels));
+
+		Optimizer optimizer = new Optimizer(code);
+		ASMCodeFragment optimized = optimizer.optimize();
+		assertEquals("221\n0\n34\n", ASMEmulator.outputOf(code));
+		assertEquals("221\n0\n34\n", ASMEmulator.outputOf(optimized));
+		assertTrue(optimized.toString().contains(" $optimizer-spill-0"));
+	}
+	private static void allocate(ASMCodeFragment code, int size) {
+		code.add(PushI, size);
+		code.add(Call, MemoryManager.MEM_MANAGER_ALLOCATE);
+	}
+	// (3x + 7) * x
+	private static void appendProduct(ASMCodeFragment code) {
+		code.add(PushD, "x");
+		code.add(LoadF);
+		code.add(PushF, 3.0);
+		code.add(FMultiply);
+		code.add(PushF, 7.0);
+		code.add(FAdd);
+		code.add(PushD, "x");
+		code.add(LoadF);
+		code.add(FMultiply);
+	}
+
+	// the table and the string only it names go; the distance between the
+	// groups still in use is unchanged.
+	public void testTreeShaking() throws Exception {
+		Optimizer optimizer = optimizerSingleTest(TREE_SHAKING_INPUT_FILENAME, TREE_SHAKING_EXPECTED_FILENAME);
+		assertTrue(optimizer.getTreeShaker().getDataDirectivesRemoved() > 0);
+	}
+
+	// laid out in the order they run, the three blocks need no Jumps.
+	public void testBlockLayout() throws Exception {
+		Optimizer optimizer = optimizerSingleTest(BLOCK_LAYOUT_INPUT_FILENAME, BLOCK_LAYOUT_EXPECTED_FILENAME);
+		assertEquals(2, optimizer.getBlockLayout().getJumpsRemoved());
+	}
+
+	// both calls of the runtime-style subroutine are replaced by its body.
+	public void testInlining() throws Exception {
+		Optimizer optimizer = optimizerSingleTest(INLINING_INPUT_FILENAME, INLINING_EXPECTED_FILENAME);
+		assertEquals(2, optimizer.getInliner().getCallsInlined());
+	}
+
+	public Optimizer optimizerSingleTest(String inputFilename, String expectedFilename) throws Exception {
+		String expectedOutput = TestCompiler.programOutput(getContents(expectedFilename));
+		ASMCodeFragment code = ASMCodeFragment.fromInstructionBuffer(ASMReader.read(inputFilename),
+																	 ASMCodeFragment.CodeType.GENERATES_VOID);
+		Optimizer optimizer = new Optimizer(code);
+		ASMCodeFragment optimized = optimizer.optimize();
+		assertEquals(expectedOutput, ASMEmulator.outputOf(code));
+		assertEquals(expectedOutput, ASMEmulator.outputOf(optimized));
+		return optimizer;
+	}
+}
@@ -0,0 +1,21 @@
+        DLabel       $eat-location-zero
+        DataZ        8
+        DLabel       format                    %% "%d\n"
+        DataC        37
+        DataC        100
+        DataC        10
+        DataC        0
+        PushI        1
+        PushD        format
+        Printf
+        Jump         second
+        Label        third
+        PushI        3
+        PushD        format
+        Printf
+        Halt
+        Label        second
+        PushI        2
+        PushD        format
+        Printf
+        Jump         third
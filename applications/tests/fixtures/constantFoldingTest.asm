@@ -0,0 +1,31 @@
+        DLabel       $eat-location-zero
+        DataZ        8
+        DLabel       square
+        DataZ        8
+        DLabel       format                    %% "%d %g\n"
+        DataC        37
+        DataC        100
+        DataC        32
+        DataC        37
+        DataC        103
+        DataC        10
+        DataC        0
+        PushD        square
+        PushF        1234.5
+        Duplicate
+        FMultiply                              %% 1523990.25, not a six-digit PushF
+        StoreF
+        PushF        0.5
+        PushI        6
+        PushI        7
+        Multiply
+        PushD        format
+        Printf
+        PushD        square
+        LoadF
+        PushF        1523990.0
+        FSubtract
+        PushI        -1
+        PushD        format
+        Printf
+        Halt
@@ -0,0 +1,29 @@
+        DLabel       $eat-location-zero
+        DataZ        8
+        DLabel       cell
+        DataZ        4
+        DLabel       flag
+        DataZ        4
+        DLabel       format                    %% "%d\n"
+        DataC        37
+        DataC        100
+        DataC        10
+        DataC        0
+        PushD        cell
+        PushI        7
+        StoreI
+        PushD        flag
+        LoadI
+        JumpTrue     skip
+        PushI        1
+        PushD        format
+        Printf
+        Label        skip
+        PushD        cell
+        PushI        9
+        StoreI
+        PushD        cell
+        LoadI
+        PushD        format
+        Printf
+        Halt
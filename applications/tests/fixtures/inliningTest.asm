@@ -0,0 +1,27 @@
+        DLabel       $eat-location-zero
+        DataZ        8
+        DLabel       square-return
+        DataZ        4
+        DLabel       format                    %% "%d\n"
+        DataC        37
+        DataC        100
+        DataC        10
+        DataC        0
+        PushI        3
+        Call         square
+        PushD        format
+        Printf
+        PushI        4
+        Call         square
+        PushD        format
+        Printf
+        Halt
+        Label        square
+        PushD        square-return
+        Exchange
+        StoreI
+        Duplicate
+        Multiply
+        PushD        square-return
+        LoadI
+        Return
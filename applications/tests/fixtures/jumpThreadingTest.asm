@@ -0,0 +1,28 @@
+        DLabel       $eat-location-zero
+        DataZ        8
+        DLabel       cell
+        DataZ        4
+        DLabel       format                    %% "%d\n"
+        DataC        37
+        DataC        100
+        DataC        10
+        DataC        0
+        PushD        cell
+        LoadI
+        JumpFalse    hop
+        PushI        1
+        PushD        format
+        Printf
+        Jump         done
+        Label        hop
+        Jump         other
+        Label        done
+        PushI        3
+        PushD        format
+        Printf
+        Halt
+        Label        other
+        PushI        2
+        PushD        format
+        Printf
+        Jump         done
@@ -0,0 +1,32 @@
+        DLabel       $eat-location-zero
+        DataZ        8
+        DLabel       cell
+        DataZ        4
+        DLabel       format                    %% "%d\n"
+        DataC        37
+        DataC        100
+        DataC        10
+        DataC        0
+        PushI        5
+        PushD        cell
+        Exchange
+        StoreI
+        PushD        cell
+        LoadI
+        PushI        0
+        Add
+        Duplicate
+        Pop
+        PushD        format
+        Printf
+        Jump         next
+        Label        next
+        PushD        cell
+        LoadI
+        Negate
+        Negate
+        PushI        1
+        Multiply
+        PushD        format
+        Printf
+        Halt
@@ -0,0 +1,35 @@
+        DLabel       $eat-location-zero
+        DataZ        8
+        DLabel       input
+        DataZ        4
+        DLabel       pair
+        DataZ        8
+        DLabel       format                    %% "%d\n"
+        DataC        37
+        DataC        100
+        DataC        10
+        DataC        0
+        PushD        pair
+        PushI        4
+        Add
+        PushD        input
+        LoadI
+        PushI        5
+        Add
+        StoreI
+        PushD        pair
+        PushI        4
+        Add
+        LoadI
+        PushD        format
+        Printf
+        PushD        pair
+        PushI        4
+        Add
+        LoadI
+        PushD        pair
+        LoadI
+        Subtract
+        PushD        format
+        Printf
+        Halt
@@ -0,0 +1,26 @@
+        DLabel       $eat-location-zero
+        DataZ        8
+        DLabel       unused-table
+        DataD        unused-string
+        DataD        unused-string
+        DLabel       unused-string             %% "no"
+        DataC        110
+        DataC        111
+        DataC        0
+        DLabel       format                    %% "%d\n"
+        DataC        37
+        DataC        100
+        DataC        10
+        DataC        0
+        DLabel       cell
+        DataZ        4
+        PushD        cell
+        PushD        cell
+        PushD        format
+        Subtract
+        StoreI
+        PushD        cell
+        LoadI
+        PushD        format
+        Printf
+        Halt
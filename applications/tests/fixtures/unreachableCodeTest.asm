@@ -0,0 +1,29 @@
+        DLabel       $eat-location-zero
+        DataZ        8
+        DLabel       format                    %% "%d\n"
+        DataC        37
+        DataC        100
+        DataC        10
+        DataC        0
+        PushI        1
+        PushD        format
+        Printf
+        Jump         end
+        PushI        2
+        PushD        format
+        Printf
+        Label        orphan
+        PushI        3
+        PushD        format
+        Printf
+        Jump         end
+        Label        end
+        PushI        4
+        PushD        format
+        Printf
+        Halt
+        Label        never-called
+        PushI        5
+        PushD        format
+        Printf
+        Return
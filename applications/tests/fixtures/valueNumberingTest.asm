@@ -0,0 +1,21 @@
+        DLabel       $eat-location-zero
+        DataZ        8
+        DLabel       input
+        DataZ        4
+        DLabel       format                    %% "%d\n"
+        DataC        37
+        DataC        100
+        DataC        10
+        DataC        0
+        PushD        input
+        LoadI
+        PushI        3
+        Subtract
+        PushD        input
+        LoadI
+        PushI        3
+        Subtract
+        Multiply
+        PushD        format
+        Printf
+        Halt
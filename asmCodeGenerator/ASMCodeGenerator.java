@@ -1,7 +1,7 @@
 package asmCodeGenerator;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import asmCodeGenerator.CodeGenerator.*;
 import asmCodeGenerator.codeStorage.*;
 import asmCodeGenerator.runtime.*;
@@ -16,6 +16,8 @@ import static asmCodeGenerator.codeStorage.ASMOpcode.*;
 // do not call the code generator if any errors have occurred during analysis.
 public class ASMCodeGenerator {
 	ParseNode root;
+	LabelTable labels;
+	ConstantPool constants;
 
 	public static ASMCodeFragment generate(ParseNode syntaxTree) {
 		ASMCodeGenerator codeGenerator = new ASMCodeGenerator(syntaxTree);
@@ -24,15 +26,19 @@ public class ASMCodeGenerator {
 	public ASMCodeGenerator(ParseNode root) {
 		super();
 		this.root = root;
+		this.labels = new LabelTable();
+		this.constants = new ConstantPool(labels);
 	}
 	
 	public ASMCodeFragment makeASM() {
 		ASMCodeFragment code = new ASMCodeFragment(GENERATES_VOID);
+		ASMCodeFragment program = programASM();		// fills the constant pool
 
 		code.append(RunTime.getEnvironment());
 		code.append(globalVariableBlockASM());
-		code.append(programASM());
-//		code.append(MemoryManager.codeForAfterApplication());
+		code.append(constants.dataASM());
+		code.append(program);
+//		code.append(MemoryManager.codeForAfterApplication(labels));
 		
 		return code;
 	}
@@ -58,16 +64,31 @@ public class ASMCodeGenerator {
 	private ASMCodeFragment programCode() {
 		CodeVisitor visitor = new CodeVisitor();
 		root.accept(visitor);
-		return visitor.removeRootCode(root);
+		ASMCodeFragment result = visitor.removeRootCode(root);
+		assert visitor.hasNoPendingCode() : "fragments left unconsumed in ASMCodeGenerator";
+		return result;
 	}
 
 
+	// Fragments wait on a stack, in post order, until their parent consumes them.
+	// Parents take their children's fragments from the top of the stack (not
+	// necessarily in order: conditions and print statements consume descendants
+	// out of order), so the stack holds at most the pending children of the
+	// nodes on the current path from the root.
 	protected class CodeVisitor extends ParseNodeVisitor.Default {
-		private Map<ParseNode, ASMCodeFragment> codeMap;
+		private List<ParseNode> pendingNodes;
+		private List<ASMCodeFragment> pendingCode;
 		ASMCodeFragment code;
 		
 		public CodeVisitor() {
-			codeMap = new HashMap<ParseNode, ASMCodeFragment>();
+			pendingNodes = new ArrayList<ParseNode>();
+			pendingCode = new ArrayList<ASMCodeFragment>();
+		}
+		ConstantPool getConstantPool() {
+			return constants;
+		}
+		LabelTable getLabelTable() {
+			return labels;
 		}
 
 
@@ -75,22 +96,34 @@ public class ASMCodeGenerator {
         // Make the field "code" refer to a new fragment of different sorts.
 		private void newAddressCode(ParseNode node) {
 			code = new ASMCodeFragment(GENERATES_ADDRESS);
-			codeMap.put(node, code);
+			push(node, code);
 		}
 		private void newValueCode(ParseNode node) {
 			code = new ASMCodeFragment(GENERATES_VALUE);
-			codeMap.put(node, code);
+			push(node, code);
 		}
 		private void newVoidCode(ParseNode node) {
 			code = new ASMCodeFragment(GENERATES_VOID);
-			codeMap.put(node, code);
+			push(node, code);
 		}
 	////////////////////////////////////////////////////////////////////
-        // Get code from the map.
+        // Get code from the stack.
+		private void push(ParseNode node, ASMCodeFragment fragment) {
+			pendingNodes.add(node);
+			pendingCode.add(fragment);
+		}
 		private ASMCodeFragment getAndRemoveCode(ParseNode node) {
-			ASMCodeFragment result = codeMap.get(node);
-			codeMap.remove(result);
-			return result;
+			for(int i = pendingNodes.size() - 1; i >= 0; i--) {
+				if(pendingNodes.get(i) == node) {
+					pendingNodes.remove(i);
+					return pendingCode.remove(i);
+				}
+			}
+			assert false : "no code generated for node " + node;
+			return null;
+		}
+		boolean hasNoPendingCode() {
+			return pendingNodes.isEmpty();
 		}
 	    public  ASMCodeFragment removeRootCode(ParseNode tree) {
 			return getAndRemoveCode(tree);
@@ -241,119 +274,144 @@ public class ASMCodeGenerator {
 
 		///////////////////////////////////////////////////////////////////////////
 		// expressions
-		public void visitEnter(BinaryOperatorNode node) {
-			if (node.isBooleanOperator() && !(node.getParent() instanceof BinaryOperatorNode)) {
-				new Labeller("boolean");
-			}
-		}
 		public void visitLeave(BinaryOperatorNode node) {
-			newValueCode(node);
-			
-			if (node.isBooleanOperator()) {
-				visitBooleanOperatorNode(node);
-			} else if (node.isComparator()) {
-				Lextant operator = node.getOperator();
-				visitComparisonOperatorNode(node, operator);
+			if (isCondition(node)) {
+				if (!isInBranchContext(node)) {
+					newValueCode(node);
+					visitConditionValue(node);
+				}
 			} else {
+				newValueCode(node);
 				visitNormalBinaryOperatorNode(node);
 			}
 		}
 		
-		private void visitBooleanOperatorNode(BinaryOperatorNode node) {
-			Object variant = node.getSignature().getVariant();
-			if (variant instanceof ASMOpcode) {
-				ASMOpcode opcode = (ASMOpcode) variant;
+		
+		///////////////////////////////////////////////////////////////////////////
+		// conditions (comparisons and boolean operators) compile to jumping code.
+		// A condition under a boolean operator or a print statement leaves its
+		// children's code in place; the consumer generates its jumps.
+		boolean isCondition(ParseNode node) {
+			if (!(node instanceof BinaryOperatorNode)) {
+				return false;
+			}
+			BinaryOperatorNode operatorNode = (BinaryOperatorNode) node;
+			return operatorNode.isComparator() || operatorNode.isBooleanOperator();
+		}
+		private boolean isInBranchContext(ParseNode node) {
+			ParseNode parent = node.getParent();
+			return (parent instanceof BinaryOperatorNode && ((BinaryOperatorNode) parent).isBooleanOperator()) ||
+					(parent instanceof PrintStatementNode);
+		}
+		
+		// a comparison branches on whichever outcome takes a single jump.
+		private void visitConditionValue(BinaryOperatorNode node) {
+			boolean jumpIfTrue = node.isComparator() && !hasSingleJump(node, false);
+			Labeller labeller = new Labeller(labels, "condition");
+			ASMLabel targetLabel = labeller.newLabel(jumpIfTrue ? "true" : "false");
+			ASMLabel joinLabel   = labeller.newLabel("join");
 			
-				Labeller labeller = new Labeller("boolean", false);
-				String joinLabel  = labeller.newLabel("join");
-
-				ASMCodeFragment arg1 = removeValueCode(node.child(0));
-				ASMCodeFragment arg2 = removeValueCode(node.child(1));
-
-				code.append(arg1);
-				code.add(Duplicate);
-				
-				if (opcode == And) {
-					code.add(JumpFalse, joinLabel);
-				} else if (opcode == Or) {
-					code.add(JumpTrue, joinLabel);
-				}
-
-				code.append(arg2);
-				code.add(opcode);
-				
-				if (!(node.getParent() instanceof BinaryOperatorNode)) {
-					code.add(Label, joinLabel);
+			code.append(removeJumpCode(node, targetLabel, jumpIfTrue));
+			code.add(PushI, jumpIfTrue ? 0 : 1);
+			code.add(Jump, joinLabel);
+			code.add(Label, targetLabel);
+			code.add(PushI, jumpIfTrue ? 1 : 0);
+			code.add(Label, joinLabel);
+		}
+		private boolean hasSingleJump(BinaryOperatorNode comparison, boolean sense) {
+			boolean isFloating = (comparison.getSignature().paramType() == PrimitiveType.FLOATING);
+			return differenceJump((Punctuator) comparison.getOperator(), sense, isFloating) != null;
+		}
+		
+		// code that jumps to target when the boolean node evaluates to jumpIfTrue,
+		// and otherwise falls through.  Leaves nothing on the stack.
+		ASMCodeFragment removeJumpCode(ParseNode node, ASMLabel target, boolean jumpIfTrue) {
+			ASMCodeFragment frag = new ASMCodeFragment(GENERATES_VOID);
+			appendJumpCode(frag, node, target, jumpIfTrue);
+			return frag;
+		}
+		private void appendJumpCode(ASMCodeFragment frag, ParseNode node, ASMLabel target, boolean jumpIfTrue) {
+			if (isCondition(node) && ((BinaryOperatorNode) node).isBooleanOperator()) {
+				appendBooleanOperatorJump(frag, (BinaryOperatorNode) node, target, jumpIfTrue);
+			} else if (isCondition(node)) {
+				appendComparisonJump(frag, (BinaryOperatorNode) node, target, jumpIfTrue);
+			} else if (node instanceof BooleanConstantNode) {
+				removeValueCode(node);
+				if (((BooleanConstantNode) node).getValue() == jumpIfTrue) {
+					frag.add(Jump, target);
 				}
+			} else {
+				frag.append(removeValueCode(node));
+				frag.add(jumpIfTrue ? JumpTrue : JumpFalse, target);
 			}
 		}
 		
-		private void visitComparisonOperatorNode(BinaryOperatorNode node, Lextant operator) {
+		// a && b jumps on false as soon as either operand is false, and a || b
+		// jumps on true as soon as either is true.  Otherwise the left operand
+		// can only decide the opposite outcome, by skipping the right operand.
+		private void appendBooleanOperatorJump(ASMCodeFragment frag, BinaryOperatorNode node, ASMLabel target, boolean jumpIfTrue) {
+			boolean isAnd = (node.getOperator() == Punctuator.AND);
 			
+			if (jumpIfTrue != isAnd) {
+				appendJumpCode(frag, node.child(0), target, jumpIfTrue);
+				appendJumpCode(frag, node.child(1), target, jumpIfTrue);
+			} else {
+				ASMLabel skipLabel = new Labeller(labels, "boolean").newLabel("skip");
+				appendJumpCode(frag, node.child(0), skipLabel, !jumpIfTrue);
+				appendJumpCode(frag, node.child(1), target, jumpIfTrue);
+				frag.add(Label, skipLabel);
+			}
+		}
+		
+		private void appendComparisonJump(ASMCodeFragment frag, BinaryOperatorNode node, ASMLabel target, boolean jumpIfTrue) {
 			ASMCodeFragment arg1 = removeValueCode(node.child(0));
 			ASMCodeFragment arg2 = removeValueCode(node.child(1));
-			Type type = node.getSignature().paramType();
+			boolean isFloating = (node.getSignature().paramType() == PrimitiveType.FLOATING);
 			
-			Labeller labeller = new Labeller("compare");
-			String trueLabel  = labeller.newLabel("true");
-			String falseLabel = labeller.newLabel("false");
-			String joinLabel  = labeller.newLabel("join");
+			frag.append(arg1);
+			frag.append(arg2);
 			
-			code.append(arg1);
-			code.append(arg2);
-
 			Object variant = node.getSignature().getVariant();
 			
 			if (variant instanceof SimpleCodeGenerator) {
 				SimpleCodeGenerator scg1 = (SimpleCodeGenerator) variant;
-				code.addChunk(scg1.generate());
+				frag.addChunk(scg1.generate());
 			}
 			
 			if (variant instanceof Integer) {
-				code.add((type == PrimitiveType.FLOATING) ? FSubtract : Subtract);
+				frag.add(isFloating ? FSubtract : Subtract);
 			}
 			
-			Punctuator comparator = (Punctuator) operator;
+			Punctuator comparator = (Punctuator) node.getOperator();
+			ASMOpcode jump = differenceJump(comparator, jumpIfTrue, isFloating);
+			if (jump != null) {
+				frag.add(jump, target);
+			} else {
+				ASMLabel skipLabel = new Labeller(labels, "compare").newLabel("skip");
+				frag.add(differenceJump(comparator, !jumpIfTrue, isFloating), skipLabel);
+				frag.add(Jump, target);
+				frag.add(Label, skipLabel);
+			}
+		}
+		// the single jump on the difference (a - b) that is taken exactly when
+		// "a comparator b" equals sense, or null if there is none.
+		private ASMOpcode differenceJump(Punctuator comparator, boolean sense, boolean isFloating) {
+			ASMOpcode positive = isFloating ? JumpFPos : JumpPos;
+			ASMOpcode negative = isFloating ? JumpFNeg : JumpNeg;
+			ASMOpcode zero     = isFloating ? JumpFZero : JumpFalse;
+			ASMOpcode nonzero  = isFloating ? null : JumpTrue;
+			
 			switch(comparator) {
-			case GREATER:
-				code.add((type == PrimitiveType.FLOATING) ? JumpFPos : JumpPos, trueLabel);
-				code.add(Jump, falseLabel);	
-				break;
-			case GREATEREQUAL:
-				code.add((type == PrimitiveType.FLOATING) ? JumpFNeg : JumpNeg, falseLabel);
-				code.add(Jump, trueLabel);	
-				break;
-			case LESSER:
-				code.add((type == PrimitiveType.FLOATING) ? JumpFNeg : JumpNeg, trueLabel);
-				code.add(Jump, falseLabel);	
-				break;
-			case LESSEREQUAL:
-				code.add((type == PrimitiveType.FLOATING) ? JumpFPos : JumpPos, falseLabel);
-				code.add(Jump, trueLabel);
-				break;
-			case EQUAL:
-				code.add((type == PrimitiveType.FLOATING) ? JumpFZero : JumpFalse, trueLabel);
-				code.add(Jump, falseLabel);	
-				break;
-			case NOT_EQUAL:
-				code.add((type == PrimitiveType.FLOATING) ? JumpFZero : JumpFalse, falseLabel);
-				code.add(Jump, trueLabel);	
-				break;
+			case GREATER:		return sense ? positive : null;
+			case LESSER:		return sense ? negative : null;
+			case GREATEREQUAL:	return sense ? null : negative;
+			case LESSEREQUAL:	return sense ? null : positive;
+			case EQUAL:			return sense ? zero : nonzero;
+			case NOT_EQUAL:		return sense ? nonzero : zero;
 			default:
-				break;
+				assert false : "comparator " + comparator + " unimplemented in differenceJump()";
+				return null;
 			}
-
-			code.add(Label, trueLabel);
-			code.add(PushI, 1);
-			code.add(Jump, joinLabel);
-			code.add(Label, falseLabel);
-			code.add(PushI, 0);
-			code.add(Jump, joinLabel);
-			code.add(Label, joinLabel);
-			
-			//code.add(JumpPos, trueLabel);
-			//code.add(Jump, falseLabel);
-			
 		}
 		
 		
@@ -363,7 +421,12 @@ public class ASMCodeGenerator {
 			Type type = node.getSignature().paramType();
 			
 			code.append(arg1);
-			code.append(arg2);
+			if(isRepeatedVariable(node.child(0), node.child(1))) {
+				code.add(Duplicate);
+			}
+			else {
+				code.append(arg2);
+			}
 			
 			Object variant = node.getSignature().getVariant();
 			
@@ -375,7 +438,7 @@ public class ASMCodeGenerator {
 			if (variant instanceof ASMOpcode) {
 				ASMOpcode opcode = (ASMOpcode) variant;
 				
-				if (opcode == ASMOpcode.Divide || opcode == ASMOpcode.FDivide) {
+				if ((opcode == ASMOpcode.Divide || opcode == ASMOpcode.FDivide) && !node.divisorIsNonzero()) {
 					DivisionByZeroSCG scg = new DivisionByZeroSCG(type);
 					code.addChunk(scg.generate());
 				}
@@ -384,6 +447,24 @@ public class ASMCodeGenerator {
 			}
 		}
 		
+		// x op x: the second operand is a copy of the first value already on the stack.
+		private boolean isRepeatedVariable(ParseNode left, ParseNode right) {
+			return (left instanceof IdentifierNode) && (right instanceof IdentifierNode) &&
+					((IdentifierNode)left).getBinding() == ((IdentifierNode)right).getBinding();
+		}
+		
+		public void visitLeave(TemporaryStoreNode node) {
+			newValueCode(node);
+			
+			ASMCodeFragment value = removeValueCode(node.child(0));
+			code.append(value);
+			code.add(Duplicate);
+			
+			node.getTemporary().generateAddress(code);
+			code.add(Exchange);
+			code.add(opcodeForStore(node.getType()));
+		}
+		
 		public void visitLeave(CastNode node) {
 			newValueCode(node);
 
@@ -431,21 +512,7 @@ public class ASMCodeGenerator {
 		}
 		public void visit(StringNode node) {
 			newValueCode(node);
-			Labeller labeller = new Labeller("stringConstant");
-			IdentifierNode identifier = node.getIdentifier();
-			String varName = "";
-			if (identifier != null) {
-				varName = identifier.getToken().getLexeme();
-			}
-			String stringLabel = labeller.newLabel(varName);
-
-			code.add(DLabel, stringLabel);
-			
-			code.add(DataI, 6); 				// String type
-			code.add(DataI, 9); 				// Immutable and permanent
-			code.add(DataI, node.getLength()); 	// Length
-			
-			code.add(DataS, node.getValue());
+			ASMLabel stringLabel = constants.stringLabel(node.getValue());
 			code.add(PushD, stringLabel);
 		}
 	}
@@ -6,13 +6,18 @@ import asmCodeGenerator.Labeller;
 
 public class PrintBooleanSCG implements SimpleCodeGenerator {
 	ASMCodeChunk chunk = new ASMCodeChunk();
+	LabelTable labels;
+	
+	public PrintBooleanSCG(LabelTable labels) {
+		this.labels = labels;
+	}
 
 	@Override
 	public ASMCodeChunk generate() {
 		
-		Labeller labeller = new Labeller("print-boolean");
-		String trueLabel = labeller.newLabel("true");
-		String endLabel = labeller.newLabel("join");
+		Labeller labeller = new Labeller(labels, "print-boolean");
+		ASMLabel trueLabel = labeller.newLabel("true");
+		ASMLabel endLabel = labeller.newLabel("join");
 
 		chunk.add(ASMOpcode.JumpTrue, trueLabel);
 		chunk.add(ASMOpcode.PushD, RunTime.BOOLEAN_FALSE_STRING);
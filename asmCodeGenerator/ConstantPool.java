@@ -0,0 +1,58 @@
+package asmCodeGenerator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import asmCodeGenerator.codeStorage.ASMCodeFragment;
+import asmCodeGenerator.codeStorage.ASMLabel;
+import asmCodeGenerator.codeStorage.LabelTable;
+import static asmCodeGenerator.codeStorage.ASMCodeFragment.CodeType.*;
+import static asmCodeGenerator.codeStorage.ASMOpcode.*;
+
+// Constant data for one compilation, keyed by content so that each constant
+// is emitted once.  The data section is emitted after the code using it has
+// been generated.
+public class ConstantPool {
+	private LabelTable labels;
+	private Map<String, ASMLabel> stringLabels;
+	private Map<String, ASMLabel> formatLabels;
+	
+	public ConstantPool(LabelTable labels) {
+		this.labels = labels;
+		stringLabels = new LinkedHashMap<String, ASMLabel>();
+		formatLabels = new LinkedHashMap<String, ASMLabel>();
+	}
+	
+	// the label of a Pika string record holding value.
+	public ASMLabel stringLabel(String value) {
+		if(!stringLabels.containsKey(value)) {
+			stringLabels.put(value, new Labeller(labels, "stringConstant").newLabel(""));
+		}
+		return stringLabels.get(value);
+	}
+	
+	// the label of a printf format string.
+	public ASMLabel formatLabel(String format) {
+		if(!formatLabels.containsKey(format)) {
+			formatLabels.put(format, new Labeller(labels, "format").newLabel(""));
+		}
+		return formatLabels.get(format);
+	}
+	
+	public ASMCodeFragment dataASM() {
+		ASMCodeFragment code = new ASMCodeFragment(GENERATES_VOID);
+		for(Map.Entry<String, ASMLabel> entry : stringLabels.entrySet()) {
+			String value = entry.getKey();
+			code.add(DLabel, entry.getValue());
+			code.add(DataI, 6); 				// String type
+			code.add(DataI, 9); 				// Immutable and permanent
+			code.add(DataI, value.length()); 	// Length
+			code.add(DataS, value);
+		}
+		for(Map.Entry<String, ASMLabel> entry : formatLabels.entrySet()) {
+			code.add(DLabel, entry.getValue());
+			code.add(DataS, entry.getKey());
+		}
+		return code;
+	}
+}
@@ -1,29 +1,19 @@
 package asmCodeGenerator;
 
-public class Labeller {
-	private static int labelSequenceNumber = 0;
+import asmCodeGenerator.codeStorage.ASMLabel;
+import asmCodeGenerator.codeStorage.LabelTable;
 
-	private int labelNumber;
-	private String prefix;
+// makes a group of related labels (-prefix-N-suffix) in a compilation's label table.
+public class Labeller {
+	private LabelTable labels;
+	private int group;
 
-	public Labeller(String userPrefix) {
-		labelSequenceNumber++;
-		labelNumber = labelSequenceNumber;
-		this.prefix = makePrefix(userPrefix);
-	}
-	public Labeller(String userPrefix, boolean inc) {
-		if (inc) {
-			labelSequenceNumber++;
-		}
-		
-		labelNumber = labelSequenceNumber;
-		this.prefix = makePrefix(userPrefix);
-	}
-	private String makePrefix(String prefix) {
-		return "-" + prefix + "-" + labelNumber + "-";
+	public Labeller(LabelTable labels, String userPrefix) {
+		this.labels = labels;
+		this.group = labels.newGroup(userPrefix);
 	}
 
-	public String newLabel(String suffix) {
-		return prefix + suffix;
+	public ASMLabel newLabel(String suffix) {
+		return labels.newLabel(group, suffix);
 	}
 }
@@ -2,6 +2,8 @@ package asmCodeGenerator;
 
 import static asmCodeGenerator.codeStorage.ASMOpcode.*;
 import asmCodeGenerator.codeStorage.ASMCodeFragment;
+import asmCodeGenerator.codeStorage.ASMLabel;
+import asmCodeGenerator.codeStorage.LabelTable;
 
 public class Macros {
 	
@@ -78,24 +80,24 @@ public class Macros {
     // debugging aids
 
 	// does not disturb accumulator.  Takes a format string - no %'s!
-	public static void printString(ASMCodeFragment code, String format) {
-		String stringLabel = new Labeller("pstring").newLabel("");
+	public static void printString(ASMCodeFragment code, LabelTable labels, String format) {
+		ASMLabel stringLabel = new Labeller(labels, "pstring").newLabel("");
 		code.add(DLabel, stringLabel);
 		code.add(DataS, format);
 		code.add(PushD, stringLabel);
 		code.add(Printf);
 	}
 	// does not disturb accumulator.  Takes a format string
-	public static void printAccumulatorTop(ASMCodeFragment code, String format) {
-		String stringLabel = new Labeller("ptop").newLabel("");
+	public static void printAccumulatorTop(ASMCodeFragment code, LabelTable labels, String format) {
+		ASMLabel stringLabel = new Labeller(labels, "ptop").newLabel("");
 		code.add(Duplicate);
 		code.add(DLabel, stringLabel);
 		code.add(DataS, format);
 		code.add(PushD, stringLabel);
 		code.add(Printf);
 	}
-	public static void printAccumulator(ASMCodeFragment code, String string) {
-		String stringLabel = new Labeller("pstack").newLabel("");
+	public static void printAccumulator(ASMCodeFragment code, LabelTable labels, String string) {
+		ASMLabel stringLabel = new Labeller(labels, "pstack").newLabel("");
 		code.add(DLabel, stringLabel);
 		code.add(DataS, string + " ");
 		code.add(PushD, stringLabel);
@@ -0,0 +1,42 @@
+package asmCodeGenerator;
+
+import asmCodeGenerator.codeStorage.*;
+import asmCodeGenerator.runtime.*;
+import static asmCodeGenerator.codeStorage.ASMCodeFragment.CodeType.*;
+import static asmCodeGenerator.codeStorage.ASMOpcode.*;
+
+// the whole program for a program whose output is known at compile time:
+// print the output in one Printf and halt.
+public class PrecomputedOutputGenerator {
+	private static final String OUTPUT_LABEL = "$precomputed-output";
+	private static final String OUTPUT_FORMAT_LABEL = "$print-format-precomputed";
+	
+	private String output;
+	
+	public static ASMCodeFragment generate(String output) {
+		PrecomputedOutputGenerator generator = new PrecomputedOutputGenerator(output);
+		return generator.makeASM();
+	}
+	public PrecomputedOutputGenerator(String output) {
+		super();
+		this.output = output;
+	}
+	
+	public ASMCodeFragment makeASM() {
+		ASMCodeFragment code = new ASMCodeFragment(GENERATES_VOID);
+		
+		code.add(Label, RunTime.MAIN_PROGRAM_LABEL);
+		if(!output.isEmpty()) {
+			code.add(PushD, OUTPUT_LABEL);
+			code.add(PushD, OUTPUT_FORMAT_LABEL);
+			code.add(Printf);
+		}
+		code.add(Halt, "", "%% End of Execution");
+		
+		code.add(DLabel, OUTPUT_FORMAT_LABEL);
+		code.add(DataS, "%s");
+		code.add(DLabel, OUTPUT_LABEL);
+		code.add(DataS, output);
+		return code;
+	}
+}
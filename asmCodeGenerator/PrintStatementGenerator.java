@@ -4,49 +4,167 @@ import static asmCodeGenerator.codeStorage.ASMOpcode.PushI;
 import static asmCodeGenerator.codeStorage.ASMOpcode.Add;
 import static asmCodeGenerator.codeStorage.ASMOpcode.Printf;
 import static asmCodeGenerator.codeStorage.ASMOpcode.PushD;
+import static asmCodeGenerator.codeStorage.ASMOpcode.Jump;
+import static asmCodeGenerator.codeStorage.ASMOpcode.Label;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
 import parseTree.ParseNode;
+import parseTree.nodeTypes.BinaryOperatorNode;
+import parseTree.nodeTypes.BooleanConstantNode;
+import parseTree.nodeTypes.CharacterNode;
+import parseTree.nodeTypes.FloatingConstantNode;
+import parseTree.nodeTypes.IdentifierNode;
+import parseTree.nodeTypes.IntegerConstantNode;
 import parseTree.nodeTypes.NewlineNode;
 import parseTree.nodeTypes.PrintStatementNode;
 import parseTree.nodeTypes.SpaceNode;
+import parseTree.nodeTypes.StringNode;
 import parseTree.nodeTypes.TabNode;
+import parseTree.nodeTypes.TemporaryStoreNode;
 import semanticAnalyzer.types.PrimitiveType;
 import semanticAnalyzer.types.Type;
+import symbolTable.Binding;
 import asmCodeGenerator.ASMCodeGenerator.CodeVisitor;
 import asmCodeGenerator.CodeGenerator.PrintBooleanSCG;
 import asmCodeGenerator.codeStorage.ASMCodeFragment;
+import asmCodeGenerator.codeStorage.ASMLabel;
+import asmCodeGenerator.codeStorage.ASMOpcode;
+import asmCodeGenerator.runtime.PrintFormatter;
 import asmCodeGenerator.runtime.RunTime;
 
+// A print statement becomes as few Printf calls as possible.  Literal items
+// (separators, string, character and constant items) are written into the
+// format string; the other items are pushed as arguments of a single Printf.
+//
+// Printf takes its first argument from just below the format, so the
+// arguments are evaluated last item first, and nothing of a Printf is
+// printed until all of them are.  So an item that can halt with a runtime
+// error (a division by a divisor not known to be nonzero) starts a new
+// Printf, and the items before it are printed before it is evaluated.  An
+// item that reads a temporary stored by an earlier item (from common
+// subexpression elimination) starts a new Printf as well.
 public class PrintStatementGenerator {
 	ASMCodeFragment code;
 	ASMCodeGenerator.CodeVisitor visitor;
+	ConstantPool constants;
 	
 	
 	public PrintStatementGenerator(ASMCodeFragment code, CodeVisitor visitor) {
 		super();
 		this.code = code;
 		this.visitor = visitor;
+		this.constants = visitor.getConstantPool();
 	}
 
 	public void generate(PrintStatementNode node) {
+		List<ParseNode> items = new ArrayList<ParseNode>();
+		Set<Binding> storedTemporaries = identitySet();
+		
 		for(ParseNode child : node.getChildren()) {
-			if(child instanceof NewlineNode || child instanceof TabNode || child instanceof SpaceNode) {
-				ASMCodeFragment childCode = visitor.removeVoidCode(child);
-				code.append(childCode);
+			if(canHalt(child) || readsAnyOf(child, storedTemporaries)) {
+				appendPrintfCode(items);
+				items.clear();
+				storedTemporaries.clear();
+			}
+			items.add(child);
+			addTemporariesStored(child, storedTemporaries);
+		}
+		appendPrintfCode(items);
+	}
+	
+	private void appendPrintfCode(List<ParseNode> items) {
+		StringBuilder format = new StringBuilder();
+		List<ParseNode> arguments = new ArrayList<ParseNode>();
+		
+		for(ParseNode item : items) {
+			String literal = literalText(item);
+			if(literal != null) {
+				removeLiteralCode(item);
+				format.append(literal.replace("%", "%%"));
 			}
 			else {
-				appendPrintCode(child);
+				format.append(conversion(item.getType()));
+				arguments.add(item);
 			}
 		}
+		if(format.length() == 0) {
+			return;
+		}
+		
+		for(int i = arguments.size() - 1; i >= 0; i--) {
+			appendArgumentCode(arguments.get(i));
+		}
+		code.add(PushD, constants.formatLabel(format.toString()));
+		code.add(Printf);
 	}
-
-	private void appendPrintCode(ParseNode node) {
+	
+	
+	////////////////////////////////////////////////////////////////////
+	// literal items
+	
+	// the text printed for an item known at compile time, or null.
+	private String literalText(ParseNode node) {
+		if(node instanceof NewlineNode) {
+			return "\n";
+		}
+		if(node instanceof SpaceNode) {
+			return " ";
+		}
+		if(node instanceof TabNode) {
+			return "\t";
+		}
+		if(node instanceof StringNode) {
+			return ((StringNode)node).getValue();
+		}
+		if(node instanceof CharacterNode) {
+			char character = ((CharacterNode)node).getValue();
+			return (character == 0) ? null : String.valueOf(character);
+		}
+		if(node instanceof IntegerConstantNode) {
+			return Integer.toString(((IntegerConstantNode)node).getValue());
+		}
+		if(node instanceof BooleanConstantNode) {
+			return ((BooleanConstantNode)node).getValue() ? "true" : "false";
+		}
+		if(node instanceof FloatingConstantNode) {
+			double value = PrintFormatter.asEmitted(((FloatingConstantNode)node).getValue());
+			if(Double.isNaN(value) || Double.isInfinite(value)) {
+				return null;		// printed at run time, in the platform's spelling
+			}
+			return PrintFormatter.floating(value);
+		}
+		return null;
+	}
+	private void removeLiteralCode(ParseNode node) {
+		if(node instanceof NewlineNode || node instanceof TabNode || node instanceof SpaceNode) {
+			visitor.removeVoidCode(node);
+		}
+		else {
+			visitor.removeValueCode(node);
+		}
+	}
+	
+	
+	////////////////////////////////////////////////////////////////////
+	// argument items
+	
+	private void appendArgumentCode(ParseNode node) {
 		Type type = node.getType();
+		if (visitor.isCondition(node)) {
+			appendConditionStringCode(node);
+			return;
+		}
 		ASMCodeFragment value = visitor.removeValueCode(node);
 		
 		code.append(value);
 		
 		if (type == PrimitiveType.BOOLEAN) {
-			PrintBooleanSCG scg = new PrintBooleanSCG();
+			PrintBooleanSCG scg = new PrintBooleanSCG(visitor.getLabelTable());
 			code.addChunk(scg.generate());
 		}
 		
@@ -54,25 +172,77 @@ public class PrintStatementGenerator {
 			code.add(PushI, 12);
 			code.add(Add);
 		}
+	}
+	
+	// a condition jumps straight to the string it prints.
+	private void appendConditionStringCode(ParseNode node) {
+		Labeller labeller = new Labeller(visitor.getLabelTable(), "print-boolean");
+		ASMLabel falseLabel = labeller.newLabel("false");
+		ASMLabel joinLabel  = labeller.newLabel("join");
 		
-		String format = printFormat(type);
-		code.add(PushD, format);
-		code.add(Printf);
+		code.append(visitor.removeJumpCode(node, falseLabel, false));
+		code.add(PushD, RunTime.BOOLEAN_TRUE_STRING);
+		code.add(Jump, joinLabel);
+		code.add(Label, falseLabel);
+		code.add(PushD, RunTime.BOOLEAN_FALSE_STRING);
+		code.add(Label, joinLabel);
 	}
 
-
-	private static String printFormat(Type type) {
+	private static String conversion(Type type) {
 		assert type instanceof PrimitiveType;
 		
 		switch((PrimitiveType)type) {
-		case INTEGER:	return RunTime.INTEGER_PRINT_FORMAT;
-		case FLOATING:	return RunTime.FLOATING_PRINT_FORMAT;
-		case BOOLEAN:	return RunTime.BOOLEAN_PRINT_FORMAT;
-		case CHARACTER:	return RunTime.CHARACTER_PRINT_FORMAT;
-		case STRING:	return RunTime.STRING_PRINT_FORMAT;
+		case INTEGER:	return "%d";
+		case FLOATING:	return "%g";
+		case BOOLEAN:	return "%s";
+		case CHARACTER:	return "%c";
+		case STRING:	return "%s";
 		default:		
-			assert false : "Type " + type + " unimplemented in PrintStatementGenerator.printFormat()";
+			assert false : "Type " + type + " unimplemented in PrintStatementGenerator.conversion()";
 			return "";
 		}
 	}
+	
+	
+	////////////////////////////////////////////////////////////////////
+	// runtime errors and temporaries
+	
+	private static boolean canHalt(ParseNode node) {
+		if(node instanceof BinaryOperatorNode && isUncheckedDivision((BinaryOperatorNode)node)) {
+			return true;
+		}
+		for(ParseNode child : node.getChildren()) {
+			if(canHalt(child)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	private static boolean isUncheckedDivision(BinaryOperatorNode node) {
+		Object variant = node.getSignature().getVariant();
+		return (variant == ASMOpcode.Divide || variant == ASMOpcode.FDivide) && !node.divisorIsNonzero();
+	}
+	
+	private static Set<Binding> identitySet() {
+		return Collections.newSetFromMap(new IdentityHashMap<Binding, Boolean>());
+	}
+	private static boolean readsAnyOf(ParseNode node, Set<Binding> temporaries) {
+		if(node instanceof IdentifierNode && temporaries.contains(((IdentifierNode)node).getBinding())) {
+			return true;
+		}
+		for(ParseNode child : node.getChildren()) {
+			if(readsAnyOf(child, temporaries)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	private static void addTemporariesStored(ParseNode node, Set<Binding> temporaries) {
+		if(node instanceof TemporaryStoreNode) {
+			temporaries.add(((TemporaryStoreNode)node).getTemporary());
+		}
+		for(ParseNode child : node.getChildren()) {
+			addTemporariesStored(child, temporaries);
+		}
+	}
 }
@@ -0,0 +1,251 @@
+package asmCodeGenerator.codeStorage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import logging.PikaLogger;
+
+// The binary .asmb form of code, for passing code between Pika tools
+// without formatting and re-parsing text.  A file is:
+//
+//     "ASMB" version flags
+//     poolSize  { length utf8-bytes }         the string pool
+//     count     { opcode operand [comment] }  the instructions
+//
+// where version and flags are single bytes, and every length, count and
+// index is an unsigned varint (7 bits per byte, low bits first, high bit set
+// on all but the last byte).  An opcode is its ordinal as one byte.  Integer
+// operands are zigzag varints, floating operands are the 8 bytes of the
+// double, and string operands are pool indices.  If flags has WITH_COMMENTS
+// set, each instruction ends with 0 for no comment or 1 + the comment's
+// pool index.
+public class ASMBinaryFormat {
+	public static final String EXTENSION = ".asmb";
+	private static final byte[] MAGIC = { 'A', 'S', 'M', 'B' };
+	private static final int VERSION = 1;
+	private static final int WITH_COMMENTS = 1;
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+	private static final ASMOpcode[] OPCODES = ASMOpcode.values();
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	public static boolean isBinaryFilename(String filename) {
+		return filename.endsWith(EXTENSION);
+	}
+
+
+	////////////////////////////////////////////////////////////////////
+	// writing
+
+	/** Writes code to a file in binary form, logging any output error. */
+	public static void writeToFile(String filename, ASMCodeFragment code, boolean withComments) {
+		try {
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(filename), BUFFER_SIZE));
+			try {
+				write(out, code, withComments);
+			}
+			finally {
+				out.close();
+			}
+		}
+		catch (IOException e) {
+			error("write error: problem writing " + filename);
+		}
+	}
+	private static void write(DataOutputStream out, ASMCodeFragment code, boolean withComments)
+			throws IOException {
+		code.nameLabels();
+		List<String> pool = new ArrayList<String>();
+		Map<String, Integer> poolIndices = new HashMap<String, Integer>();
+		int count = 0;
+		for(ASMCodeChunk chunk: code.chunks()) {
+			InstructionBuffer instructions = chunk.getInstructions();
+			for(int i = instructions.nextLive(0); i < instructions.size(); i = instructions.nextLive(i + 1)) {
+				if(instructions.opcode(i).takesString()) {
+					poolIndex(instructions.stringOperand(i), pool, poolIndices);
+				}
+				if(withComments && !instructions.comment(i).isEmpty()) {
+					poolIndex(instructions.comment(i), pool, poolIndices);
+				}
+				count++;
+			}
+		}
+
+		out.write(MAGIC);
+		out.writeByte(VERSION);
+		out.writeByte(withComments ? WITH_COMMENTS : 0);
+		writeVarint(out, pool.size());
+		for(String string: pool) {
+			byte[] bytes = string.getBytes(CHARSET);
+			writeVarint(out, bytes.length);
+			out.write(bytes);
+		}
+
+		writeVarint(out, count);
+		for(ASMCodeChunk chunk: code.chunks()) {
+			InstructionBuffer instructions = chunk.getInstructions();
+			for(int i = instructions.nextLive(0); i < instructions.size(); i = instructions.nextLive(i + 1)) {
+				writeInstruction(out, instructions, i, poolIndices, withComments);
+			}
+		}
+	}
+	private static void writeInstruction(DataOutputStream out, InstructionBuffer instructions, int i,
+			Map<String, Integer> poolIndices, boolean withComments) throws IOException {
+		ASMOpcode opcode = instructions.opcode(i);
+		out.writeByte(opcode.ordinal());
+		if(opcode.takesInteger()) {
+			int operand = instructions.intOperand(i);
+			writeVarint(out, (operand << 1) ^ (operand >> 31));
+		}
+		else if(opcode.takesFloat()) {
+			out.writeLong(Double.doubleToRawLongBits(instructions.floatOperand(i)));
+		}
+		else if(opcode.takesString()) {
+			writeVarint(out, poolIndices.get(instructions.stringOperand(i)));
+		}
+		if(withComments) {
+			String comment = instructions.comment(i);
+			writeVarint(out, comment.isEmpty() ? 0 : 1 + poolIndices.get(comment));
+		}
+	}
+	private static int poolIndex(String string, List<String> pool, Map<String, Integer> poolIndices) {
+		Integer index = poolIndices.get(string);
+		if(index == null) {
+			index = pool.size();
+			pool.add(string);
+			poolIndices.put(string, index);
+		}
+		return index;
+	}
+	private static void writeVarint(DataOutputStream out, int value) throws IOException {
+		while((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+
+	////////////////////////////////////////////////////////////////////
+	// reading
+
+	/** Reads the instructions of a binary file. */
+	public static InstructionBuffer read(String filename) throws IOException {
+		DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(filename), BUFFER_SIZE));
+		try {
+			return read(in);
+		}
+		catch (EOFException e) {
+			throw new ASMReader.InstructionReadingException("unexpected end of file");
+		}
+		finally {
+			in.close();
+		}
+	}
+	private static InstructionBuffer read(DataInputStream in) throws IOException {
+		readHeader(in);
+		boolean withComments = (in.readUnsignedByte() & WITH_COMMENTS) != 0;
+
+		String[] pool = new String[readCount(in)];
+		for(int i = 0; i < pool.length; i++) {
+			byte[] bytes = new byte[readCount(in)];
+			in.readFully(bytes);
+			pool[i] = new String(bytes, CHARSET);
+		}
+
+		InstructionBuffer result = new InstructionBuffer();
+		int count = readCount(in);
+		for(int i = 0; i < count; i++) {
+			readInstruction(in, pool, withComments, result);
+		}
+		if(in.read() != -1) {
+			throw new ASMReader.InstructionReadingException("data after last instruction");
+		}
+		return result;
+	}
+	private static void readHeader(DataInputStream in) throws IOException {
+		byte[] magic = new byte[MAGIC.length];
+		in.readFully(magic);
+		if(!java.util.Arrays.equals(magic, MAGIC)) {
+			throw new ASMReader.InstructionReadingException("not a binary ASM file");
+		}
+		int version = in.readUnsignedByte();
+		if(version != VERSION) {
+			throw new ASMReader.InstructionReadingException("binary ASM version " + version);
+		}
+	}
+	private static void readInstruction(DataInputStream in, String[] pool, boolean withComments,
+			InstructionBuffer result) throws IOException {
+		int ordinal = in.readUnsignedByte();
+		if(ordinal >= OPCODES.length) {
+			throw new ASMReader.InstructionReadingException("opcode " + ordinal);
+		}
+		ASMOpcode opcode = OPCODES[ordinal];
+
+		if(opcode.takesInteger()) {
+			int zigzag = readVarint(in);
+			int operand = (zigzag >>> 1) ^ -(zigzag & 1);
+			result.add(opcode, operand, readComment(in, pool, withComments));
+		}
+		else if(opcode.takesFloat()) {
+			double operand = Double.longBitsToDouble(in.readLong());
+			result.add(opcode, operand, readComment(in, pool, withComments));
+		}
+		else if(opcode.takesString()) {
+			String operand = poolString(pool, readVarint(in));
+			result.add(opcode, operand, readComment(in, pool, withComments));
+		}
+		else {
+			result.add(opcode, "", readComment(in, pool, withComments));
+		}
+	}
+	private static String readComment(DataInputStream in, String[] pool, boolean withComments)
+			throws IOException {
+		if(!withComments) {
+			return "";
+		}
+		int index = readVarint(in);
+		return index == 0 ? "" : poolString(pool, index - 1);
+	}
+	private static String poolString(String[] pool, int index) {
+		if(index < 0 || index >= pool.length) {
+			throw new ASMReader.InstructionReadingException("string pool index " + index);
+		}
+		return pool[index];
+	}
+	private static int readCount(DataInputStream in) throws IOException {
+		int count = readVarint(in);
+		if(count < 0) {
+			throw new ASMReader.InstructionReadingException("count " + count);
+		}
+		return count;
+	}
+	private static int readVarint(DataInputStream in) throws IOException {
+		int value = 0;
+		for(int shift = 0; shift < 35; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new ASMReader.InstructionReadingException("malformed varint");
+	}
+
+	private static void error(String message) {
+		PikaLogger log = PikaLogger.getLogger("compiler.ASMBinaryFormat");
+		log.severe(message);
+	}
+}
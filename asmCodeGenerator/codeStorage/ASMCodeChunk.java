@@ -1,51 +1,47 @@
 package asmCodeGenerator.codeStorage;
 
-import java.util.LinkedList;
-import java.util.List;
-
 // a glorified list of instructions.
 public class ASMCodeChunk {
-	List<ASMInstruction> instructions;
+	InstructionBuffer instructions;
 	
 	public ASMCodeChunk() {
-		instructions = new LinkedList<ASMInstruction>();
+		instructions = new InstructionBuffer();
+	}
+	public ASMCodeChunk(InstructionBuffer instructions) {
+		this.instructions = instructions;
 	}
 	public void add(ASMOpcode opcode, int operand, String comment) {
-		ASMInstruction instruction = new ASMInstruction(opcode, operand, comment);
-		instructions.add(instruction);
+		instructions.add(opcode, operand, comment);
 	}
 	public void add(ASMOpcode opcode, int operand) {
-		ASMInstruction instruction = new ASMInstruction(opcode, operand);
-		instructions.add(instruction);
+		instructions.add(opcode, operand, "");
 	}
 	public void add(ASMOpcode opcode, double operand, String comment) {
-		ASMInstruction instruction = new ASMInstruction(opcode, operand, comment);
-		instructions.add(instruction);
+		instructions.add(opcode, operand, comment);
 	}
 	public void add(ASMOpcode opcode, double operand) {
-		ASMInstruction instruction = new ASMInstruction(opcode, operand);
-		instructions.add(instruction);
+		instructions.add(opcode, operand, "");
 	}
 	public void add(ASMOpcode opcode, String operand, String comment) {
-		ASMInstruction instruction = new ASMInstruction(opcode, operand, comment);
-		instructions.add(instruction);
+		instructions.add(opcode, operand, comment);
 	}
 	public void add(ASMOpcode opcode, String operand) {
-		ASMInstruction instruction = new ASMInstruction(opcode, operand);
-		instructions.add(instruction);
+		instructions.add(opcode, operand, "");
+	}
+	public void add(ASMOpcode opcode, ASMLabel label, String comment) {
+		instructions.add(opcode, label, comment);
+	}
+	public void add(ASMOpcode opcode, ASMLabel label) {
+		instructions.add(opcode, label, "");
 	}
 	public void add(ASMOpcode opcode) {
-		ASMInstruction instruction = new ASMInstruction(opcode);
-		instructions.add(instruction);
+		instructions.add(opcode);
+	}
+	public InstructionBuffer getInstructions() {
+		return instructions;
 	}
 	
-	static private String terminator = System.getProperty("line.separator");
 	public String toString() {
-		StringBuffer buffer = new StringBuffer();
-		for(ASMInstruction instruction: instructions) {
-			buffer.append(instruction.toString());
-			buffer.append(terminator);
-		}
-		return buffer.toString();
+		return instructions.toString();
 	}
 }
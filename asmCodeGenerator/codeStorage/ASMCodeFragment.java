@@ -1,14 +1,32 @@
 package asmCodeGenerator.codeStorage;
 
-import inputHandler.InputHandler;
-
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import logging.PikaLogger;
 
+// A fragment is a rope: a linked list of pieces, each either a chunk or a
+// whole fragment appended to this one.  Appending is O(1) and shares the
+// appended fragment rather than copying it; the chunks are flattened once,
+// in order, when the code is emitted.
 public class ASMCodeFragment {
-	private List<ASMCodeChunk> chunks;
+	private Piece firstPiece;
+	private Piece lastPiece;
+	
+	private static class Piece {
+		final ASMCodeChunk chunk;				// exactly one of chunk and fragment is non-null.
+		final ASMCodeFragment fragment;
+		Piece next;
+		
+		Piece(ASMCodeChunk chunk, ASMCodeFragment fragment) {
+			this.chunk = chunk;
+			this.fragment = fragment;
+			this.next = null;
+		}
+	}
 	
 	// these names refer to what the code in the fragment
 	// leaves on top of the accumulator: either nothing, a value
@@ -22,7 +40,8 @@ public class ASMCodeFragment {
 	CodeType codeType;
 	
 	public ASMCodeFragment(CodeType codeType) {
-		chunks = new ArrayList<ASMCodeChunk>();
+		firstPiece = null;
+		lastPiece = null;
 		this.codeType = codeType;
 	}
 	
@@ -48,10 +67,11 @@ public class ASMCodeFragment {
 	/** Append all instructions in the argument to this code fragment.
 	 *  This does not change the type of this code fragment; you must
 	 *  call markAsXXX afterwards if you need that to happen.
+	 *  The argument is linked in, not copied: do not add to it afterwards.
 	 * @param fragment
 	 */
 	public void append(ASMCodeFragment fragment) {
-		chunks.addAll(fragment.chunks);
+		addPiece(new Piece(null, fragment));
 	}
 	
 	public void add(ASMOpcode opcode, int operand, String comment) {
@@ -72,115 +92,148 @@ public class ASMCodeFragment {
 	public void add(ASMOpcode opcode, String operand) {
 		lastChunk().add(opcode, operand);
 	}
+	public void add(ASMOpcode opcode, ASMLabel label, String comment) {
+		lastChunk().add(opcode, label, comment);
+	}
+	public void add(ASMOpcode opcode, ASMLabel label) {
+		lastChunk().add(opcode, label);
+	}
 	public void add(ASMOpcode opcode) {
 		lastChunk().add(opcode);
 	}
 
 	private ASMCodeChunk lastChunk() {
-		if(chunks.size() == 0) {
+		if(lastPiece == null || lastPiece.chunk == null) {
 			newChunk();
 		}
-		return chunks.get(chunks.size() - 1);
+		return lastPiece.chunk;
 	}
 	
 	private void newChunk() {
 		ASMCodeChunk chunk = new ASMCodeChunk();
-		chunks.add(chunk);
+		addChunk(chunk);
 	}
 
 	
 	public void addChunk(ASMCodeChunk chunk) {
-		chunks.add(chunk);
+		addPiece(new Piece(chunk, null));
 	}
-	
-	
-	
-	public String toString() {
-		StringBuffer buffer = new StringBuffer();
-		for(ASMCodeChunk chunk: chunks) {
-			buffer.append(chunk.toString());
+	private void addPiece(Piece piece) {
+		if(lastPiece == null) {
+			firstPiece = piece;
 		}
-		return buffer.toString();
-	}
-
-	public static ASMCodeFragment readFrom(String filename) {
-		System.out.println("readFrom: " + filename);
-		ASMCodeFragment result = new ASMCodeFragment(CodeType.GENERATES_VOID);
-		try {
-			read(filename, result);
-		}
-		catch (IllegalArgumentException | InstructionReadingException e) {
-			error("problem reading " + filename);
+		else {
+			lastPiece.next = piece;
 		}
-		
-		return result;
+		lastPiece = piece;
 	}
-
-	private static void read(String filename, ASMCodeFragment result) {
-		InputHandler handler = InputHandler.fromFilename(filename);
-		for(String line: handler) {
-			readInstruction(line, result);
+	
+	
+	/** The chunks of this fragment, including those of appended fragments, in order. */
+	public Iterable<ASMCodeChunk> chunks() {
+		return new Iterable<ASMCodeChunk>() {
+			public Iterator<ASMCodeChunk> iterator() {
+				return new ChunkIterator(firstPiece);
+			}
+		};
+	}
+	// walks the rope depth first; the stack holds the pieces to resume
+	// after each appended fragment, so deep ropes do not recurse.
+	private static class ChunkIterator implements Iterator<ASMCodeChunk> {
+		private Piece piece;
+		private Deque<Piece> resumePieces;
+		
+		ChunkIterator(Piece first) {
+			piece = first;
+			resumePieces = new ArrayDeque<Piece>();
+			advanceToChunk();
 		}
-	}
-
-	private static void readInstruction(String line, ASMCodeFragment result) {
-		if(line.charAt(0) == '#') {			// will lose all full-line comments
-			return;
+		private void advanceToChunk() {
+			while(true) {
+				if(piece == null) {
+					if(resumePieces.isEmpty()) {
+						return;
+					}
+					piece = resumePieces.pop();
+				}
+				else if(piece.fragment != null) {
+					if(piece.next != null) {
+						resumePieces.push(piece.next);
+					}
+					piece = piece.fragment.firstPiece;
+				}
+				else {
+					return;
+				}
+			}
 		}
-		
-		String[] words = line.trim().split("\\s+");
-		ASMOpcode opcode = readOpcode(words[0]);
-		
-		if(opcode.takesFloat()) {
-			double d = Double.parseDouble(words[1]);
-			String comment = commentStartingAtIndex(2, words);
-			result.add(opcode, d, comment);
+		public boolean hasNext() {
+			return piece != null;
 		}
-		else if (opcode.takesInteger()) {
-			int i = Integer.parseInt(words[1]);
-			String comment = commentStartingAtIndex(2, words);
-			result.add(opcode, i, comment);
+		public ASMCodeChunk next() {
+			if(piece == null) {
+				throw new NoSuchElementException();
+			}
+			ASMCodeChunk result = piece.chunk;
+			piece = piece.next;
+			advanceToChunk();
+			return result;
 		}
-		else if (opcode.takesString()) {
-			String s = words[1];
-			String comment = commentStartingAtIndex(2, words);
-			result.add(opcode, s, comment);
+		public void remove() {
+			throw new UnsupportedOperationException();
 		}
-		else {
-			String comment = commentStartingAtIndex(1, words);
-			result.add(opcode, "", comment);
+	}
+	
+	/** All instructions of this fragment copied into one buffer, for the optimizer. */
+	public InstructionBuffer toInstructionBuffer() {
+		InstructionBuffer result = new InstructionBuffer();
+		for(ASMCodeChunk chunk: chunks()) {
+			result.append(chunk.getInstructions());
 		}
+		return result;
 	}
-
-	private static String commentStartingAtIndex(int i, String[] words) {
-		if(words.length <= i) {
-			return "";
+	// gives every generated label its text, numbering label groups in order of
+	// first use.  Writers call this first, so labels come out numbered in order.
+	public void nameLabels() {
+		for(ASMCodeChunk chunk: chunks()) {
+			chunk.getInstructions().nameLabels();
 		}
-		
-		String comment = words[i];
-		
-		for(int index=i+1; index < words.length; index++) {
-			comment = comment + " " + words[index];
+	}
+	/** A fragment whose code is the given buffer.  The buffer is not copied. */
+	public static ASMCodeFragment fromInstructionBuffer(InstructionBuffer instructions, CodeType codeType) {
+		ASMCodeFragment result = new ASMCodeFragment(codeType);
+		result.addChunk(new ASMCodeChunk(instructions));
+		return result;
+	}
+	
+	public String toString() {
+		StringBuffer buffer = new StringBuffer();
+		for(ASMCodeChunk chunk: chunks()) {
+			buffer.append(chunk.toString());
 		}
-		return comment;
+		return buffer.toString();
 	}
 
-	private static ASMOpcode readOpcode(String word) {
+	// reads a text ASM file, or a binary one if filename ends in .asmb.
+	public static ASMCodeFragment readFrom(String filename) {
+		System.out.println("readFrom: " + filename);
 		try {
-			return ASMOpcode.valueOf(word);
+			InstructionBuffer instructions = ASMBinaryFormat.isBinaryFilename(filename)
+					? ASMBinaryFormat.read(filename)
+					: ASMReader.read(filename);
+			return fromInstructionBuffer(instructions, CodeType.GENERATES_VOID);
 		}
-		catch (IllegalArgumentException | NullPointerException e) {
-			throw new InstructionReadingException("opcode " + word, e);
+		catch (IOException | ASMReader.InstructionReadingException e) {
+			error("problem reading " + filename);
+			return new ASMCodeFragment(CodeType.GENERATES_VOID);
 		}
 	}
-	
-	private static class InstructionReadingException extends RuntimeException {
-		private static final long serialVersionUID = -6900237919002204679L;
 
-		public InstructionReadingException(String s, RuntimeException e) {
-			super(s, e);
-		}
+	// writes this code in the binary .asmb form; readFrom() reads it back.
+	public void writeBinaryTo(String filename, boolean withComments) {
+		ASMBinaryFormat.writeToFile(filename, this, withComments);
 	}
+
 	private static void error(String message) {
 		PikaLogger log = PikaLogger.getLogger("compiler.Optimizer");
 		log.severe("read error: " + message);
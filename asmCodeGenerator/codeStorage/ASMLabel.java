@@ -0,0 +1,29 @@
+package asmCodeGenerator.codeStorage;
+
+// a generated label: an id in a LabelTable.  Instructions store only the id.
+public final class ASMLabel {
+	private final LabelTable table;
+	private final int id;
+
+	ASMLabel(LabelTable table, int id) {
+		this.table = table;
+		this.id = id;
+	}
+	public LabelTable getTable() {
+		return table;
+	}
+	public int getId() {
+		return id;
+	}
+
+	public boolean equals(Object other) {
+		return other instanceof ASMLabel &&
+				((ASMLabel) other).table == table && ((ASMLabel) other).id == id;
+	}
+	public int hashCode() {
+		return id;
+	}
+	public String toString() {
+		return table.name(id);
+	}
+}
@@ -202,4 +202,14 @@ public enum ASMOpcode {
 		return (this == ASMOpcode.Return || this == ASMOpcode.Halt);
 	}
 	
+	// the conditional jump taken exactly when this one is not, or null if there is none.
+	// (JumpPos and JumpNeg are not inverses: neither is taken on zero.)
+	public ASMOpcode inverseJump() {
+		switch(this) {
+		case JumpTrue:	return JumpFalse;
+		case JumpFalse:	return JumpTrue;
+		default:		return null;
+		}
+	}
+	
 }
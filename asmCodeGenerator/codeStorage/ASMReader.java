@@ -0,0 +1,370 @@
+package asmCodeGenerator.codeStorage;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+// Reads an ASM file into an InstructionBuffer.  The file is memory-mapped
+// (in windows of at most WINDOW_SIZE bytes, each ending at a line break) and
+// scanned a byte at a time: opcodes are found through a perfect hash on their
+// spelling and numeric operands are parsed in place, so the only objects
+// made per line are the operand and comment strings.
+//
+// A line is an opcode, its operand if it takes one, and an optional comment
+// (the remaining words, joined by single spaces).  Blank lines and lines
+// starting with # are skipped.
+public class ASMReader {
+	private static final long WINDOW_SIZE = 1L << 30;
+	private static final Charset CHARSET = Charset.defaultCharset();
+
+	private MappedByteBuffer bytes;
+	private int position;
+	private int lineEnd;
+	private byte[] scratch = new byte[256];
+	private InstructionBuffer result = new InstructionBuffer();
+
+	public static InstructionBuffer read(String filename) throws IOException {
+		ASMReader reader = new ASMReader();
+		FileInputStream stream = new FileInputStream(filename);
+		try {
+			reader.readAll(stream.getChannel());
+		}
+		finally {
+			stream.close();
+		}
+		return reader.result;
+	}
+	private ASMReader() {}
+
+	private void readAll(FileChannel channel) throws IOException {
+		long start = 0;
+		long size = channel.size();
+		while(start < size) {
+			long length = Math.min(WINDOW_SIZE, size - start);
+			bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+			int end = (start + length == size) ? (int)length : afterLastNewline((int)length);
+			readLines(end);
+			start += end;
+		}
+	}
+	private int afterLastNewline(int length) {
+		for(int i = length - 1; i >= 0; i--) {
+			if(bytes.get(i) == '\n') {
+				return i + 1;
+			}
+		}
+		throw new InstructionReadingException("line longer than " + WINDOW_SIZE + " bytes");
+	}
+
+
+	////////////////////////////////////////////////////////////////////
+	// lines
+
+	private void readLines(int end) {
+		position = 0;
+		while(position < end) {
+			lineEnd = position;
+			while(lineEnd < end && bytes.get(lineEnd) != '\n') {
+				lineEnd++;
+			}
+			readLine();
+			position = lineEnd + 1;
+		}
+	}
+	private void readLine() {
+		skipWhitespace();
+		if(position == lineEnd || bytes.get(position) == '#') {
+			return;
+		}
+		ASMOpcode opcode = readOpcode();
+
+		if(opcode.takesFloat()) {
+			double d = readDouble();
+			result.add(opcode, d, readComment());
+		}
+		else if(opcode.takesInteger()) {
+			int i = readInteger();
+			result.add(opcode, i, readComment());
+		}
+		else if(opcode.takesString()) {
+			String s = readWord();
+			result.add(opcode, s, readComment());
+		}
+		else {
+			result.add(opcode, "", readComment());
+		}
+	}
+
+	private void skipWhitespace() {
+		while(position < lineEnd && isWhitespace(bytes.get(position))) {
+			position++;
+		}
+	}
+	// the characters matched by \s in a regular expression.
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == '\r' || b == '\f' || b == 0x0B;
+	}
+	// advances past the next word, returning its end; position is left at its start.
+	private int wordEnd() {
+		skipWhitespace();
+		int end = position;
+		while(end < lineEnd && !isWhitespace(bytes.get(end))) {
+			end++;
+		}
+		if(end == position) {
+			throw new InstructionReadingException("missing operand");
+		}
+		return end;
+	}
+	private String readWord() {
+		int end = wordEnd();
+		int length = copyToScratch(position, end, 0);
+		position = end;
+		return new String(scratch, 0, length, CHARSET);
+	}
+	private String readComment() {
+		int length = 0;
+		skipWhitespace();
+		while(position < lineEnd) {
+			int end = wordEnd();
+			if(length > 0) {
+				length = copyToScratch(-1, -1, length);
+			}
+			length = copyToScratch(position, end, length);
+			position = end;
+			skipWhitespace();
+		}
+		return length == 0 ? "" : new String(scratch, 0, length, CHARSET);
+	}
+	// appends bytes [from, to) of the line to scratch at offset, or a single
+	// space if from is negative; returns the new length.
+	private int copyToScratch(int from, int to, int offset) {
+		int count = from < 0 ? 1 : to - from;
+		if(offset + count > scratch.length) {
+			byte[] larger = new byte[Math.max(2 * scratch.length, offset + count)];
+			System.arraycopy(scratch, 0, larger, 0, offset);
+			scratch = larger;
+		}
+		if(from < 0) {
+			scratch[offset] = ' ';
+		}
+		for(int i = from; i < to; i++) {
+			scratch[offset++] = bytes.get(i);
+		}
+		return from < 0 ? offset + 1 : offset;
+	}
+
+
+	////////////////////////////////////////////////////////////////////
+	// opcodes, through a perfect hash: opcodeTable[slot(name)] is the only
+	// opcode that could be spelled name.
+
+	private static final ASMOpcode[] OPCODES = ASMOpcode.values();
+	private static final byte[][] SPELLINGS = new byte[OPCODES.length][];
+	private static final int TABLE_BITS = 8;
+	private static final ASMOpcode[] opcodeTable = new ASMOpcode[1 << TABLE_BITS];
+	private static int multiplier;
+
+	static {
+		for(int i = 0; i < OPCODES.length; i++) {
+			SPELLINGS[i] = OPCODES[i].name().getBytes(CHARSET);
+		}
+		multiplier = 0x9E3779B1;
+		while(!fillsTableWithoutCollision()) {
+			multiplier += 2;
+		}
+	}
+	private static boolean fillsTableWithoutCollision() {
+		java.util.Arrays.fill(opcodeTable, null);
+		for(int i = 0; i < OPCODES.length; i++) {
+			int slot = slot(hash(SPELLINGS[i], 0, SPELLINGS[i].length));
+			if(opcodeTable[slot] != null) {
+				return false;
+			}
+			opcodeTable[slot] = OPCODES[i];
+		}
+		return true;
+	}
+	private static int hash(byte[] spelling, int from, int to) {
+		int hash = 0;
+		for(int i = from; i < to; i++) {
+			hash = 31 * hash + spelling[i];
+		}
+		return hash;
+	}
+	private static int slot(int hash) {
+		return (hash * multiplier) >>> (32 - TABLE_BITS);
+	}
+
+	private ASMOpcode readOpcode() {
+		int end = wordEnd();
+		int hash = 0;
+		for(int i = position; i < end; i++) {
+			hash = 31 * hash + bytes.get(i);
+		}
+		ASMOpcode opcode = opcodeTable[slot(hash)];
+		if(opcode == null || !spelledAt(SPELLINGS[opcode.ordinal()], position, end)) {
+			throw new InstructionReadingException("opcode " + lineText());
+		}
+		position = end;
+		return opcode;
+	}
+	private boolean spelledAt(byte[] spelling, int from, int to) {
+		if(spelling.length != to - from) {
+			return false;
+		}
+		for(int i = 0; i < spelling.length; i++) {
+			if(spelling[i] != bytes.get(from + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+	////////////////////////////////////////////////////////////////////
+	// numeric operands
+
+	// accepts what Integer.parseInt does.
+	private int readInteger() {
+		int end = wordEnd();
+		int i = position;
+		boolean negative = false;
+		if(bytes.get(i) == '-' || bytes.get(i) == '+') {
+			negative = bytes.get(i) == '-';
+			i++;
+		}
+		if(i == end) {
+			throw new InstructionReadingException("integer " + lineText());
+		}
+		long value = 0;
+		for(; i < end; i++) {
+			int digit = bytes.get(i) - '0';
+			if(digit < 0 || digit > 9) {
+				throw new InstructionReadingException("integer " + lineText());
+			}
+			value = 10 * value + digit;
+			if(value > (long)Integer.MAX_VALUE + 1) {
+				throw new InstructionReadingException("integer " + lineText());
+			}
+		}
+		if(negative) {
+			value = -value;
+		}
+		if(value > Integer.MAX_VALUE) {
+			throw new InstructionReadingException("integer " + lineText());
+		}
+		position = end;
+		return (int)value;
+	}
+
+	// Decimal numbers whose digits fit in a double's significand and whose
+	// decimal exponent is at most 22 are converted with a single correctly
+	// rounded multiplication or division, as both operands are exact.
+	// Anything else goes to Double.parseDouble.
+	private static final long MAX_EXACT_SIGNIFICAND = 1L << 53;
+	private static final int MAX_EXACT_POWER = 22;
+	private static final double[] POWERS_OF_TEN = new double[MAX_EXACT_POWER + 1];
+	static {
+		POWERS_OF_TEN[0] = 1.0;
+		for(int i = 1; i <= MAX_EXACT_POWER; i++) {
+			POWERS_OF_TEN[i] = 10.0 * POWERS_OF_TEN[i - 1];
+		}
+	}
+
+	private double readDouble() {
+		int end = wordEnd();
+		int i = position;
+		boolean negative = false;
+		if(bytes.get(i) == '-' || bytes.get(i) == '+') {
+			negative = bytes.get(i) == '-';
+			i++;
+		}
+		long significand = 0;
+		int exponent = 0;
+		int digits = 0;
+		boolean exact = true;
+		for(; i < end && isDigit(bytes.get(i)); i++, digits++) {
+			exact &= accumulate(significand, bytes.get(i));
+			significand = 10 * significand + (bytes.get(i) - '0');
+		}
+		if(i < end && bytes.get(i) == '.') {
+			for(i++; i < end && isDigit(bytes.get(i)); i++, digits++) {
+				exact &= accumulate(significand, bytes.get(i));
+				significand = 10 * significand + (bytes.get(i) - '0');
+				exponent--;
+			}
+		}
+		if(i < end && (bytes.get(i) == 'e' || bytes.get(i) == 'E')) {
+			i++;
+			exponent += readExponent(i, end);
+			i = end;
+		}
+		if(i != end || digits == 0 || !exact || Math.abs(exponent) > MAX_EXACT_POWER) {
+			return parseDoubleSlowly(end);
+		}
+		double value = exponent < 0 ? significand / POWERS_OF_TEN[-exponent]
+									: significand * POWERS_OF_TEN[exponent];
+		position = end;
+		return negative ? -value : value;
+	}
+	private static boolean isDigit(byte b) {
+		return '0' <= b && b <= '9';
+	}
+	private static boolean accumulate(long significand, byte digit) {
+		return 10 * significand + (digit - '0') <= MAX_EXACT_SIGNIFICAND;
+	}
+	// a large value (forcing the slow path) if the exponent is malformed or huge.
+	private int readExponent(int from, int end) {
+		int i = from;
+		boolean negative = false;
+		if(i < end && (bytes.get(i) == '-' || bytes.get(i) == '+')) {
+			negative = bytes.get(i) == '-';
+			i++;
+		}
+		if(i == end || end - i > 4) {
+			return Integer.MAX_VALUE / 2;
+		}
+		int exponent = 0;
+		for(; i < end; i++) {
+			if(!isDigit(bytes.get(i))) {
+				return Integer.MAX_VALUE / 2;
+			}
+			exponent = 10 * exponent + (bytes.get(i) - '0');
+		}
+		return negative ? -exponent : exponent;
+	}
+	private double parseDoubleSlowly(int end) {
+		int length = copyToScratch(position, end, 0);
+		try {
+			double value = Double.parseDouble(new String(scratch, 0, length, CHARSET));
+			position = end;
+			return value;
+		}
+		catch (NumberFormatException e) {
+			throw new InstructionReadingException("floating " + lineText(), e);
+		}
+	}
+
+	private String lineText() {
+		int lineStart = position;
+		while(lineStart > 0 && bytes.get(lineStart - 1) != '\n') {
+			lineStart--;
+		}
+		int length = copyToScratch(lineStart, lineEnd, 0);
+		return new String(scratch, 0, length, CHARSET).trim();
+	}
+
+	public static class InstructionReadingException extends RuntimeException {
+		private static final long serialVersionUID = -6900237919002204679L;
+
+		public InstructionReadingException(String s) {
+			super(s);
+		}
+		public InstructionReadingException(String s, RuntimeException e) {
+			super(s, e);
+		}
+	}
+}
@@ -0,0 +1,341 @@
+package asmCodeGenerator.codeStorage;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import logging.PikaLogger;
+
+// Writes code in the text form of ASMInstruction.toString(), byte for byte,
+// without building the program as one string.  Instructions are formatted
+// by hand into a small buffer that is flushed to the output as it fills.
+//
+// writeToFileInParallel() instead renders ranges of about RANGE_SIZE
+// instructions on a ForkJoinPool, each into its own ByteBuffer, and writes
+// the buffers in order with gathering writes.
+public class ASMWriter {
+	private static final int FLUSH_THRESHOLD = 1 << 14;
+	private static final int RANGE_SIZE = 1 << 12;
+	private static final String INDENTATION = "        ";
+	private static final int OPCODE_WIDTH = 12;
+	private static final int ARGUMENT_WIDTH = 25;
+	private static final int FLOATING_PRECISION = 6;
+	private static final String TERMINATOR = System.getProperty("line.separator");
+	
+	// indentation + opcode, padded as String.format("%-12s ") pads it.
+	private static final String[] OPCODE_PREFIXES = opcodePrefixes();
+	private static final String BLANK_ARGUMENT = padding(ARGUMENT_WIDTH);
+	
+	private Writer out;
+	private StringBuilder text;
+	
+	
+	/** Writes code to a file, logging any output error. */
+	public static void writeToFile(String filename, ASMCodeFragment code) {
+		try {
+			Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filename)));
+			try {
+				new ASMWriter(out).write(code);
+			}
+			finally {
+				out.close();
+			}
+		}
+		catch (IOException e) {
+			error("problem writing " + filename);
+		}
+	}
+	/** Writes code to a file, rendering on all cores; logs any output error. */
+	public static void writeToFileInParallel(String filename, ASMCodeFragment code) {
+		code.nameLabels();
+		List<RenderTask> tasks = renderTasks(code);
+		ForkJoinPool.commonPool().invoke(new RenderAll(tasks));
+		
+		ByteBuffer[] rendered = new ByteBuffer[tasks.size()];
+		for(int i = 0; i < rendered.length; i++) {
+			rendered[i] = tasks.get(i).join();
+		}
+		try {
+			FileOutputStream stream = new FileOutputStream(filename);
+			try {
+				writeAll(stream.getChannel(), rendered);
+			}
+			finally {
+				stream.close();
+			}
+		}
+		catch (IOException e) {
+			error("problem writing " + filename);
+		}
+	}
+	private static void writeAll(FileChannel channel, ByteBuffer[] buffers) throws IOException {
+		int first = 0;
+		while(first < buffers.length) {
+			channel.write(buffers, first, buffers.length - first);
+			while(first < buffers.length && !buffers[first].hasRemaining()) {
+				first++;
+			}
+		}
+	}
+	
+	// consecutive ranges of the code's instructions, none much over RANGE_SIZE:
+	// small chunks are grouped and large chunks split.
+	private static List<RenderTask> renderTasks(ASMCodeFragment code) {
+		List<RenderTask> tasks = new ArrayList<RenderTask>();
+		RenderTask task = new RenderTask();
+		for(ASMCodeChunk chunk: code.chunks()) {
+			InstructionBuffer instructions = chunk.getInstructions();
+			for(int from = 0; from < instructions.size(); from += RANGE_SIZE) {
+				int to = Math.min(from + RANGE_SIZE, instructions.size());
+				task.add(instructions, from, to);
+				if(task.size() >= RANGE_SIZE) {
+					tasks.add(task);
+					task = new RenderTask();
+				}
+			}
+		}
+		tasks.add(task);
+		return tasks;
+	}
+	private static class RenderTask extends RecursiveTask<ByteBuffer> {
+		private static final long serialVersionUID = 6018260519742963377L;
+		private List<InstructionBuffer> buffers = new ArrayList<InstructionBuffer>();
+		private List<int[]> ranges = new ArrayList<int[]>();
+		private int size = 0;
+		
+		void add(InstructionBuffer instructions, int from, int to) {
+			buffers.add(instructions);
+			ranges.add(new int[] {from, to});
+			size += to - from;
+		}
+		int size() {
+			return size;
+		}
+		protected ByteBuffer compute() {
+			StringBuilder text = new StringBuilder();
+			for(int i = 0; i < buffers.size(); i++) {
+				render(buffers.get(i), ranges.get(i)[0], ranges.get(i)[1], text);
+			}
+			return Charset.defaultCharset().encode(CharBuffer.wrap(text));
+		}
+	}
+	private static class RenderAll extends RecursiveTask<Void> {
+		private static final long serialVersionUID = -1283346380928816562L;
+		private List<RenderTask> tasks;
+		
+		RenderAll(List<RenderTask> tasks) {
+			this.tasks = tasks;
+		}
+		protected Void compute() {
+			invokeAll(tasks);
+			return null;
+		}
+	}
+	
+	public ASMWriter(Writer out) {
+		this.out = out;
+		this.text = new StringBuilder(2 * FLUSH_THRESHOLD);
+	}
+	
+	public void write(ASMCodeFragment code) throws IOException {
+		for(ASMCodeChunk chunk: code.chunks()) {
+			write(chunk.getInstructions());
+		}
+		flush();
+	}
+	public void write(InstructionBuffer instructions) throws IOException {
+		for(int i = instructions.nextLive(0); i < instructions.size(); i = instructions.nextLive(i + 1)) {
+			appendInstruction(text, instructions, i);
+			if(text.length() >= FLUSH_THRESHOLD) {
+				flush();
+			}
+		}
+	}
+	public void flush() throws IOException {
+		out.append(text);
+		text.setLength(0);
+		out.flush();
+	}
+	
+	
+	////////////////////////////////////////////////////////////////////
+	// formatting
+	
+	/** Appends the text of instructions from..to-1 (live ones only), each with its line terminator. */
+	public static void render(InstructionBuffer instructions, int from, int to, StringBuilder text) {
+		for(int i = instructions.nextLive(from); i < to; i = instructions.nextLive(i + 1)) {
+			appendInstruction(text, instructions, i);
+		}
+	}
+	
+	private static void appendInstruction(StringBuilder text, InstructionBuffer instructions, int index) {
+		ASMOpcode opcode = instructions.opcode(index);
+		String comment = instructions.comment(index);
+		
+		if(opcode == ASMOpcode.DataS) {
+			appendDataS(text, instructions.stringOperand(index), comment);
+		}
+		else {
+			text.append(OPCODE_PREFIXES[opcode.ordinal()]);
+			if(opcode.takesInteger()) {
+				appendPadded(text, instructions.intOperand(index));
+			}
+			else if(opcode.takesFloat()) {
+				appendPadded(text, generalFormat(instructions.floatOperand(index)));
+			}
+			else if(opcode.takesString()) {
+				appendPadded(text, instructions.stringOperand(index));
+			}
+			else {
+				text.append(BLANK_ARGUMENT);
+			}
+			text.append(' ').append(comment);
+		}
+		text.append(TERMINATOR);
+	}
+	
+	// one DataC per character and one for the terminating zero; the first
+	// carries the comment, which defaults to the string itself.
+	private static void appendDataS(StringBuilder text, String string, String comment) {
+		if(string.isEmpty()) {
+			appendDataC(text, 0, comment);
+			return;
+		}
+		if(comment.isEmpty()) {
+			comment = dataSComment(string);
+		}
+		appendDataC(text, string.charAt(0), comment);
+		for(int i = 1; i < string.length(); i++) {
+			text.append(TERMINATOR);
+			appendDataC(text, string.charAt(i), "");
+		}
+		text.append(TERMINATOR);
+		appendDataC(text, 0, "");
+	}
+	private static void appendDataC(StringBuilder text, int value, String comment) {
+		text.append(OPCODE_PREFIXES[ASMOpcode.DataC.ordinal()]);
+		appendPadded(text, value);
+		text.append(' ').append(comment);
+	}
+	private static String dataSComment(String string) {
+		StringBuilder comment = new StringBuilder(string.length() + 5);
+		comment.append("%% \"");
+		for(int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+			switch(c) {
+			case '\n':	comment.append("\\n");	break;
+			case '\r':	comment.append("\\r");	break;
+			case '\t':	comment.append("\\t");	break;
+			case '\b':	comment.append("\\b");	break;
+			case '\f':	comment.append("\\f");	break;
+			default:	comment.append(c);
+			}
+		}
+		return comment.append('"').toString();
+	}
+	
+	// the digits of value, then spaces to the argument width.
+	private static void appendPadded(StringBuilder text, int value) {
+		int start = text.length();
+		if(value < 0) {
+			text.append('-');
+		}
+		int digitsStart = text.length();
+		long magnitude = Math.abs((long)value);
+		do {
+			text.append((char)('0' + magnitude % 10));
+			magnitude /= 10;
+		} while(magnitude != 0);
+		reverse(text, digitsStart, text.length() - 1);
+		appendSpaces(text, ARGUMENT_WIDTH - (text.length() - start));
+	}
+	private static void reverse(StringBuilder text, int low, int high) {
+		while(low < high) {
+			char c = text.charAt(low);
+			text.setCharAt(low++, text.charAt(high));
+			text.setCharAt(high--, c);
+		}
+	}
+	private static void appendPadded(StringBuilder text, String string) {
+		text.append(string);
+		appendSpaces(text, ARGUMENT_WIDTH - string.length());
+	}
+	private static void appendSpaces(StringBuilder text, int count) {
+		for(int i = 0; i < count; i++) {
+			text.append(' ');
+		}
+	}
+	
+	// Java's "%g": the shortest decimal digits of value (those of
+	// Double.toString) rounded half-up to six significant digits, in
+	// scientific notation when the rounded exponent is below -4 or at least
+	// six, and always showing six significant digits.
+	static String generalFormat(double value) {
+		if(Double.isNaN(value)) {
+			return "NaN";
+		}
+		boolean negative = Double.compare(value, 0.0) < 0;
+		String sign = negative ? "-" : "";
+		if(Double.isInfinite(value)) {
+			return sign + "Infinity";
+		}
+		if(value == 0) {
+			return sign + "0." + zeros(FLOATING_PRECISION - 1);
+		}
+		
+		BigDecimal magnitude = new BigDecimal(Double.toString(Math.abs(value)))
+									.round(new MathContext(FLOATING_PRECISION, RoundingMode.HALF_UP));
+		int exponent = magnitude.precision() - magnitude.scale() - 1;
+		
+		if(exponent < -4 || exponent >= FLOATING_PRECISION) {
+			String digits = magnitude.unscaledValue().toString();
+			digits = digits + zeros(FLOATING_PRECISION - digits.length());
+			int exponentMagnitude = Math.abs(exponent);
+			return sign + digits.charAt(0) + "." + digits.substring(1) +
+					(exponent < 0 ? "e-" : "e+") + (exponentMagnitude < 10 ? "0" : "") + exponentMagnitude;
+		}
+		return sign + magnitude.setScale(FLOATING_PRECISION - 1 - exponent).toPlainString();
+	}
+	private static String zeros(int count) {
+		return repeat('0', count);
+	}
+	
+	
+	private static String[] opcodePrefixes() {
+		ASMOpcode[] opcodes = ASMOpcode.values();
+		String[] result = new String[opcodes.length];
+		for(ASMOpcode opcode: opcodes) {
+			String name = opcode.toString();
+			result[opcode.ordinal()] = INDENTATION + name + padding(OPCODE_WIDTH - name.length()) + " ";
+		}
+		return result;
+	}
+	private static String padding(int width) {
+		return repeat(' ', width);
+	}
+	private static String repeat(char c, int count) {
+		StringBuilder result = new StringBuilder();
+		for(int i = 0; i < count; i++) {
+			result.append(c);
+		}
+		return result.toString();
+	}
+	
+	private static void error(String message) {
+		PikaLogger log = PikaLogger.getLogger("compiler.ASMWriter");
+		log.severe("write error: " + message);
+	}
+}
@@ -0,0 +1,370 @@
+package asmCodeGenerator.codeStorage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// A compact, growable sequence of instructions.  Instruction i is the opcode
+// ordinal opcodes[i] and the operand operands[i], which holds the raw bits of
+// an integer or floating operand, or the index of a string operand in this
+// buffer's string pool.  Comments are rare, so they live in a side table of
+// string pool indices that is allocated on the first comment.  A string
+// operand that is a generated label is instead the label's id, tagged with
+// LABEL_TAG; its text comes from the buffer's LabelTable.
+//
+// Instructions are addressed by index.  The optimizer rewrites in place with
+// the replace() methods and kill(); killed instructions are skipped by
+// nextLive() and removed by compact().
+public class InstructionBuffer {
+	private static final int INITIAL_CAPACITY = 4;
+	private static final byte KILLED = -1;
+	private static final int NO_COMMENT = -1;
+	private static final long LABEL_TAG = 1L << 32;
+	private static final ASMOpcode[] OPCODES = ASMOpcode.values();
+	
+	private byte[] opcodes;
+	private long[] operands;
+	private int[] commentIndices;			// null until the first comment
+	private int size;
+	
+	private List<String> strings;			// the string pool, created on first use
+	private Map<String, Integer> stringIndices;
+	private LabelTable labels;				// the table of all generated labels here, if any
+	
+	public InstructionBuffer() {
+		opcodes = new byte[INITIAL_CAPACITY];
+		operands = new long[INITIAL_CAPACITY];
+		commentIndices = null;
+		size = 0;
+	}
+	
+	
+	////////////////////////////////////////////////////////////////////
+	// adding instructions
+	
+	public void add(ASMOpcode opcode, int operand, String comment) {
+		assert opcode.takesInteger() : opcode.toString();
+		append(opcode, operand, comment);
+	}
+	public void add(ASMOpcode opcode, double operand, String comment) {
+		assert opcode.takesFloat() : opcode.toString();
+		append(opcode, Double.doubleToRawLongBits(operand), comment);
+	}
+	public void add(ASMOpcode opcode, String operand, String comment) {
+		if(opcode.takesString()) {
+			append(opcode, stringIndex(operand), comment);
+		}
+		else {
+			assert operand == null || operand.isEmpty() : opcode.toString();
+			append(opcode, 0, comment);
+		}
+	}
+	public void add(ASMOpcode opcode, ASMLabel label, String comment) {
+		assert opcode.takesString() : opcode.toString();
+		append(opcode, labelOperand(label.getTable(), label.getId()), comment);
+	}
+	public void add(ASMOpcode opcode) {
+		add(opcode, "", "");
+	}
+	// operand is a rawOperand() of this buffer.
+	public void addRaw(ASMOpcode opcode, long rawOperand, String comment) {
+		append(opcode, rawOperand, comment);
+	}
+	
+	// appends a copy of every live instruction of other.
+	public void append(InstructionBuffer other) {
+		ensureCapacity(size + other.size);
+		for(int i = other.nextLive(0); i < other.size; i = other.nextLive(i + 1)) {
+			ASMOpcode opcode = other.opcode(i);
+			long operand = other.operands[i];
+			if(opcode.takesString()) {
+				operand = other.isLabel(i) ? labelOperand(other.labels, (int)operand)
+										   : stringIndex(other.stringOperand(i));
+			}
+			append(opcode, operand, other.comment(i));
+		}
+	}
+	
+	private void append(ASMOpcode opcode, long operand, String comment) {
+		ensureCapacity(size + 1);
+		size++;
+		set(size - 1, opcode, operand, comment);
+	}
+	private void set(int index, ASMOpcode opcode, long operand, String comment) {
+		opcodes[index] = (byte)opcode.ordinal();
+		operands[index] = operand;
+		setComment(index, comment);
+	}
+	private void ensureCapacity(int capacity) {
+		if(capacity <= opcodes.length) {
+			return;
+		}
+		int newCapacity = Math.max(capacity, 2 * opcodes.length);
+		opcodes = Arrays.copyOf(opcodes, newCapacity);
+		operands = Arrays.copyOf(operands, newCapacity);
+		if(commentIndices != null) {
+			commentIndices = growComments(commentIndices, newCapacity);
+		}
+	}
+	private static int[] growComments(int[] comments, int capacity) {
+		int oldLength = comments.length;
+		int[] result = Arrays.copyOf(comments, capacity);
+		Arrays.fill(result, oldLength, capacity, NO_COMMENT);
+		return result;
+	}
+	
+	
+	////////////////////////////////////////////////////////////////////
+	// reading instructions
+	
+	public int size() {
+		return size;
+	}
+	// the first live index at or after index, or size() if there is none.
+	public int nextLive(int index) {
+		while(index < size && opcodes[index] == KILLED) {
+			index++;
+		}
+		return index;
+	}
+	public boolean isKilled(int index) {
+		checkIndex(index);
+		return opcodes[index] == KILLED;
+	}
+	public ASMOpcode opcode(int index) {
+		checkIndex(index);
+		assert opcodes[index] != KILLED : "killed instruction " + index;
+		return OPCODES[opcodes[index]];
+	}
+	public int intOperand(int index) {
+		assert opcode(index).takesInteger();
+		return (int)operands[index];
+	}
+	public double floatOperand(int index) {
+		assert opcode(index).takesFloat();
+		return Double.longBitsToDouble(operands[index]);
+	}
+	public String stringOperand(int index) {
+		assert opcode(index).takesString();
+		if(isLabel(index)) {
+			return labels.name((int)operands[index]);
+		}
+		return strings.get((int)operands[index]);
+	}
+	// the operand as stored: the bits of an integer or floating operand, or a
+	// key for a string operand.  Within one buffer, string operands have equal
+	// keys exactly when they are the same string; keys do not name labels.
+	public long rawOperand(int index) {
+		checkIndex(index);
+		return operands[index];
+	}
+	// the rawOperand() of an instruction taking the given string operand.
+	public long rawOperand(String operand) {
+		return stringIndex(operand);
+	}
+	private boolean isLabel(int index) {
+		return (operands[index] & LABEL_TAG) != 0;
+	}
+	// the comment of an instruction, or "" if it has none.
+	public String comment(int index) {
+		checkIndex(index);
+		if(commentIndices == null || commentIndices[index] == NO_COMMENT) {
+			return "";
+		}
+		return strings.get(commentIndices[index]);
+	}
+	
+	// a boxed copy of one instruction.
+	public ASMInstruction instruction(int index) {
+		ASMOpcode opcode = opcode(index);
+		if(opcode.takesInteger()) {
+			return new ASMInstruction(opcode, intOperand(index), comment(index));
+		}
+		if(opcode.takesFloat()) {
+			return new ASMInstruction(opcode, floatOperand(index), comment(index));
+		}
+		if(opcode.takesString()) {
+			return new ASMInstruction(opcode, stringOperand(index), comment(index));
+		}
+		return new ASMInstruction(opcode, "", comment(index));
+	}
+	private void checkIndex(int index) {
+		if(index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("instruction " + index + " of " + size);
+		}
+	}
+	
+	
+	////////////////////////////////////////////////////////////////////
+	// rewriting in place
+	
+	public void replace(int index, ASMOpcode opcode, int operand, String comment) {
+		checkIndex(index);
+		assert opcode.takesInteger() : opcode.toString();
+		set(index, opcode, operand, comment);
+	}
+	public void replace(int index, ASMOpcode opcode, double operand, String comment) {
+		checkIndex(index);
+		assert opcode.takesFloat() : opcode.toString();
+		set(index, opcode, Double.doubleToRawLongBits(operand), comment);
+	}
+	public void replace(int index, ASMOpcode opcode, String operand, String comment) {
+		checkIndex(index);
+		assert opcode.takesString() || operand == null || operand.isEmpty() : opcode.toString();
+		set(index, opcode, opcode.takesString() ? stringIndex(operand) : 0, comment);
+	}
+	// replaces with an operand taken from rawOperand() of this buffer.
+	public void replaceRaw(int index, ASMOpcode opcode, long rawOperand, String comment) {
+		checkIndex(index);
+		set(index, opcode, rawOperand, comment);
+	}
+	public void replace(int index, ASMOpcode opcode) {
+		replace(index, opcode, "", "");
+	}
+	// inserts new instructions all at once: the k'th goes in front of the
+	// instruction at before[k] (or at the end, if before[k] is size()).  before
+	// must be in increasing order, with equal entries inserted in order, and
+	// operands are rawOperand()s of this buffer.  Every instruction from
+	// before[0] on moves to a higher index.
+	public void insertRaw(int[] before, ASMOpcode[] newOpcodes, long[] rawOperands, String[] comments) {
+		int count = before.length;
+		if(count == 0) {
+			return;
+		}
+		byte[] oldOpcodes = opcodes;
+		long[] oldOperands = operands;
+		int[] oldComments = commentIndices;
+		int oldSize = size;
+		int capacity = Math.max(INITIAL_CAPACITY, oldSize + count);
+		opcodes = new byte[capacity];
+		operands = new long[capacity];
+		commentIndices = oldComments == null ? null : growComments(new int[0], capacity);
+		size = 0;
+
+		int k = 0;
+		for(int i = 0; i <= oldSize; i++) {
+			for(; k < count && before[k] == i; k++) {
+				append(newOpcodes[k], rawOperands[k], comments[k]);
+			}
+			if(i == oldSize) {
+				break;
+			}
+			opcodes[size] = oldOpcodes[i];
+			operands[size] = oldOperands[i];
+			if(oldComments != null) {
+				commentIndices[size] = oldComments[i];
+			}
+			size++;
+		}
+		assert k == count : "insertion position out of order";
+	}
+	// makes the buffer the instructions at the given indices, in that order;
+	// instructions not listed are dropped.  No index may be listed twice.
+	public void rearrange(int[] order) {
+		byte[] newOpcodes = new byte[Math.max(INITIAL_CAPACITY, order.length)];
+		long[] newOperands = new long[newOpcodes.length];
+		int[] newComments = commentIndices == null ? null : growComments(new int[0], newOpcodes.length);
+		for(int k = 0; k < order.length; k++) {
+			checkIndex(order[k]);
+			newOpcodes[k] = opcodes[order[k]];
+			newOperands[k] = operands[order[k]];
+			if(newComments != null) {
+				newComments[k] = commentIndices[order[k]];
+			}
+		}
+		opcodes = newOpcodes;
+		operands = newOperands;
+		commentIndices = newComments;
+		size = order.length;
+	}
+	public void kill(int index) {
+		checkIndex(index);
+		opcodes[index] = KILLED;
+		setComment(index, "");
+	}
+	
+	// removes killed instructions; live instructions keep their order.
+	public void compact() {
+		int target = 0;
+		for(int i = 0; i < size; i++) {
+			if(opcodes[i] == KILLED) {
+				continue;
+			}
+			opcodes[target] = opcodes[i];
+			operands[target] = operands[i];
+			if(commentIndices != null) {
+				commentIndices[target] = commentIndices[i];
+			}
+			target++;
+		}
+		if(commentIndices != null) {
+			Arrays.fill(commentIndices, target, size, NO_COMMENT);
+		}
+		size = target;
+	}
+	
+	
+	////////////////////////////////////////////////////////////////////
+	// strings and comments
+	
+	private int stringIndex(String string) {
+		if(strings == null) {
+			strings = new ArrayList<String>();
+			stringIndices = new HashMap<String, Integer>();
+		}
+		Integer index = stringIndices.get(string);
+		if(index == null) {
+			index = strings.size();
+			strings.add(string);
+			stringIndices.put(string, index);
+		}
+		return index;
+	}
+	// a generated label from table, as an operand of this buffer.  A buffer
+	// refers to one table; labels from any other are kept by their text.
+	private long labelOperand(LabelTable table, int id) {
+		if(labels == null) {
+			labels = table;
+		}
+		if(table != labels) {
+			return stringIndex(table.name(id));
+		}
+		return LABEL_TAG | id;
+	}
+	// gives every generated label its text, in order of first use.
+	public void nameLabels() {
+		if(labels == null) {
+			return;
+		}
+		for(int i = nextLive(0); i < size; i = nextLive(i + 1)) {
+			if(OPCODES[opcodes[i]].takesString() && isLabel(i)) {
+				labels.name((int)operands[i]);
+			}
+		}
+	}
+	private void setComment(int index, String comment) {
+		if(comment == null || comment.isEmpty()) {
+			if(commentIndices != null) {
+				commentIndices[index] = NO_COMMENT;
+			}
+			return;
+		}
+		if(commentIndices == null) {
+			commentIndices = growComments(new int[0], opcodes.length);
+		}
+		commentIndices[index] = stringIndex(comment);
+	}
+	
+	
+	static private String terminator = System.getProperty("line.separator");
+	public String toString() {
+		StringBuilder buffer = new StringBuilder();
+		for(int i = nextLive(0); i < size; i = nextLive(i + 1)) {
+			buffer.append(instruction(i).toString());
+			buffer.append(terminator);
+		}
+		return buffer.toString();
+	}
+}
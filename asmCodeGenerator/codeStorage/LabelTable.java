@@ -0,0 +1,52 @@
+package asmCodeGenerator.codeStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// The labels generated during one compilation.  A label is an integer id,
+// made in a group of labels that share a prefix and number (as
+// -compare-17-true and -compare-17-join do).  Allocation is synchronized, so
+// code for one compilation may be generated on several threads.
+//
+// A label has no text until name() is first asked for it.  Groups are
+// numbered in the order their first label is named, and the writers name
+// every label in textual order before writing, so the output does not
+// depend on the order (or the threads) in which labels were allocated.
+public class LabelTable {
+	private List<String> groupPrefixes = new ArrayList<String>();
+	private List<Integer> groupNumbers = new ArrayList<Integer>();		// 0 until named
+	private List<Integer> labelGroups = new ArrayList<Integer>();
+	private List<String> labelSuffixes = new ArrayList<String>();
+	private List<String> labelNames = new ArrayList<String>();			// null until named
+	private int groupsNamed = 0;
+
+	public synchronized int newGroup(String prefix) {
+		groupPrefixes.add(prefix);
+		groupNumbers.add(0);
+		return groupPrefixes.size() - 1;
+	}
+	public synchronized ASMLabel newLabel(int group, String suffix) {
+		assert 0 <= group && group < groupPrefixes.size() : "label group " + group;
+		labelGroups.add(group);
+		labelSuffixes.add(suffix);
+		labelNames.add(null);
+		return new ASMLabel(this, labelGroups.size() - 1);
+	}
+	public synchronized int size() {
+		return labelGroups.size();
+	}
+
+	// the text of a label, "-prefix-number-suffix".
+	public synchronized String name(int label) {
+		String name = labelNames.get(label);
+		if(name == null) {
+			int group = labelGroups.get(label);
+			if(groupNumbers.get(group) == 0) {
+				groupNumbers.set(group, ++groupsNamed);
+			}
+			name = "-" + groupPrefixes.get(group) + "-" + groupNumbers.get(group) + "-" + labelSuffixes.get(label);
+			labelNames.set(label, name);
+		}
+		return name;
+	}
+}
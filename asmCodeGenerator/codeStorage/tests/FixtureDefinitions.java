@@ -0,0 +1,7 @@
+package asmCodeGenerator.codeStorage.tests;
+
+public class FixtureDefinitions {
+	public static final String FIXTURE_DIRECTORY = "src/asmCodeGenerator/codeStorage/tests/";
+	public static final String STORAGE_PROGRAM_FILENAME  = FIXTURE_DIRECTORY + "storageTest.asm";
+	public static final String STORAGE_EXPECTED_FILENAME = FIXTURE_DIRECTORY + "storageTestOutput.txt";
+}
@@ -0,0 +1,66 @@
+package asmCodeGenerator.codeStorage.tests;
+
+import static asmCodeGenerator.codeStorage.ASMOpcode.*;
+import static asmCodeGenerator.codeStorage.tests.FixtureDefinitions.*;
+
+import java.io.File;
+
+import asmCodeGenerator.codeStorage.ASMBinaryFormat;
+import asmCodeGenerator.codeStorage.ASMCodeFragment;
+import asmCodeGenerator.codeStorage.ASMReader;
+import asmCodeGenerator.codeStorage.InstructionBuffer;
+import asmCodeGenerator.codeStorage.LabelTable;
+import tests.ASMEmulator;
+import tests.FileFixturesTestCase;
+
+public class TestASMBinaryFormat extends FileFixturesTestCase {
+	private static final ASMCodeFragment.CodeType VOID = ASMCodeFragment.CodeType.GENERATES_VOID;
+
+	// operands are kept exactly, so the binary form holds more than the text.
+	public void testRoundTripWithComments() throws Exception {
+		ASMCodeFragment program = program();
+		InstructionBuffer read = roundTrip(program, true);
+		assertEquals(program.toString(), ASMCodeFragment.fromInstructionBuffer(read, VOID).toString());
+		int last = read.size() - 1;
+		assertEquals(Math.PI, read.floatOperand(last - 1));
+		assertEquals(-0.0, read.floatOperand(last));
+		assertEquals(getContents(STORAGE_EXPECTED_FILENAME).replace("\r\n", "\n"), new ASMEmulator(read).run());
+	}
+	public void testRoundTripWithoutComments() throws Exception {
+		InstructionBuffer read = roundTrip(program(), false);
+		InstructionBuffer expected = program().toInstructionBuffer();
+		assertEquals(expected.size(), read.size());
+		for(int i = 0; i < read.size(); i++) {
+			assertEquals(expected.opcode(i), read.opcode(i));
+			assertEquals("", read.comment(i));
+		}
+	}
+	public void testBinaryFilenames() {
+		assertTrue(ASMBinaryFormat.isBinaryFilename("program" + ASMBinaryFormat.EXTENSION));
+		assertFalse(ASMBinaryFormat.isBinaryFilename("program.asm"));
+	}
+
+	// the fixture program, with a generated label and two floating values
+	// that its text form cannot hold.
+	private static ASMCodeFragment program() throws Exception {
+		ASMCodeFragment program = ASMCodeFragment.fromInstructionBuffer(ASMReader.read(STORAGE_PROGRAM_FILENAME), VOID);
+		LabelTable labels = new LabelTable();
+		ASMCodeFragment tail = new ASMCodeFragment(VOID);
+		tail.add(Label, labels.newLabel(labels.newGroup("unused"), "label"), "generated");
+		tail.add(DataS, "tab\t and newline\n");
+		tail.add(DataF, Math.PI);
+		tail.add(DataF, -0.0);
+		program.append(tail);
+		return program;
+	}
+	private static InstructionBuffer roundTrip(ASMCodeFragment program, boolean withComments) throws Exception {
+		File file = File.createTempFile("binary", ASMBinaryFormat.EXTENSION);
+		try {
+			program.writeBinaryTo(file.getPath(), withComments);
+			return ASMBinaryFormat.read(file.getPath());
+		}
+		finally {
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package asmCodeGenerator.codeStorage.tests;
+
+import static asmCodeGenerator.codeStorage.tests.FixtureDefinitions.*;
+
+import asmCodeGenerator.codeStorage.ASMCodeChunk;
+import asmCodeGenerator.codeStorage.ASMCodeFragment;
+import asmCodeGenerator.codeStorage.ASMOpcode;
+import asmCodeGenerator.codeStorage.ASMReader;
+import asmCodeGenerator.codeStorage.InstructionBuffer;
+import tests.ASMEmulator;
+import tests.FileFixturesTestCase;
+
+public class TestASMCodeFragment extends FileFixturesTestCase {
+	private static final ASMCodeFragment.CodeType VOID = ASMCodeFragment.CodeType.GENERATES_VOID;
+	private static final int DEPTH = 100000;
+
+	// the fixture program, one instruction per fragment, appended as a
+	// balanced tree and as a list with adds in between.
+	public void testAppendKeepsOrder() throws Exception {
+		InstructionBuffer program = ASMReader.read(STORAGE_PROGRAM_FILENAME);
+		String expectedText = ASMCodeFragment.fromInstructionBuffer(program, VOID).toString();
+		String expectedOutput = getContents(STORAGE_EXPECTED_FILENAME).replace("\r\n", "\n");
+
+		ASMCodeFragment balanced = balanced(program, 0, program.size());
+		ASMCodeFragment mixed = new ASMCodeFragment(VOID);
+		for(int i = 0; i < program.size(); i++) {
+			if(i % 3 == 0) {
+				add(mixed, program, i);
+			}
+			else {
+				mixed.append(single(program, i));
+			}
+		}
+		assertEquals(expectedText, balanced.toString());
+		assertEquals(expectedText, mixed.toString());
+		assertEquals(expectedOutput, ASMEmulator.outputOf(balanced));
+	}
+	// the chunks of deeply nested fragments are found without recursion.
+	public void testDeepNesting() {
+		ASMCodeFragment fragment = new ASMCodeFragment(VOID);
+		for(int i = 0; i < DEPTH; i++) {
+			ASMCodeFragment outer = new ASMCodeFragment(VOID);
+			outer.append(fragment);
+			outer.add(ASMOpcode.PushI, i);
+			fragment = outer;
+		}
+		int expected = 0;
+		for(ASMCodeChunk chunk: fragment.chunks()) {
+			assertEquals(expected++, chunk.getInstructions().intOperand(0));
+		}
+		assertEquals(DEPTH, expected);
+	}
+
+	private static ASMCodeFragment balanced(InstructionBuffer program, int from, int to) {
+		if(to - from == 1) {
+			return single(program, from);
+		}
+		int middle = (from + to) / 2;
+		ASMCodeFragment result = new ASMCodeFragment(VOID);
+		result.append(balanced(program, from, middle));
+		result.append(balanced(program, middle, to));
+		return result;
+	}
+	private static ASMCodeFragment single(InstructionBuffer program, int index) {
+		ASMCodeFragment result = new ASMCodeFragment(VOID);
+		add(result, program, index);
+		return result;
+	}
+	private static void add(ASMCodeFragment fragment, InstructionBuffer program, int index) {
+		ASMOpcode opcode = program.opcode(index);
+		String comment = program.comment(index);
+		if(opcode.takesInteger()) {
+			fragment.add(opcode, program.intOperand(index), comment);
+		}
+		else if(opcode.takesFloat()) {
+			fragment.add(opcode, program.floatOperand(index), comment);
+		}
+		else if(opcode.takesString()) {
+			fragment.add(opcode, program.stringOperand(index), comment);
+		}
+		else {
+			fragment.add(opcode, "", comment);
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package asmCodeGenerator.codeStorage.tests;
+
+import static asmCodeGenerator.codeStorage.ASMOpcode.*;
+import static asmCodeGenerator.codeStorage.tests.FixtureDefinitions.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import asmCodeGenerator.codeStorage.ASMCodeFragment;
+import asmCodeGenerator.codeStorage.ASMReader;
+import asmCodeGenerator.codeStorage.ASMWriter;
+import asmCodeGenerator.codeStorage.InstructionBuffer;
+import tests.ASMEmulator;
+import tests.FileFixturesTestCase;
+
+public class TestASMReader extends FileFixturesTestCase {
+	private static final ASMCodeFragment.CodeType VOID = ASMCodeFragment.CodeType.GENERATES_VOID;
+
+	public void testReadProgramRuns() throws Exception {
+		InstructionBuffer program = ASMReader.read(STORAGE_PROGRAM_FILENAME);
+		assertEquals(getContents(STORAGE_EXPECTED_FILENAME).replace("\r\n", "\n"), new ASMEmulator(program).run());
+	}
+	// what is read back from a written program is written the same.
+	public void testRoundTrip() throws Exception {
+		ASMCodeFragment program = ASMCodeFragment.fromInstructionBuffer(ASMReader.read(STORAGE_PROGRAM_FILENAME), VOID);
+		String text = program.toString();
+		File file = File.createTempFile("roundTrip", ".asm");
+		try {
+			ASMWriter.writeToFile(file.getPath(), program);
+			assertEquals(text, ASMCodeFragment.fromInstructionBuffer(ASMReader.read(file.getPath()), VOID).toString());
+		}
+		finally {
+			file.delete();
+		}
+	}
+	// blank and # lines are skipped, either line end is accepted, and a
+	// comment is the words after the operand, joined by single spaces.
+	public void testLineForms() throws Exception {
+		InstructionBuffer code = read("# a comment line\n" +
+									 "\n" +
+									 "        PushI        -42      the   answer\r\n" +
+									 "PushF 2.50000e-05\n" +
+									 "\tLabel\t-here\n" +
+									 "        Add");
+		assertEquals(4, code.size());
+		assertEquals(PushI, code.opcode(0));
+		assertEquals(-42, code.intOperand(0));
+		assertEquals("the answer", code.comment(0));
+		assertEquals(2.5e-5, code.floatOperand(1));
+		assertEquals("", code.comment(1));
+		assertEquals("-here", code.stringOperand(2));
+		assertEquals(Add, code.opcode(3));
+	}
+
+	private static InstructionBuffer read(String text) throws IOException {
+		File file = File.createTempFile("lines", ".asm");
+		try {
+			FileOutputStream out = new FileOutputStream(file);
+			out.write(text.getBytes("US-ASCII"));
+			out.close();
+			return ASMReader.read(file.getPath());
+		}
+		finally {
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package asmCodeGenerator.codeStorage.tests;
+
+import static asmCodeGenerator.codeStorage.ASMOpcode.*;
+import static asmCodeGenerator.codeStorage.tests.FixtureDefinitions.*;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import asmCodeGenerator.codeStorage.ASMCodeChunk;
+import asmCodeGenerator.codeStorage.ASMCodeFragment;
+import asmCodeGenerator.codeStorage.ASMLabel;
+import asmCodeGenerator.codeStorage.ASMReader;
+import asmCodeGenerator.codeStorage.ASMWriter;
+import asmCodeGenerator.codeStorage.InstructionBuffer;
+import asmCodeGenerator.codeStorage.LabelTable;
+import tests.ASMEmulator;
+import tests.FileFixturesTestCase;
+
+public class TestASMWriter extends FileFixturesTestCase {
+	private static final ASMCodeFragment.CodeType VOID = ASMCodeFragment.CodeType.GENERATES_VOID;
+	private static final double[] FLOATS = {
+		0.0, -0.0, 1.0, -2.5, 1e-5, 0.0001, 123456.5, 999999.5, 1234567.0, 0.000123456789,
+		1e300, -1e-300, Double.MIN_VALUE, Double.MAX_VALUE, Double.NaN,
+		Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+	};
+	private static final int CHUNKS = 5000;
+	private static final int[] INTEGERS = { 0, -1, 7, 1000000, Integer.MIN_VALUE, Integer.MAX_VALUE };
+
+	// each instruction is written as ASMInstruction.toString() has it.
+	public void testMatchesInstructionText() throws Exception {
+		InstructionBuffer code = ASMReader.read(STORAGE_PROGRAM_FILENAME);
+		for(double value: FLOATS) {
+			code.add(PushF, value, "");
+			code.add(DataF, value, "a floating value");
+		}
+		for(int value: INTEGERS) {
+			code.add(PushI, value, "");
+			code.add(DataI, value, "an integer");
+		}
+		code.add(DataS, "tab\t, newline\n and 100%", "");
+		code.add(DataS, "", "empty");
+		code.add(DataS, "commented", "a comment");
+
+		StringBuilder expected = new StringBuilder();
+		for(int i = 0; i < code.size(); i++) {
+			expected.append(code.instruction(i).toString()).append("\n");
+		}
+		StringWriter actual = new StringWriter();
+		ASMWriter writer = new ASMWriter(actual);
+		writer.write(code);
+		writer.flush();
+		assertEquals(withNewlines(expected.toString()), withNewlines(actual.toString()));
+	}
+	public void testWrittenProgramRuns() throws Exception {
+		ASMCodeFragment program = ASMCodeFragment.fromInstructionBuffer(ASMReader.read(STORAGE_PROGRAM_FILENAME), VOID);
+		assertEquals(withNewlines(getContents(STORAGE_EXPECTED_FILENAME)), ASMEmulator.outputOf(program));
+	}
+	// many small chunks, with labels allocated in reverse, then the fixture
+	// program in one chunk.
+	public void testParallelWriteMatchesSequential() throws Exception {
+		LabelTable labels = new LabelTable();
+		ASMLabel[] steps = new ASMLabel[CHUNKS];
+		for(int i = CHUNKS - 1; i >= 0; i--) {
+			steps[i] = labels.newLabel(labels.newGroup("step"), "top");
+		}
+		ASMCodeFragment program = new ASMCodeFragment(VOID);
+		for(int i = 0; i < CHUNKS; i++) {
+			ASMCodeChunk chunk = new ASMCodeChunk();
+			chunk.add(Label, steps[i]);
+			chunk.add(PushI, i);
+			chunk.add(Pop);
+			program.addChunk(chunk);
+		}
+		program.addChunk(new ASMCodeChunk(ASMReader.read(STORAGE_PROGRAM_FILENAME)));
+
+		File sequential = File.createTempFile("sequential", ".asm");
+		File parallel = File.createTempFile("parallel", ".asm");
+		try {
+			ASMWriter.writeToFile(sequential.getPath(), program);
+			ASMWriter.writeToFileInParallel(parallel.getPath(), program);
+			byte[] sequentialBytes = Files.readAllBytes(sequential.toPath());
+			assertTrue(sequentialBytes.length > 0);
+			assertTrue(Arrays.equals(sequentialBytes, Files.readAllBytes(parallel.toPath())));
+			assertEquals(withNewlines(getContents(STORAGE_EXPECTED_FILENAME)),
+						 new ASMEmulator(ASMReader.read(parallel.getPath())).run());
+		}
+		finally {
+			sequential.delete();
+			parallel.delete();
+		}
+	}
+
+	// ASMInstruction and ASMWriter each take the line separator when loaded.
+	private static String withNewlines(String text) {
+		return text.replace("\r\n", "\n");
+	}
+}
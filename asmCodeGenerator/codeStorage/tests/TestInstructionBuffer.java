@@ -0,0 +1,72 @@
+package asmCodeGenerator.codeStorage.tests;
+
+import static asmCodeGenerator.codeStorage.ASMOpcode.*;
+import static asmCodeGenerator.codeStorage.tests.FixtureDefinitions.*;
+
+import asmCodeGenerator.codeStorage.ASMOpcode;
+import asmCodeGenerator.codeStorage.ASMReader;
+import asmCodeGenerator.codeStorage.InstructionBuffer;
+import tests.ASMEmulator;
+import junit.framework.TestCase;
+
+// Edits the fixture program in place and runs it.
+public class TestInstructionBuffer extends TestCase {
+	private static final String OUTPUT = "2147483647 1 Z pika\n84 1e+06 a pika\n";
+
+	public void testReplaceAndKill() throws Exception {
+		InstructionBuffer program = program();
+		program.replace(find(program, PushI, 90), PushI, 66, "");
+		int subtrahend = find(program, PushI, -1);
+		program.kill(subtrahend);
+		program.kill(subtrahend + 1);
+		assertTrue(program.isKilled(subtrahend));
+		assertEquals("-2147483648 1 B pika\n84 1e+06 a pika\n", run(program));
+
+		int size = program.size();
+		program.compact();
+		assertEquals(size - 2, program.size());
+		assertEquals("-2147483648 1 B pika\n84 1e+06 a pika\n", run(program));
+	}
+	public void testInsertAndRearrange() throws Exception {
+		InstructionBuffer program = program();
+		int call = find(program, Call, 0);
+		long doubleLabel = program.rawOperand(call);
+		program.insertRaw(new int[] { call, call },
+						  new ASMOpcode[] { Call, Call },
+						  new long[] { doubleLabel, doubleLabel },
+						  new String[] { "", "twice more" });
+		assertEquals("twice more", program.comment(call + 1));
+		assertEquals(OUTPUT.replace("84", "336"), run(program));
+
+		int[] order = new int[program.size() - 2];
+		for(int i = 0; i < order.length; i++) {
+			order[i] = i < call ? i : i + 2;
+		}
+		program.rearrange(order);
+		assertEquals(OUTPUT, run(program));
+	}
+	// string operands are copied by their text.
+	public void testAppend() throws Exception {
+		InstructionBuffer program = new InstructionBuffer();
+		program.add(Jump, "-main", "");
+		program.append(program());
+		assertEquals(OUTPUT, run(program));
+	}
+
+	private static InstructionBuffer program() throws Exception {
+		return ASMReader.read(STORAGE_PROGRAM_FILENAME);
+	}
+	private static String run(InstructionBuffer program) {
+		return new ASMEmulator(program).run();
+	}
+	// the first instruction with the given opcode and, if it takes one, integer operand.
+	private static int find(InstructionBuffer program, ASMOpcode opcode, int operand) {
+		for(int i = program.nextLive(0); i < program.size(); i = program.nextLive(i + 1)) {
+			if(program.opcode(i) == opcode && (!opcode.takesInteger() || program.intOperand(i) == operand)) {
+				return i;
+			}
+		}
+		fail("no " + opcode + " " + operand);
+		return -1;
+	}
+}
@@ -0,0 +1,61 @@
+package asmCodeGenerator.codeStorage.tests;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import asmCodeGenerator.codeStorage.ASMLabel;
+import asmCodeGenerator.codeStorage.LabelTable;
+import junit.framework.TestCase;
+
+public class TestLabelTable extends TestCase {
+	private static final int THREADS = 8;
+	private static final int LABELS_PER_THREAD = 10000;
+
+	// groups are numbered in the order they are first named.
+	public void testNaming() {
+		LabelTable labels = new LabelTable();
+		int first = labels.newGroup("compare");
+		int second = labels.newGroup("print");
+		ASMLabel secondTrue = labels.newLabel(second, "true");
+		ASMLabel firstJoin = labels.newLabel(first, "join");
+		ASMLabel secondJoin = labels.newLabel(second, "join");
+
+		assertEquals("-print-1-true", labels.name(secondTrue.getId()));
+		assertEquals("-compare-2-join", labels.name(firstJoin.getId()));
+		assertEquals("-print-1-join", labels.name(secondJoin.getId()));
+		assertEquals(3, labels.size());
+	}
+	public void testAllocationOnManyThreads() throws Exception {
+		final LabelTable labels = new LabelTable();
+		final List<List<ASMLabel>> made = new ArrayList<List<ASMLabel>>();
+		List<Thread> threads = new ArrayList<Thread>();
+		for(int t = 0; t < THREADS; t++) {
+			final List<ASMLabel> mine = new ArrayList<ASMLabel>();
+			made.add(mine);
+			threads.add(new Thread() {
+				public void run() {
+					for(int i = 0; i < LABELS_PER_THREAD; i++) {
+						mine.add(labels.newLabel(labels.newGroup("thread"), "label"));
+					}
+				}
+			});
+		}
+		for(Thread thread: threads) {
+			thread.start();
+		}
+		for(Thread thread: threads) {
+			thread.join();
+		}
+
+		Set<String> names = new HashSet<String>();
+		for(List<ASMLabel> mine: made) {
+			for(ASMLabel label: mine) {
+				names.add(labels.name(label.getId()));
+			}
+		}
+		assertEquals(THREADS * LABELS_PER_THREAD, labels.size());
+		assertEquals(THREADS * LABELS_PER_THREAD, names.size());
+	}
+}
@@ -0,0 +1,67 @@
+        DLabel       $eat-location-zero
+        DataZ        8
+        DLabel       $format                   %% "%d %g %c %s\n"
+        DataC        37
+        DataC        100
+        DataC        32
+        DataC        37
+        DataC        103
+        DataC        32
+        DataC        37
+        DataC        99
+        DataC        32
+        DataC        37
+        DataC        115
+        DataC        10
+        DataC        0
+        DLabel       $word                     %% "pika"
+        DataC        112
+        DataC        105
+        DataC        107
+        DataC        97
+        DataC        0
+        DLabel       $count
+        DataI        -2147483648
+        DLabel       $ratio
+        DataF        2.50000e-05
+        DLabel       $target
+        DataD        -double
+        Label        -main                     the program starts here
+        PushD        $word
+        PushI        90
+        PushD        $ratio
+        LoadF
+        PushF        4.00000e+04
+        FMultiply
+        PushD        $count
+        LoadI
+        PushI        -1
+        Add
+        PushD        $format
+        Printf
+        PushI        21
+        PushD        $target
+        LoadI
+        CallV
+        Call         -double
+        Duplicate
+        JumpPos      -positive
+        Halt
+        Label        -positive
+        PushD        $word
+        Exchange
+        PushI        97
+        Exchange
+        PushF        -0.500000
+        Pop
+        PushF        1.00000e+06
+        Exchange
+        PushD        $format
+        Printf
+        Halt
+        Label        -double
+        Exchange
+        Duplicate
+        Add
+        Exchange
+        Return
@@ -5,6 +5,8 @@ import static asmCodeGenerator.codeStorage.ASMCodeFragment.CodeType.*;
 import static asmCodeGenerator.codeStorage.ASMOpcode.*;
 import asmCodeGenerator.Labeller;
 import asmCodeGenerator.codeStorage.ASMCodeFragment;
+import asmCodeGenerator.codeStorage.ASMLabel;
+import asmCodeGenerator.codeStorage.LabelTable;
 
 public class MemoryManager {
 	// Debug Mode. DEBUGGING Adds debug code and executes insertDebugMain when the program is initiailzed.
@@ -88,7 +90,7 @@ public class MemoryManager {
 	
 
 	// this code should reside on the executable pathway before the application.
-	public static ASMCodeFragment codeForInitialization() {
+	public static ASMCodeFragment codeForInitialization(LabelTable labels) {
 		ASMCodeFragment frag = new ASMCodeFragment(GENERATES_VOID);
 		frag.add(Label, MEM_MANAGER_INITIALIZE);
 		
@@ -108,7 +110,7 @@ public class MemoryManager {
 		storeITo(frag, MEM_MANAGER_FIRST_FREE_BLOCK);
 
 		if(DEBUGGING) {
-			insertDebugMain(frag);
+			insertDebugMain(frag, labels);
 		}
 		
 		return frag;
@@ -116,17 +118,17 @@ public class MemoryManager {
 
 
 	// this goes after the main program, so that MEM_MANAGER_HEAP is after all other variable declarations.
-	public static ASMCodeFragment codeForAfterApplication() {
+	public static ASMCodeFragment codeForAfterApplication(LabelTable labels) {
 		ASMCodeFragment frag = new ASMCodeFragment(GENERATES_VOID);	
 		
 		frag.append(subroutineMakeTags());
 		frag.append(subroutineMakeOneTag());
-		frag.append(subroutineAllocate());
+		frag.append(subroutineAllocate(labels));
 		frag.append(subroutineDeallocate());
 		frag.append(subroutineRemoveBlock());
 		if(DEBUGGING) {
 			frag.append(subroutineDebugPrintBlock());
-			frag.append(subroutineDebugPrintFreeList());
+			frag.append(subroutineDebugPrintFreeList(labels));
 		}
 		
 		frag.add(DLabel, MEM_MANAGER_HEAP);	
@@ -212,7 +214,7 @@ public class MemoryManager {
 		return frag;
 	}	
 
-	private static ASMCodeFragment subroutineAllocate() {
+	private static ASMCodeFragment subroutineAllocate(LabelTable labels) {
 		ASMCodeFragment frag = new ASMCodeFragment(GENERATES_VOID);
 		frag.add(Label, MEM_MANAGER_ALLOCATE);		// [... usableSize (return)]
 
@@ -227,7 +229,7 @@ public class MemoryManager {
 		storeITo(frag, MMGR_ALLOC_RETURN_ADDRESS);	// [... usableSize]
 		
 		if(DEBUGGING2) {
-			printAccumulatorTop(frag, "--allocate %d bytes\n");
+			printAccumulatorTop(frag, labels, "--allocate %d bytes\n");
 		}
 
 		//convert user size to mmgr size and store
@@ -249,7 +251,7 @@ public class MemoryManager {
 		frag.add(Label, MMGR_ALLOC_TEST_BLOCK);
 			loadIFrom(frag, MMGR_ALLOC_CURRENT_BLOCK);		// [... block]
 			if(DEBUGGING2) {
-				printAccumulatorTop(frag, "--testing block %d\n");
+				printAccumulatorTop(frag, labels, "--testing block %d\n");
 			}
 			readTagSize(frag);								// [... block.size]
 			loadIFrom(frag, MMGR_ALLOC_SIZE);				// [... block.size allocSize]
@@ -298,10 +300,10 @@ public class MemoryManager {
 			frag.add(Subtract);								// [... leftoverbytes]
 			storeITo(frag, MMGR_ALLOC_REMAINDER_SIZE);		// [...]
 			
-//			debugPrintI(frag, "alloc-current-block:   ", MMGR_ALLOC_CURRENT_BLOCK);
-//			debugPrintI(frag, "alloc-current-size:    ", MMGR_ALLOC_SIZE);
-//			debugPrintI(frag, "alloc-remainder-block: ", MMGR_ALLOC_REMAINDER_BLOCK);
-//			debugPrintI(frag, "alloc-remainder-size:  ", MMGR_ALLOC_REMAINDER_SIZE);
+//			debugPrintI(frag, labels, "alloc-current-block:   ", MMGR_ALLOC_CURRENT_BLOCK);
+//			debugPrintI(frag, labels, "alloc-current-size:    ", MMGR_ALLOC_SIZE);
+//			debugPrintI(frag, labels, "alloc-remainder-block: ", MMGR_ALLOC_REMAINDER_BLOCK);
+//			debugPrintI(frag, labels, "alloc-remainder-size:  ", MMGR_ALLOC_REMAINDER_SIZE);
 			
 			// make the tags for first new block.
 			frag.add(PushI, 0);								// prevPtr
@@ -332,12 +334,12 @@ public class MemoryManager {
 		
 		frag.add(Label, MMGR_ALLOC_NO_BLOCK_WORKS);
 			if(DEBUGGING2) {
-				printString(frag, "--NO BLOCK WORKS\n");
+				printString(frag, labels, "--NO BLOCK WORKS\n");
 			}
 			loadIFrom(frag, MMGR_ALLOC_SIZE);			// [... size]
-//			debugPrintI(frag, "alloc ", MEM_MANAGER_HEAP_END_PTR);
+//			debugPrintI(frag, labels, "alloc ", MEM_MANAGER_HEAP_END_PTR);
 			newBlock(frag);								// [... block]
-//			debugPrintI(frag, "alloc ", MEM_MANAGER_HEAP_END_PTR);
+//			debugPrintI(frag, labels, "alloc ", MEM_MANAGER_HEAP_END_PTR);
 			storeITo(frag, MMGR_ALLOC_CURRENT_BLOCK);
 		
 		// [... ] -> [... userBlock] & return
@@ -540,7 +542,7 @@ public class MemoryManager {
 	private static final String MMGRD_MAIN_BLOCK3 = "$$mmgrd-main-block3";
 	private static final String MMGRD_MAIN_BLOCK4 = "$$mmgrd-main-block4";
 	
-	private static void insertDebugMain(ASMCodeFragment frag) {
+	private static void insertDebugMain(ASMCodeFragment frag, LabelTable labels) {
 		frag.add(DLabel, MMGRD_FORMAT);
 		frag.add(DataS, "%s %d\n");	
 		frag.add(DLabel, MMGRD_FORMAT_FOR_STRING);
@@ -553,49 +555,49 @@ public class MemoryManager {
 		frag.add(PushI, 30);					// request block of size 30 => 30+18=48
 		debugSystemBlockAllocate(frag);
 		storeITo(frag, MMGRD_MAIN_BLOCK1);
-		debugPrintBlockFromPointer(frag, MMGRD_MAIN_BLOCK1);
+		debugPrintBlockFromPointer(frag, labels, MMGRD_MAIN_BLOCK1);
 		
 		frag.add(Call, MMGRD_PRINT_FREE_LIST);
 		
 		loadIFrom(frag, MMGRD_MAIN_BLOCK1);			// [... block1]
 		debugSystemBlockDeallocate(frag);
-		debugPrint(frag, "deallocation done\n");
+		debugPrint(frag, labels, "deallocation done\n");
 		
 		frag.add(Call, MMGRD_PRINT_FREE_LIST);
 		
 		frag.add(PushI, 40);
 		debugSystemBlockAllocate(frag);
 		storeITo(frag, MMGRD_MAIN_BLOCK2);
-		debugPrintBlockFromPointer(frag, MMGRD_MAIN_BLOCK2);
+		debugPrintBlockFromPointer(frag, labels, MMGRD_MAIN_BLOCK2);
 		
 		loadIFrom(frag, MMGRD_MAIN_BLOCK2);			// [... block2]
 		debugSystemBlockDeallocate(frag);
-		debugPrint(frag, "deallocation 2 done\n");
+		debugPrint(frag, labels, "deallocation 2 done\n");
 
 		frag.add(Call, MMGRD_PRINT_FREE_LIST);
 		
 		frag.add(PushI, 150);
 		debugSystemBlockAllocate(frag);
 		storeITo(frag, MMGRD_MAIN_BLOCK3);
-		debugPrintBlockFromPointer(frag, MMGRD_MAIN_BLOCK3);
+		debugPrintBlockFromPointer(frag, labels, MMGRD_MAIN_BLOCK3);
 
 		
 		loadIFrom(frag, MMGRD_MAIN_BLOCK3);			// [... block3]
 		debugSystemBlockDeallocate(frag);
-		debugPrint(frag, "deallocation 3 done\n");
+		debugPrint(frag, labels, "deallocation 3 done\n");
 
 		frag.add(Call, MMGRD_PRINT_FREE_LIST);
 		
 		frag.add(PushI, 30);
 		debugSystemBlockAllocate(frag);
 		storeITo(frag, MMGRD_MAIN_BLOCK4);
-		debugPrintBlockFromPointer(frag, MMGRD_MAIN_BLOCK4);
+		debugPrintBlockFromPointer(frag, labels, MMGRD_MAIN_BLOCK4);
 		
 		frag.add(Call, MMGRD_PRINT_FREE_LIST);
 		
 		loadIFrom(frag, MMGRD_MAIN_BLOCK4);			// [... block4]
 		debugSystemBlockDeallocate(frag);
-		debugPrint(frag, "deallocation 4 done\n");
+		debugPrint(frag, labels, "deallocation 4 done\n");
 
 		frag.add(Call, MMGRD_PRINT_FREE_LIST);
 		
@@ -603,13 +605,13 @@ public class MemoryManager {
 		frag.add(PushI, 25);
 		debugSystemBlockAllocate(frag);
 		storeITo(frag, MMGRD_MAIN_BLOCK1);
-		debugPrintBlockFromPointer(frag, MMGRD_MAIN_BLOCK1);
+		debugPrintBlockFromPointer(frag, labels, MMGRD_MAIN_BLOCK1);
 		
 		frag.add(Call, MMGRD_PRINT_FREE_LIST);
 		
 		loadIFrom(frag, MMGRD_MAIN_BLOCK1);			// [... block4]
 		debugSystemBlockDeallocate(frag);
-		debugPrint(frag, "deallocation 5 done\n");
+		debugPrint(frag, labels, "deallocation 5 done\n");
 
 		frag.add(Call, MMGRD_PRINT_FREE_LIST);
 		
@@ -618,20 +620,20 @@ public class MemoryManager {
 		frag.add(PushI, 40);
 		debugSystemBlockAllocate(frag);
 		storeITo(frag, MMGRD_MAIN_BLOCK1);
-		debugPrintBlockFromPointer(frag, MMGRD_MAIN_BLOCK1);
+		debugPrintBlockFromPointer(frag, labels, MMGRD_MAIN_BLOCK1);
 		
 		frag.add(Call, MMGRD_PRINT_FREE_LIST);
 		
 		loadIFrom(frag, MMGRD_MAIN_BLOCK1);			// [... block4]
 		debugSystemBlockDeallocate(frag);
-		debugPrint(frag, "deallocation 6 done\n");
+		debugPrint(frag, labels, "deallocation 6 done\n");
 
 		frag.add(Call, MMGRD_PRINT_FREE_LIST);
 	}
-	private static void debugPrintBlockFromPointer(ASMCodeFragment frag, String pointerName) {
+	private static void debugPrintBlockFromPointer(ASMCodeFragment frag, LabelTable labels, String pointerName) {
 		loadIFrom(frag, pointerName);
 		frag.add(Call, MMGRD_PRINT_BLOCK);	
-		debugPrint(frag, "\n");
+		debugPrint(frag, labels, "\n");
 	}
 
 	// [... size] -> [... block]
@@ -650,8 +652,8 @@ public class MemoryManager {
 	// prints top of stack 
 	// [... t] -> [... t]
 	@SuppressWarnings("unused")
-	private static void debugPeekI(ASMCodeFragment frag, String printString) {
-		String label = new Labeller("$$debug-peekI").newLabel("");
+	private static void debugPeekI(ASMCodeFragment frag, LabelTable labels, String printString) {
+		ASMLabel label = new Labeller(labels, "$$debug-peekI").newLabel("");
 		frag.add(DLabel, label);
 		frag.add(DataS, printString);
 		
@@ -660,8 +662,8 @@ public class MemoryManager {
 		frag.add(PushD, MMGRD_FORMAT);  
 		frag.add(Printf);
 	}	
-	private static void debugPrint(ASMCodeFragment frag, String printString) {
-		String label = new Labeller("$$debug-print").newLabel("");
+	private static void debugPrint(ASMCodeFragment frag, LabelTable labels, String printString) {
+		ASMLabel label = new Labeller(labels, "$$debug-print").newLabel("");
 		frag.add(DLabel, label);
 		frag.add(DataS, printString);
 		frag.add(PushD, label);
@@ -669,8 +671,8 @@ public class MemoryManager {
 		frag.add(Printf);
 	}	
 	@SuppressWarnings("unused")
-	private static void debugPrintI(ASMCodeFragment frag, String printString, String name) {
-		String label = new Labeller("$$debug-printI").newLabel("");
+	private static void debugPrintI(ASMCodeFragment frag, LabelTable labels, String printString, String name) {
+		ASMLabel label = new Labeller(labels, "$$debug-printI").newLabel("");
 		loadIFrom(frag, name);
 		frag.add(DLabel, label);
 		frag.add(DataS, printString);
@@ -737,7 +739,7 @@ public class MemoryManager {
 		
 		return frag;
 	}
-	private static ASMCodeFragment subroutineDebugPrintFreeList() {
+	private static ASMCodeFragment subroutineDebugPrintFreeList(LabelTable labels) {
 		ASMCodeFragment frag = new ASMCodeFragment(GENERATES_VOID);
 		frag.add(Label, MMGRD_PRINT_FREE_LIST);				// [... block (return)]
 
@@ -746,7 +748,7 @@ public class MemoryManager {
 		
 		storeITo(frag, MMGRD_PFREE_RETURN_ADDRESS);
 		
-		debugPrint(frag, "Free list:\n");
+		debugPrint(frag, labels, "Free list:\n");
 		
 		
 		loadIFrom(frag, MEM_MANAGER_FIRST_FREE_BLOCK);
@@ -758,10 +760,10 @@ public class MemoryManager {
 			frag.add(JumpFalse, MMGRD_PFREE_LOOP_DONE);
 			
 			// print "    "+currentBlock;
-			debugPrint(frag, "    ");						
+			debugPrint(frag, labels, "    ");						
 			loadIFrom(frag, MMGRD_PFREE_CURRENT_BLOCK);
 			frag.add(Call, MMGRD_PRINT_BLOCK);
-			debugPrint(frag, "\n");
+			debugPrint(frag, labels, "\n");
 			
 			// currentBlock = currentBlock.next
 			loadIFrom(frag, MMGRD_PFREE_CURRENT_BLOCK);		// [... block]
@@ -772,7 +774,7 @@ public class MemoryManager {
 			frag.add(Jump, MMGRD_PFREE_LOOP_TEST);
 
 		frag.add(Label, MMGRD_PFREE_LOOP_DONE);
-			debugPrint(frag, "\n");
+			debugPrint(frag, labels, "\n");
 			loadIFrom(frag, MMGRD_PFREE_RETURN_ADDRESS);
 			frag.add(Return);
 		return frag;
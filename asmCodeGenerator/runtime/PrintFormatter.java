@@ -0,0 +1,54 @@
+package asmCodeGenerator.runtime;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+// Reproduces the text the ASM emulator's printf produces for Pika values.
+public class PrintFormatter {
+	private static final int PRECISION = 6;
+	
+	// C's "%g": six significant digits, rounded from the exact binary value,
+	// in scientific notation when the exponent is below -4 or at least the
+	// precision, with trailing zeros removed.  Not defined here for NaN and
+	// the infinities, whose spelling is platform-dependent.
+	public static String floating(double value) {
+		assert !Double.isNaN(value) && !Double.isInfinite(value);
+		String sign = (value < 0 || (value == 0 && 1/value < 0)) ? "-" : "";
+		if(value == 0) {
+			return sign + "0";
+		}
+		
+		BigDecimal magnitude = new BigDecimal(Math.abs(value)).round(new MathContext(PRECISION, RoundingMode.HALF_EVEN));
+		int exponent = magnitude.precision() - magnitude.scale() - 1;
+		
+		if(exponent < -4 || exponent >= PRECISION) {
+			String digits = magnitude.unscaledValue().toString();
+			String mantissa = withoutTrailingZeros(digits.substring(0, 1) + "." + digits.substring(1));
+			String exponentSign = exponent < 0 ? "-" : "+";
+			int exponentMagnitude = Math.abs(exponent);
+			return sign + mantissa + "e" + exponentSign + (exponentMagnitude < 10 ? "0" : "") + exponentMagnitude;
+		}
+		String fixed = magnitude.setScale(PRECISION - 1 - exponent, RoundingMode.HALF_EVEN).toPlainString();
+		return sign + withoutTrailingZeros(fixed);
+	}
+	private static String withoutTrailingZeros(String decimal) {
+		if(decimal.indexOf('.') < 0) {
+			return decimal;
+		}
+		int end = decimal.length();
+		while(decimal.charAt(end - 1) == '0') {
+			end--;
+		}
+		if(decimal.charAt(end - 1) == '.') {
+			end--;
+		}
+		return decimal.substring(0, end);
+	}
+	
+	// the generated code holds floating literals in Java's "%g" form
+	// (see ASMInstruction), so a literal's runtime value is that text's value.
+	public static double asEmitted(double literal) {
+		return Double.parseDouble(String.format("%g", literal));
+	}
+}
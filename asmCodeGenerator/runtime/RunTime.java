@@ -20,6 +20,9 @@ public class RunTime {
 	
 	public static final String GENERAL_RUNTIME_ERROR = "$$general-runtime-error";
 	public static final String DIVIDE_BY_ZERO_RUNTIME_ERROR = "$$i-divide-by-zero";
+	
+	public static final String GENERAL_RUNTIME_ERROR_FORMAT = "Runtime error: %s\n";
+	public static final String DIVIDE_BY_ZERO_MESSAGE = "division by zero";
 
 	private ASMCodeFragment environmentASM() {
 		ASMCodeFragment result = new ASMCodeFragment(GENERATES_VOID);
@@ -77,7 +80,7 @@ public class RunTime {
 		String generalErrorMessage = "$errors-general-message";
 
 		frag.add(DLabel, generalErrorMessage);
-		frag.add(DataS, "Runtime error: %s\n");
+		frag.add(DataS, GENERAL_RUNTIME_ERROR_FORMAT);
 		
 		frag.add(Label, GENERAL_RUNTIME_ERROR);
 		frag.add(PushD, generalErrorMessage);
@@ -89,7 +92,7 @@ public class RunTime {
 		String divideByZeroMessage = "$errors-divide-by-zero";
 		
 		frag.add(DLabel, divideByZeroMessage);
-		frag.add(DataS, "division by zero");
+		frag.add(DataS, DIVIDE_BY_ZERO_MESSAGE);
 		
 		frag.add(Label, DIVIDE_BY_ZERO_RUNTIME_ERROR);
 		frag.add(PushD, divideByZeroMessage);
@@ -0,0 +1,31 @@
+package astOptimizer;
+
+import parseTree.ParseNode;
+
+// do not call the AST optimizer if any errors have occurred during analysis.
+public class ASTOptimizer {
+	ParseNode decoratedTree;
+	private int divisionChecksRemoved;
+	
+	public static ParseNode optimize(ParseNode decoratedTree) {
+		ASTOptimizer optimizer = new ASTOptimizer(decoratedTree);
+		return optimizer.optimize();
+	}
+	public ASTOptimizer(ParseNode decoratedTree) {
+		this.decoratedTree = decoratedTree;
+		this.divisionChecksRemoved = 0;
+	}
+	
+	public ParseNode optimize() {
+		ValueRangeAnalyzer.analyze(decoratedTree);				// lets the simplifier drop safe divisions
+		AlgebraicSimplifier.simplify(decoratedTree);
+		CommonSubexpressionEliminator.eliminate(decoratedTree);
+		divisionChecksRemoved = ValueRangeAnalyzer.analyze(decoratedTree);
+		return decoratedTree;
+	}
+	
+	// statistics from the last call to optimize().
+	public int getDivisionChecksRemoved() {
+		return divisionChecksRemoved;
+	}
+}
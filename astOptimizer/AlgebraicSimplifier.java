@@ -0,0 +1,78 @@
+package astOptimizer;
+
+import lexicalAnalyzer.Lextant;
+import lexicalAnalyzer.Punctuator;
+import parseTree.ParseNode;
+import parseTree.nodeTypes.AssignmentNode;
+import parseTree.nodeTypes.BinaryOperatorNode;
+import parseTree.nodeTypes.CastNode;
+import semanticAnalyzer.types.Type;
+
+// Applies SimplificationRules bottom-up, pass after pass, until no rule fires.
+public class AlgebraicSimplifier {
+	private ParseNode root;
+	private int rewriteCount;
+	
+	public static int simplify(ParseNode root) {
+		AlgebraicSimplifier simplifier = new AlgebraicSimplifier(root);
+		return simplifier.simplify();
+	}
+	public AlgebraicSimplifier(ParseNode root) {
+		this.root = root;
+		this.rewriteCount = 0;
+	}
+	
+	// returns the number of rewrites performed.
+	public int simplify() {
+		boolean changed;
+		do {
+			changed = simplifyChildren(root, new StructuralKeys());
+		} while(changed);
+		return rewriteCount;
+	}
+	
+	private boolean simplifyChildren(ParseNode node, StructuralKeys keys) {
+		boolean changed = false;
+		for(int i = firstSimplifiableChild(node); i < node.nChildren(); i++) {
+			ParseNode child = node.child(i);
+			changed |= simplifyChildren(child, keys);
+			
+			ParseNode replacement = rewrite(child, keys);
+			if(replacement != null) {
+				node.replaceChild(child, replacement);
+				rewriteCount++;
+				changed = true;
+			}
+		}
+		return changed;
+	}
+	// the target of an assignment is not an expression.
+	private int firstSimplifiableChild(ParseNode node) {
+		return (node instanceof AssignmentNode) ? 1 : 0;
+	}
+	
+	private ParseNode rewrite(ParseNode node, StructuralKeys keys) {
+		if(node instanceof BinaryOperatorNode) {
+			BinaryOperatorNode operatorNode = (BinaryOperatorNode)node;
+			if(operatorNode.getSignature().isNull()) {
+				return null;
+			}
+			return firstRewrite(node, operatorNode.getOperator(), operatorNode.getSignature().paramType(), keys);
+		}
+		if(node instanceof CastNode) {
+			return firstRewrite(node, Punctuator.PIPE, ((CastNode)node).getExpressionType(), keys);
+		}
+		return null;
+	}
+	private ParseNode firstRewrite(ParseNode node, Lextant operator, Type operandType, StructuralKeys keys) {
+		for(SimplificationRule rule: SimplificationRules.rulesFor(operator, operandType)) {
+			ParseNode replacement = rule.rewrite(node, keys);
+			if(replacement != null) {
+				assert replacement.getType() == node.getType() : 
+					"simplification of " + node.getToken() + " changed its type";
+				return replacement;
+			}
+		}
+		return null;
+	}
+}
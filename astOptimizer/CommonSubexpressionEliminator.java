@@ -0,0 +1,181 @@
+package astOptimizer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import parseTree.ParseNode;
+import parseTree.nodeTypes.AssignmentNode;
+import parseTree.nodeTypes.BinaryOperatorNode;
+import parseTree.nodeTypes.CastNode;
+import parseTree.nodeTypes.DeclarationNode;
+import parseTree.nodeTypes.IdentifierNode;
+import parseTree.nodeTypes.MainBlockNode;
+import parseTree.nodeTypes.PrintStatementNode;
+import parseTree.nodeTypes.TemporaryStoreNode;
+import symbolTable.Binding;
+import symbolTable.Scope;
+import tokens.IdentifierToken;
+
+// Pika programs are straight-line, so a single in-order walk over the statements
+// sees every expression in execution order.  The first evaluation of a repeated
+// subexpression saves its value in a global temporary; later ones read it back.
+public class CommonSubexpressionEliminator {
+	// a temporary costs a store and a reload; below this many nodes it doesn't pay.
+	private static final int MINIMUM_NODES_FOR_REUSE = 5;
+	private static final String TEMPORARY_PREFIX = "$cse-";
+	
+	private Scope globalScope;
+	private Map<String, AvailableExpression> available;
+	private Map<Binding, List<String>> keysUsingBinding;
+	private StructuralKeys keys;
+	private int temporaryCount;
+	
+	public static void eliminate(ParseNode program) {
+		CommonSubexpressionEliminator eliminator = new CommonSubexpressionEliminator(program.getScope());
+		eliminator.statementsOf(program);
+	}
+	public CommonSubexpressionEliminator(Scope globalScope) {
+		this.globalScope = globalScope;
+		this.available = new HashMap<String, AvailableExpression>();
+		this.keysUsingBinding = new IdentityHashMap<Binding, List<String>>();
+		this.keys = new StructuralKeys();
+		this.temporaryCount = 0;
+	}
+	
+	
+	///////////////////////////////////////////////////////////////////////////
+	// statements, in execution order
+	
+	private void statementsOf(ParseNode node) {
+		for(ParseNode child : node.getChildren()) {
+			statement(child);
+		}
+	}
+	private void statement(ParseNode node) {
+		if(node instanceof MainBlockNode) {			// includes BlockNode
+			statementsOf(node);
+		}
+		else if(node instanceof DeclarationNode) {
+			expression(node, 1, false);
+		}
+		else if(node instanceof AssignmentNode) {
+			expression(node, 1, false);
+			invalidate(assignedBinding((AssignmentNode)node));
+		}
+		else if(node instanceof PrintStatementNode) {
+			for(int i = 0; i < node.nChildren(); i++) {
+				expression(node, i, false);
+			}
+		}
+	}
+	private Binding assignedBinding(AssignmentNode node) {
+		ParseNode target = node.child(0);
+		while(!(target instanceof IdentifierNode)) {
+			target = target.child(0);
+		}
+		return ((IdentifierNode)target).getBinding();
+	}
+	
+	
+	///////////////////////////////////////////////////////////////////////////
+	// expressions: the child at childIndex of parent.  
+	// Subexpressions that might not be evaluated (the right side of && and ||)
+	// may use available expressions but must not make new ones available.
+	
+	private void expression(ParseNode parent, int childIndex, boolean mayBeSkipped) {
+		ParseNode node = parent.child(childIndex);
+		String key = keys.keyFor(node);
+		
+		if(key != null && available.containsKey(key)) {
+			reuse(parent, node, available.get(key));
+			return;
+		}
+		
+		for(int i = 0; i < node.nChildren(); i++) {
+			boolean childMayBeSkipped = mayBeSkipped || (i > 0 && isShortCircuit(node));
+			expression(node, i, childMayBeSkipped);
+		}
+		
+		if(key != null && !mayBeSkipped && isWorthReusing(node)) {
+			makeAvailable(key, node);
+		}
+	}
+	private boolean isShortCircuit(ParseNode node) {
+		return (node instanceof BinaryOperatorNode) && ((BinaryOperatorNode)node).isBooleanOperator();
+	}
+	private boolean isWorthReusing(ParseNode node) {
+		return (node instanceof BinaryOperatorNode || node instanceof CastNode) &&
+				Expressions.nodeCount(node) >= MINIMUM_NODES_FOR_REUSE;
+	}
+	
+	
+	///////////////////////////////////////////////////////////////////////////
+	// the table of available expressions
+	
+	private void makeAvailable(String key, ParseNode node) {
+		available.put(key, new AvailableExpression(node));
+		for(Binding binding : bindingsUsedBy(node)) {
+			if(!keysUsingBinding.containsKey(binding)) {
+				keysUsingBinding.put(binding, new ArrayList<String>());
+			}
+			keysUsingBinding.get(binding).add(key);
+		}
+	}
+	private void invalidate(Binding binding) {
+		List<String> killed = keysUsingBinding.remove(binding);
+		if(killed == null) {
+			return;
+		}
+		for(String key : killed) {
+			available.remove(key);
+		}
+	}
+	private List<Binding> bindingsUsedBy(ParseNode node) {
+		List<Binding> result = new ArrayList<Binding>();
+		addBindingsUsedBy(node, result);
+		return result;
+	}
+	private void addBindingsUsedBy(ParseNode node, List<Binding> result) {
+		if(node instanceof IdentifierNode) {
+			result.add(((IdentifierNode)node).getBinding());
+		}
+		for(ParseNode child : node.getChildren()) {
+			addBindingsUsedBy(child, result);
+		}
+	}
+	
+	private void reuse(ParseNode parent, ParseNode node, AvailableExpression expression) {
+		Binding temporary = expression.temporary();
+		
+		IdentifierToken token = IdentifierToken.make(node.getToken().getLocation(), temporary.getLexeme());
+		IdentifierNode replacement = new IdentifierNode(token);
+		replacement.setBinding(temporary);
+		replacement.setType(node.getType());
+		parent.replaceChild(node, replacement);
+	}
+	
+	// the first evaluation is wrapped to save its value the first time it is reused.
+	private class AvailableExpression {
+		private ParseNode firstEvaluation;
+		private Binding temporary;
+		
+		AvailableExpression(ParseNode firstEvaluation) {
+			this.firstEvaluation = firstEvaluation;
+			this.temporary = null;
+		}
+		Binding temporary() {
+			if(temporary == null) {
+				String lexeme = TEMPORARY_PREFIX + (++temporaryCount);
+				temporary = globalScope.createTemporaryBinding(firstEvaluation.getType(), lexeme);
+				
+				ParseNode parent = firstEvaluation.getParent();
+				TemporaryStoreNode store = TemporaryStoreNode.withChild(firstEvaluation, temporary);
+				parent.replaceChild(firstEvaluation, store);
+			}
+			return temporary;
+		}
+	}
+}
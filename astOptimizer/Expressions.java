@@ -0,0 +1,33 @@
+package astOptimizer;
+
+import lexicalAnalyzer.Punctuator;
+import parseTree.ParseNode;
+import parseTree.nodeTypes.BinaryOperatorNode;
+
+// queries about expression subtrees shared by the AST passes.
+public class Expressions {
+	
+	// an expression that may halt with a runtime error cannot be dropped or
+	// evaluated out of order.  Only division by zero can fail.
+	public static boolean mayRaiseError(ParseNode node) {
+		if(node instanceof BinaryOperatorNode && 
+				((BinaryOperatorNode)node).getOperator() == Punctuator.DIVIDE &&
+				!((BinaryOperatorNode)node).divisorIsNonzero()) {
+			return true;
+		}
+		for(ParseNode child : node.getChildren()) {
+			if(mayRaiseError(child)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	public static int nodeCount(ParseNode node) {
+		int count = 1;
+		for(ParseNode child : node.getChildren()) {
+			count += nodeCount(child);
+		}
+		return count;
+	}
+}
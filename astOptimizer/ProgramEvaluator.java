@@ -0,0 +1,308 @@
+package astOptimizer;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import asmCodeGenerator.runtime.PrintFormatter;
+import asmCodeGenerator.runtime.RunTime;
+import lexicalAnalyzer.Punctuator;
+import parseTree.ParseNode;
+import parseTree.nodeTypes.AssignmentNode;
+import parseTree.nodeTypes.BinaryOperatorNode;
+import parseTree.nodeTypes.BlockNode;
+import parseTree.nodeTypes.BooleanConstantNode;
+import parseTree.nodeTypes.CastNode;
+import parseTree.nodeTypes.CharacterNode;
+import parseTree.nodeTypes.DeclarationNode;
+import parseTree.nodeTypes.FloatingConstantNode;
+import parseTree.nodeTypes.IdentifierNode;
+import parseTree.nodeTypes.IntegerConstantNode;
+import parseTree.nodeTypes.MainBlockNode;
+import parseTree.nodeTypes.NewlineNode;
+import parseTree.nodeTypes.PrintStatementNode;
+import parseTree.nodeTypes.ProgramNode;
+import parseTree.nodeTypes.SpaceNode;
+import parseTree.nodeTypes.StringNode;
+import parseTree.nodeTypes.TabNode;
+import parseTree.nodeTypes.TemporaryStoreNode;
+import semanticAnalyzer.types.PrimitiveType;
+import semanticAnalyzer.types.Type;
+import semanticAnalyzer.types.TypeLiteral;
+import symbolTable.Binding;
+
+// Runs a decorated program at compile time with the semantics of the code
+// ASMCodeGenerator produces for it, collecting everything it prints.
+// Pika programs take no input, so when evaluation finishes within the step
+// budget that output is the whole behaviour of the program.
+//
+// Values are held as the emulator holds them: integers, characters and
+// booleans as Integer, floatings as Double, strings as String.
+public class ProgramEvaluator {
+	public static final int DEFAULT_STEP_BUDGET = 100000;
+	
+	private ParseNode root;
+	private int stepsRemaining;
+	private StringBuilder output;
+	private Map<Binding, Object> values;
+	
+	// thrown to abandon evaluation: the program is left to run in the emulator.
+	private static class NotEvaluableException extends RuntimeException {
+		private static final long serialVersionUID = -5913021542906307788L;
+	}
+	// thrown where the generated code would jump to a runtime error handler.
+	private static class RuntimeErrorException extends RuntimeException {
+		private static final long serialVersionUID = 2367148904212930587L;
+		public RuntimeErrorException(String message) {
+			super(message);
+		}
+	}
+	
+	/** Evaluates a decorated program.
+	 * @param root the program; it is not modified.
+	 * @param stepBudget the largest number of nodes to evaluate.
+	 * @return the program's complete output, or null if it could not be
+	 * determined within the step budget.
+	 */
+	public static String evaluate(ParseNode root, int stepBudget) {
+		ProgramEvaluator evaluator = new ProgramEvaluator(root, stepBudget);
+		return evaluator.evaluate();
+	}
+	public ProgramEvaluator(ParseNode root, int stepBudget) {
+		this.root = root;
+		this.stepsRemaining = stepBudget;
+		this.output = new StringBuilder();
+		this.values = new IdentityHashMap<Binding, Object>();
+	}
+	
+	public String evaluate() {
+		try {
+			execute(root);
+		}
+		catch(NotEvaluableException e) {
+			return null;
+		}
+		catch(RuntimeErrorException e) {
+			output.append(String.format(RunTime.GENERAL_RUNTIME_ERROR_FORMAT, e.getMessage()));
+		}
+		return output.toString();
+	}
+	private void step() {
+		if(stepsRemaining <= 0) {
+			throw new NotEvaluableException();
+		}
+		stepsRemaining--;
+	}
+	
+	
+	////////////////////////////////////////////////////////////////////
+	// statements
+	
+	private void execute(ParseNode node) {
+		step();
+		if(node instanceof ProgramNode || node instanceof MainBlockNode || node instanceof BlockNode) {
+			for(ParseNode child : node.getChildren()) {
+				execute(child);
+			}
+		}
+		else if(node instanceof DeclarationNode || node instanceof AssignmentNode) {
+			Object value = value(node.child(1));
+			values.put(targetBinding(node.child(0)), value);
+		}
+		else if(node instanceof PrintStatementNode) {
+			for(ParseNode child : node.getChildren()) {
+				print(child);
+			}
+		}
+		else {
+			throw new NotEvaluableException();
+		}
+	}
+	private Binding targetBinding(ParseNode target) {
+		if(!(target instanceof IdentifierNode)) {
+			throw new NotEvaluableException();
+		}
+		return ((IdentifierNode)target).getBinding();
+	}
+	
+	private void print(ParseNode node) {
+		if(node instanceof NewlineNode) {
+			output.append('\n');
+		}
+		else if(node instanceof SpaceNode) {
+			output.append(' ');
+		}
+		else if(node instanceof TabNode) {
+			output.append('\t');
+		}
+		else {
+			output.append(printedForm(value(node), node.getType()));
+		}
+	}
+	private String printedForm(Object value, Type type) {
+		if(type == PrimitiveType.INTEGER || type == PrimitiveType.STRING) {
+			return value.toString();
+		}
+		if(type == PrimitiveType.CHARACTER) {
+			return String.valueOf((char)(int)(Integer)value);
+		}
+		if(type == PrimitiveType.BOOLEAN) {
+			return ((Integer)value != 0) ? "true" : "false";
+		}
+		if(type == PrimitiveType.FLOATING) {
+			double floating = (Double)value;
+			if(Double.isNaN(floating) || Double.isInfinite(floating)) {
+				throw new NotEvaluableException();
+			}
+			return PrintFormatter.floating(floating);
+		}
+		throw new NotEvaluableException();
+	}
+	
+	
+	////////////////////////////////////////////////////////////////////
+	// expressions
+	
+	private Object value(ParseNode node) {
+		step();
+		if(node instanceof BinaryOperatorNode) {
+			return binaryOperatorValue((BinaryOperatorNode)node);
+		}
+		if(node instanceof CastNode) {
+			return castValue((CastNode)node);
+		}
+		if(node instanceof TemporaryStoreNode) {
+			Object value = value(node.child(0));
+			values.put(((TemporaryStoreNode)node).getTemporary(), value);
+			return value;
+		}
+		if(node instanceof IdentifierNode) {
+			Binding binding = ((IdentifierNode)node).getBinding();
+			if(!values.containsKey(binding)) {
+				throw new NotEvaluableException();
+			}
+			return values.get(binding);
+		}
+		if(node instanceof IntegerConstantNode) {
+			return ((IntegerConstantNode)node).getValue();
+		}
+		if(node instanceof FloatingConstantNode) {
+			return PrintFormatter.asEmitted(((FloatingConstantNode)node).getValue());
+		}
+		if(node instanceof CharacterNode) {
+			return (int)((CharacterNode)node).getValue();
+		}
+		if(node instanceof BooleanConstantNode) {
+			return ((BooleanConstantNode)node).getValue() ? 1 : 0;
+		}
+		if(node instanceof StringNode) {
+			return ((StringNode)node).getValue();
+		}
+		throw new NotEvaluableException();
+	}
+	
+	private Object binaryOperatorValue(BinaryOperatorNode node) {
+		Punctuator operator = (Punctuator)node.getOperator();
+		if(node.isBooleanOperator()) {
+			boolean left = isTrue(value(node.child(0)));
+			if(left == (operator == Punctuator.OR)) {
+				return left ? 1 : 0;
+			}
+			return isTrue(value(node.child(1))) ? 1 : 0;
+		}
+		
+		Object left = value(node.child(0));
+		Object right = value(node.child(1));
+		if(node.isComparator()) {
+			return comparison(operator, left, right) ? 1 : 0;
+		}
+		if(left instanceof Double) {
+			return floatingArithmetic(operator, (Double)left, (Double)right);
+		}
+		return integerArithmetic(operator, (Integer)left, (Integer)right);
+	}
+	private boolean isTrue(Object value) {
+		return (Integer)value != 0;
+	}
+	
+	// comparisons test the sign of the difference, as the generated code does.
+	private boolean comparison(Punctuator operator, Object left, Object right) {
+		double difference;
+		if(left instanceof Double) {
+			difference = (Double)left - (Double)right;
+		}
+		else {
+			difference = (Integer)left - (Integer)right;
+		}
+		switch(operator) {
+		case GREATER:		return difference > 0;
+		case LESSER:		return difference < 0;
+		case GREATEREQUAL:	return !(difference < 0);
+		case LESSEREQUAL:	return !(difference > 0);
+		case EQUAL:			return difference == 0;
+		case NOT_EQUAL:		return !(difference == 0);
+		default:
+			throw new NotEvaluableException();
+		}
+	}
+	private Object integerArithmetic(Punctuator operator, int left, int right) {
+		switch(operator) {
+		case ADD:		return left + right;
+		case SUBTRACT:	return left - right;
+		case MULTIPLY:	return left * right;
+		case DIVIDE:
+			if(right == 0) {
+				throw new RuntimeErrorException(RunTime.DIVIDE_BY_ZERO_MESSAGE);
+			}
+			if(left == Integer.MIN_VALUE && right == -1) {
+				throw new NotEvaluableException();		// the emulator defines this result
+			}
+			return left / right;
+		default:
+			throw new NotEvaluableException();
+		}
+	}
+	private Object floatingArithmetic(Punctuator operator, double left, double right) {
+		switch(operator) {
+		case ADD:		return left + right;
+		case SUBTRACT:	return left - right;
+		case MULTIPLY:	return left * right;
+		case DIVIDE:
+			if(right == 0) {
+				throw new RuntimeErrorException(RunTime.DIVIDE_BY_ZERO_MESSAGE);
+			}
+			return left / right;
+		default:
+			throw new NotEvaluableException();
+		}
+	}
+	
+	private Object castValue(CastNode node) {
+		Object value = value(node.child(0));
+		Type fromType = node.getExpressionType();
+		Type toType = ((TypeLiteral)node.getCastType()).getType();
+		
+		if(fromType == toType) {
+			return value;
+		}
+		if(toType == PrimitiveType.BOOLEAN) {
+			return isTrue(value) ? 1 : 0;
+		}
+		if(fromType == PrimitiveType.CHARACTER && toType == PrimitiveType.INTEGER) {
+			return value;
+		}
+		if(fromType == PrimitiveType.INTEGER && toType == PrimitiveType.CHARACTER) {
+			return (Integer)value & 127;
+		}
+		if(fromType == PrimitiveType.INTEGER && toType == PrimitiveType.FLOATING) {
+			return (double)(Integer)value;
+		}
+		if(fromType == PrimitiveType.FLOATING && toType == PrimitiveType.INTEGER) {
+			double floating = (Double)value;
+			if(!(floating > -2147483649.0 && floating < 2147483648.0)) {
+				throw new NotEvaluableException();		// nor this conversion
+			}
+			return (int)floating;
+		}
+		throw new NotEvaluableException();
+	}
+}
@@ -0,0 +1,12 @@
+package astOptimizer;
+
+import parseTree.ParseNode;
+
+public interface SimplificationRule {
+	/** Rewrites an operator or cast node.
+	 * @param node the node to rewrite; its children are already simplified.
+	 * @param keys structural keys for recognizing repeated operands.
+	 * @return an equivalent replacement for node, or null if the rule does not apply.
+	 */
+	public ParseNode rewrite(ParseNode node, StructuralKeys keys);
+}
@@ -0,0 +1,262 @@
+package astOptimizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import inputHandler.TextLocation;
+import lexicalAnalyzer.Keyword;
+import lexicalAnalyzer.Lextant;
+import lexicalAnalyzer.Punctuator;
+import parseTree.ParseNode;
+import parseTree.nodeTypes.BinaryOperatorNode;
+import parseTree.nodeTypes.BooleanConstantNode;
+import parseTree.nodeTypes.CastNode;
+import parseTree.nodeTypes.FloatingConstantNode;
+import parseTree.nodeTypes.IdentifierNode;
+import parseTree.nodeTypes.IntegerConstantNode;
+import semanticAnalyzer.signatures.FunctionSignature;
+import semanticAnalyzer.signatures.FunctionSignatures;
+import semanticAnalyzer.types.PrimitiveType;
+import semanticAnalyzer.types.Type;
+import semanticAnalyzer.types.TypeLiteral;
+import tokens.IntegerToken;
+import tokens.LextantToken;
+import static semanticAnalyzer.types.PrimitiveType.*;
+
+// the rules that apply to one operator at one operand type.
+public class SimplificationRules extends ArrayList<SimplificationRule> {
+	private static final long serialVersionUID = 4526180117938446812L;
+	private static Map<Lextant, Map<Type, SimplificationRules>> rulesForKey = 
+			new HashMap<Lextant, Map<Type, SimplificationRules>>();
+	private static SimplificationRules noRules = new SimplificationRules();
+
+	private SimplificationRules() {
+	}
+	public SimplificationRules(Lextant operator, Type operandType, SimplificationRule ...rules) {
+		for(SimplificationRule rule: rules) {
+			add(rule);
+		}
+		if(!rulesForKey.containsKey(operator)) {
+			rulesForKey.put(operator, new HashMap<Type, SimplificationRules>());
+		}
+		rulesForKey.get(operator).put(operandType, this);
+	}
+	
+	public static SimplificationRules rulesFor(Lextant operator, Type operandType) {
+		if(rulesForKey.containsKey(operator) && rulesForKey.get(operator).containsKey(operandType)) {
+			return rulesForKey.get(operator).get(operandType);
+		}
+		return noRules;
+	}
+	
+	
+	/////////////////////////////////////////////////////////////////////////////////
+	// The rule table.  Integer rules that discard an operand only fire when the
+	// operand cannot raise a runtime error.  Floating rules are restricted to
+	// identities that also hold for -0.0, infinities and NaN.
+	
+	static {
+		new SimplificationRules(Punctuator.ADD, INTEGER,
+				rightOperandIdentity(0),
+				leftOperandIdentity(0)
+		);
+		new SimplificationRules(Punctuator.SUBTRACT, INTEGER,
+				rightOperandIdentity(0),
+				sameOperandsGive(0)
+		);
+		new SimplificationRules(Punctuator.SUBTRACT, FLOATING,
+				rightOperandIdentity(0.0)
+		);
+		new SimplificationRules(Punctuator.MULTIPLY, INTEGER,
+				rightOperandIdentity(1),
+				leftOperandIdentity(1),
+				eitherOperandAbsorbs(0),
+				doublingAsAddition(2)
+		);
+		new SimplificationRules(Punctuator.MULTIPLY, FLOATING,
+				rightOperandIdentity(1.0),
+				leftOperandIdentity(1.0),
+				doublingAsAddition(2.0)
+		);
+		new SimplificationRules(Punctuator.DIVIDE, INTEGER,
+				rightOperandIdentity(1)
+		);
+		new SimplificationRules(Punctuator.DIVIDE, FLOATING,
+				rightOperandIdentity(1.0)
+		);
+		
+		for(Type type: Arrays.asList(INTEGER, CHARACTER, BOOLEAN)) {
+			new SimplificationRules(Punctuator.EQUAL, 		 type, sameOperandsGive(true));
+			new SimplificationRules(Punctuator.NOT_EQUAL, 	 type, sameOperandsGive(false));
+			new SimplificationRules(Punctuator.GREATEREQUAL, type, sameOperandsGive(true));
+			new SimplificationRules(Punctuator.LESSEREQUAL,  type, sameOperandsGive(true));
+			new SimplificationRules(Punctuator.GREATER, 	 type, sameOperandsGive(false));
+			new SimplificationRules(Punctuator.LESSER, 		 type, sameOperandsGive(false));
+		}
+		
+		for(PrimitiveType type: Arrays.asList(INTEGER, FLOATING, CHARACTER, BOOLEAN, STRING)) {
+			new SimplificationRules(Punctuator.PIPE, type,
+					castToOwnType(),
+					losslessRoundTrip()
+			);
+		}
+	}
+	
+	
+	/////////////////////////////////////////////////////////////////////////////////
+	// rule factories
+	
+	// x op identity -> x
+	public static SimplificationRule rightOperandIdentity(final Object identity) {
+		return new SimplificationRule() {
+			public ParseNode rewrite(ParseNode node, StructuralKeys keys) {
+				if(isConstant(node.child(1), identity)) {
+					return node.child(0);
+				}
+				return null;
+			}
+		};
+	}
+	// identity op x -> x
+	public static SimplificationRule leftOperandIdentity(final Object identity) {
+		return new SimplificationRule() {
+			public ParseNode rewrite(ParseNode node, StructuralKeys keys) {
+				if(isConstant(node.child(0), identity)) {
+					return node.child(1);
+				}
+				return null;
+			}
+		};
+	}
+	// x op zero -> zero, zero op x -> zero
+	public static SimplificationRule eitherOperandAbsorbs(final Object zero) {
+		return new SimplificationRule() {
+			public ParseNode rewrite(ParseNode node, StructuralKeys keys) {
+				for(int i = 0; i < 2; i++) {
+					if(isConstant(node.child(i), zero) && !Expressions.mayRaiseError(node.child(1-i))) {
+						return constantNode(node, zero);
+					}
+				}
+				return null;
+			}
+		};
+	}
+	// x op x -> result
+	public static SimplificationRule sameOperandsGive(final Object result) {
+		return new SimplificationRule() {
+			public ParseNode rewrite(ParseNode node, StructuralKeys keys) {
+				if(keys.sameExpression(node.child(0), node.child(1)) && !Expressions.mayRaiseError(node)) {
+					return constantNode(node, result);
+				}
+				return null;
+			}
+		};
+	}
+	// x * two -> x + x, two * x -> x + x, for a variable x.
+	// the code generator evaluates the repeated variable once and duplicates it.
+	public static SimplificationRule doublingAsAddition(final Object two) {
+		return new SimplificationRule() {
+			public ParseNode rewrite(ParseNode node, StructuralKeys keys) {
+				for(int i = 0; i < 2; i++) {
+					ParseNode other = node.child(1-i);
+					if(isConstant(node.child(i), two) && other instanceof IdentifierNode) {
+						return sum(node, (IdentifierNode)other);
+					}
+				}
+				return null;
+			}
+		};
+	}
+	// |x|T -> x, for x of type T.
+	public static SimplificationRule castToOwnType() {
+		return new SimplificationRule() {
+			public ParseNode rewrite(ParseNode node, StructuralKeys keys) {
+				if(castTarget(node) == node.child(0).getType()) {
+					return node.child(0);
+				}
+				return null;
+			}
+		};
+	}
+	// ||x|U|T -> x, for x of type T, when casting T to U loses nothing.
+	public static SimplificationRule losslessRoundTrip() {
+		return new SimplificationRule() {
+			public ParseNode rewrite(ParseNode node, StructuralKeys keys) {
+				ParseNode inner = node.child(0);
+				if(!(inner instanceof CastNode)) {
+					return null;
+				}
+				ParseNode original = inner.child(0);
+				Type type = original.getType();
+				if(castTarget(node) == type && isLosslessCast(type, castTarget(inner))) {
+					return original;
+				}
+				return null;
+			}
+		};
+	}
+	
+	
+	/////////////////////////////////////////////////////////////////////////////////
+	// helpers for the rules
+	
+	private static boolean isConstant(ParseNode node, Object value) {
+		if(node instanceof IntegerConstantNode) {
+			return value.equals(((IntegerConstantNode)node).getValue());
+		}
+		if(node instanceof FloatingConstantNode) {
+			return value.equals(((FloatingConstantNode)node).getValue());
+		}
+		return false;
+	}
+	private static Type castTarget(ParseNode node) {
+		Type castType = ((CastNode)node).getCastType();
+		if(castType instanceof TypeLiteral) {
+			return ((TypeLiteral)castType).getType();
+		}
+		return castType;
+	}
+	private static boolean isLosslessCast(Type from, Type to) {
+		return (from == CHARACTER && to == INTEGER) ||
+			   (from == INTEGER && to == FLOATING);
+	}
+	
+	private static ParseNode constantNode(ParseNode node, Object value) {
+		TextLocation location = node.getToken().getLocation();
+		ParseNode result;
+		
+		if(value instanceof Boolean) {
+			Keyword keyword = ((Boolean)value) ? Keyword.TRUE : Keyword.FALSE;
+			result = new BooleanConstantNode(LextantToken.make(location, keyword.getLexeme(), keyword));
+			result.setType(BOOLEAN);
+		}
+		else {
+			assert value instanceof Integer : "constant " + value + " unimplemented in SimplificationRules";
+			result = new IntegerConstantNode(IntegerToken.make(location, value.toString()));
+			result.setType(INTEGER);
+		}
+		return result;
+	}
+	private static ParseNode sum(ParseNode node, IdentifierNode operand) {
+		List<Type> types = Arrays.asList(operand.getType(), operand.getType());
+		FunctionSignature signature = FunctionSignatures.signature(Punctuator.ADD, types);
+		if(signature.isNull()) {
+			return null;
+		}
+		
+		LextantToken token = LextantToken.make(node.getToken().getLocation(), Punctuator.ADD.getLexeme(), Punctuator.ADD);
+		BinaryOperatorNode result = BinaryOperatorNode.withChildren(token, operand, copyOf(operand));
+		result.setSignature(signature);
+		result.setType(signature.resultType());
+		return result;
+	}
+	private static IdentifierNode copyOf(IdentifierNode node) {
+		IdentifierNode copy = new IdentifierNode(node.getToken());
+		copy.setBinding(node.getBinding());
+		copy.setType(node.getType());
+		return copy;
+	}
+}
@@ -0,0 +1,82 @@
+package astOptimizer;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import lexicalAnalyzer.Punctuator;
+import parseTree.ParseNode;
+import parseTree.nodeTypes.BinaryOperatorNode;
+import parseTree.nodeTypes.BooleanConstantNode;
+import parseTree.nodeTypes.CastNode;
+import parseTree.nodeTypes.CharacterNode;
+import parseTree.nodeTypes.FloatingConstantNode;
+import parseTree.nodeTypes.IdentifierNode;
+import parseTree.nodeTypes.IntegerConstantNode;
+import symbolTable.Binding;
+
+// Structural keys for expression subtrees.  Leaves are keyed by binding identity
+// or constant value, so two subtrees have the same key exactly when they compute
+// the same value from the same variables.  Subtrees that are not plain
+// operator/cast/leaf expressions have no key (null).
+// Keys are memoized; use a fresh StructuralKeys after rewriting a keyed subtree.
+public class StructuralKeys {
+	private Map<ParseNode, String> keys;
+	private Map<Binding, Integer> bindingNumbers;
+	
+	public StructuralKeys() {
+		keys = new IdentityHashMap<ParseNode, String>();
+		bindingNumbers = new IdentityHashMap<Binding, Integer>();
+	}
+	
+	public boolean sameExpression(ParseNode a, ParseNode b) {
+		String key = keyFor(a);
+		return key != null && key.equals(keyFor(b));
+	}
+	
+	public String keyFor(ParseNode node) {
+		if(!keys.containsKey(node)) {
+			keys.put(node, computeKey(node));
+		}
+		return keys.get(node);
+	}
+	private String computeKey(ParseNode node) {
+		if(node instanceof BinaryOperatorNode) {
+			String left  = keyFor(node.child(0));
+			String right = keyFor(node.child(1));
+			if(left == null || right == null) {
+				return null;
+			}
+			Punctuator operator = (Punctuator)((BinaryOperatorNode)node).getOperator();
+			return "(" + operator.getLexeme() + node.getType() + " " + left + " " + right + ")";
+		}
+		if(node instanceof CastNode) {
+			String operand = keyFor(node.child(0));
+			if(operand == null) {
+				return null;
+			}
+			return "(|" + ((CastNode)node).getCastType() + " " + operand + ")";
+		}
+		if(node instanceof IdentifierNode) {
+			return "v" + bindingNumber(((IdentifierNode)node).getBinding());
+		}
+		if(node instanceof IntegerConstantNode) {
+			return "i" + ((IntegerConstantNode)node).getValue();
+		}
+		if(node instanceof FloatingConstantNode) {
+			return "f" + Double.doubleToLongBits(((FloatingConstantNode)node).getValue());
+		}
+		if(node instanceof CharacterNode) {
+			return "c" + (int)((CharacterNode)node).getValue();
+		}
+		if(node instanceof BooleanConstantNode) {
+			return "b" + ((BooleanConstantNode)node).getValue();
+		}
+		return null;
+	}
+	private int bindingNumber(Binding binding) {
+		if(!bindingNumbers.containsKey(binding)) {
+			bindingNumbers.put(binding, bindingNumbers.size());
+		}
+		return bindingNumbers.get(binding);
+	}
+}
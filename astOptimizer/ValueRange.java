@@ -0,0 +1,86 @@
+package astOptimizer;
+
+// A closed interval [low, high] containing every value an expression may take.
+// Integer and character ranges hold exact 32-bit values; floating ranges bound
+// the computed doubles (NaN results make a range unknown).
+public class ValueRange {
+	private static final double INT_MIN = Integer.MIN_VALUE;
+	private static final double INT_MAX = Integer.MAX_VALUE;
+	
+	public static final ValueRange ALL_INTEGERS = new ValueRange(INT_MIN, INT_MAX);
+	public static final ValueRange ALL_CHARACTERS = new ValueRange(0, 127);
+	public static final ValueRange ALL_BOOLEANS = new ValueRange(0, 1);
+	public static final ValueRange ALL_FLOATINGS = new ValueRange(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+	
+	private final double low;
+	private final double high;
+	
+	private ValueRange(double low, double high) {
+		this.low = low;
+		this.high = high;
+	}
+	public static ValueRange of(double value) {
+		return new ValueRange(value, value);
+	}
+	
+	public double getLow() {
+		return low;
+	}
+	public double getHigh() {
+		return high;
+	}
+	public boolean excludesZero() {
+		return low > 0 || high < 0;
+	}
+	public boolean isWithin(ValueRange other) {
+		return other.low <= low && high <= other.high;
+	}
+	
+	
+	//////////////////////////////////////////////////////////////////////
+	// interval arithmetic.  Rounding is monotone, so the bounds computed from
+	// the corners still bound the rounded results.
+	
+	public ValueRange add(ValueRange other) {
+		return fromCorners(low + other.low, high + other.high);
+	}
+	public ValueRange subtract(ValueRange other) {
+		return fromCorners(low - other.high, high - other.low);
+	}
+	public ValueRange multiply(ValueRange other) {
+		return fromCorners(low * other.low, low * other.high, high * other.low, high * other.high);
+	}
+	// requires other.excludesZero().
+	public ValueRange divide(ValueRange other) {
+		return fromCorners(low / other.low, low / other.high, high / other.low, high / other.high);
+	}
+	// integer division truncates toward zero, which is monotone in each operand
+	// for a divisor of fixed sign.  requires other.excludesZero().
+	public ValueRange truncatingDivide(ValueRange other) {
+		return divide(other).truncated();
+	}
+	public ValueRange truncated() {
+		return fromCorners(truncate(low), truncate(high));
+	}
+	private static double truncate(double value) {
+		return value < 0 ? Math.ceil(value) : Math.floor(value);
+	}
+	
+	// an unknown bound (NaN) gives an unbounded range.
+	private static ValueRange fromCorners(double ...corners) {
+		double low = Double.POSITIVE_INFINITY;
+		double high = Double.NEGATIVE_INFINITY;
+		for(double corner: corners) {
+			if(Double.isNaN(corner)) {
+				return ALL_FLOATINGS;
+			}
+			low = Math.min(low, corner);
+			high = Math.max(high, corner);
+		}
+		return new ValueRange(low, high);
+	}
+	
+	public String toString() {
+		return "[" + low + ", " + high + "]";
+	}
+}
@@ -0,0 +1,184 @@
+package astOptimizer;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import lexicalAnalyzer.Punctuator;
+import parseTree.ParseNode;
+import parseTree.nodeTypes.AssignmentNode;
+import parseTree.nodeTypes.BinaryOperatorNode;
+import parseTree.nodeTypes.BooleanConstantNode;
+import parseTree.nodeTypes.CastNode;
+import parseTree.nodeTypes.CharacterNode;
+import parseTree.nodeTypes.DeclarationNode;
+import parseTree.nodeTypes.FloatingConstantNode;
+import parseTree.nodeTypes.IdentifierNode;
+import parseTree.nodeTypes.IntegerConstantNode;
+import parseTree.nodeTypes.TemporaryStoreNode;
+import semanticAnalyzer.types.PrimitiveType;
+import semanticAnalyzer.types.Type;
+import semanticAnalyzer.types.TypeLiteral;
+import symbolTable.Binding;
+
+// Computes a value range for every integer, character and floating expression,
+// walking the program in execution order.  Pika programs are straight-line code,
+// so the range of a variable is exactly that of the value last stored to it.
+// Divisions whose divisor range excludes zero are marked so that the code
+// generator omits the division-by-zero check.
+public class ValueRangeAnalyzer {
+	private ParseNode root;
+	private Map<Binding, ValueRange> variableRanges;
+	private int checksRemoved;
+	
+	public static int analyze(ParseNode root) {
+		ValueRangeAnalyzer analyzer = new ValueRangeAnalyzer(root);
+		return analyzer.analyze();
+	}
+	public ValueRangeAnalyzer(ParseNode root) {
+		this.root = root;
+		this.variableRanges = new IdentityHashMap<Binding, ValueRange>();
+		this.checksRemoved = 0;
+	}
+	
+	// returns the number of division-by-zero checks removed.
+	public int analyze() {
+		range(root);
+		return checksRemoved;
+	}
+	
+	
+	////////////////////////////////////////////////////////////////////
+	// stores to variables
+	
+	private void store(ParseNode target, ValueRange range) {
+		if(target instanceof IdentifierNode) {
+			record(((IdentifierNode)target).getBinding(), range);
+		}
+		else {
+			variableRanges.clear();
+		}
+	}
+	private void record(Binding binding, ValueRange range) {
+		if(range == null) {
+			variableRanges.remove(binding);
+		}
+		else {
+			variableRanges.put(binding, range);
+		}
+	}
+	
+	
+	////////////////////////////////////////////////////////////////////
+	// all nodes, children in evaluation order.  null means no range.
+	
+	private ValueRange range(ParseNode node) {
+		if(node instanceof DeclarationNode || node instanceof AssignmentNode) {
+			store(node.child(0), range(node.child(1)));
+			return null;
+		}
+		if(node instanceof BinaryOperatorNode) {
+			return binaryOperatorRange((BinaryOperatorNode)node);
+		}
+		if(node instanceof CastNode) {
+			return castRange((CastNode)node);
+		}
+		if(node instanceof TemporaryStoreNode) {
+			ValueRange range = range(node.child(0));
+			record(((TemporaryStoreNode)node).getTemporary(), range);
+			return range;
+		}
+		if(node instanceof IdentifierNode) {
+			Binding binding = ((IdentifierNode)node).getBinding();
+			if(variableRanges.containsKey(binding)) {
+				return variableRanges.get(binding);
+			}
+			return rangeOfType(node.getType());
+		}
+		if(node instanceof IntegerConstantNode) {
+			return ValueRange.of(((IntegerConstantNode)node).getValue());
+		}
+		if(node instanceof FloatingConstantNode) {
+			return ValueRange.of(((FloatingConstantNode)node).getValue());
+		}
+		if(node instanceof CharacterNode) {
+			return ValueRange.of(((CharacterNode)node).getValue());
+		}
+		if(node instanceof BooleanConstantNode) {
+			return ValueRange.of(((BooleanConstantNode)node).getValue() ? 1 : 0);
+		}
+		for(ParseNode child : node.getChildren()) {
+			range(child);
+		}
+		return rangeOfType(node.getType());
+	}
+	
+	private ValueRange binaryOperatorRange(BinaryOperatorNode node) {
+		ValueRange left = range(node.child(0));
+		ValueRange right = range(node.child(1));
+		Type type = node.getType();
+		if(left == null || right == null || node.isComparator() || node.isBooleanOperator()) {
+			return rangeOfType(type);
+		}
+		
+		Punctuator operator = (Punctuator)node.getOperator();
+		switch(operator) {
+		case ADD:		return inRangeOfType(left.add(right), type);
+		case SUBTRACT:	return inRangeOfType(left.subtract(right), type);
+		case MULTIPLY:	return inRangeOfType(left.multiply(right), type);
+		case DIVIDE:
+			if(!right.excludesZero()) {
+				return rangeOfType(type);
+			}
+			node.markDivisorNonzero();
+			checksRemoved++;
+			if(type == PrimitiveType.FLOATING) {
+				return inRangeOfType(left.divide(right), type);
+			}
+			return inRangeOfType(left.truncatingDivide(right), type);
+		default:
+			return rangeOfType(type);
+		}
+	}
+	
+	private ValueRange castRange(CastNode node) {
+		ValueRange operand = range(node.child(0));
+		Type fromType = node.getExpressionType();
+		Type toType = ((TypeLiteral)node.getCastType()).getType();
+		if(operand == null) {
+			return rangeOfType(toType);
+		}
+		
+		if(toType == PrimitiveType.BOOLEAN) {
+			return ValueRange.ALL_BOOLEANS;
+		}
+		if(fromType == PrimitiveType.FLOATING && toType == PrimitiveType.INTEGER) {
+			return inRangeOfType(operand.truncated(), toType);
+		}
+		return inRangeOfType(operand, toType);
+	}
+	
+	// integer arithmetic wraps, and a cast to character keeps the low seven bits:
+	// a computed range that leaves the type's range says nothing.
+	private ValueRange inRangeOfType(ValueRange range, Type type) {
+		ValueRange all = rangeOfType(type);
+		if(all == null || range.isWithin(all)) {
+			return range;
+		}
+		return all;
+	}
+	private ValueRange rangeOfType(Type type) {
+		if(type == PrimitiveType.INTEGER) {
+			return ValueRange.ALL_INTEGERS;
+		}
+		if(type == PrimitiveType.CHARACTER) {
+			return ValueRange.ALL_CHARACTERS;
+		}
+		if(type == PrimitiveType.BOOLEAN) {
+			return ValueRange.ALL_BOOLEANS;
+		}
+		if(type == PrimitiveType.FLOATING) {
+			return ValueRange.ALL_FLOATINGS;
+		}
+		return null;
+	}
+}
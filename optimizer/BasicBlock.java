@@ -0,0 +1,71 @@
+package optimizer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import asmCodeGenerator.codeStorage.InstructionBuffer;
+
+// A straight-line run of code in an InstructionBuffer: control enters only at
+// the first instruction and leaves only after the last.  The block holds the
+// buffer indices of its instructions, which need not be contiguous, as data
+// directives may sit between them in the buffer.
+public class BasicBlock {
+	private int number;
+	private int[] instructions;
+	private List<BasicBlock> successors = new ArrayList<BasicBlock>();
+	private List<BasicBlock> predecessors = new ArrayList<BasicBlock>();
+
+	BasicBlock(int number, int[] instructions) {
+		this.number = number;
+		this.instructions = instructions;
+	}
+
+	// the position of this block in the code, counting from 0.
+	public int getNumber() {
+		return number;
+	}
+	public int size() {
+		return instructions.length;
+	}
+	// the buffer index of the i'th instruction of the block.
+	public int instruction(int i) {
+		return instructions[i];
+	}
+	public int first() {
+		return instructions[0];
+	}
+	public int last() {
+		return instructions[instructions.length - 1];
+	}
+
+	// the blocks control can go to next, including called subroutines.
+	public List<BasicBlock> getSuccessors() {
+		return successors;
+	}
+	public List<BasicBlock> getPredecessors() {
+		return predecessors;
+	}
+	void addSuccessor(BasicBlock successor) {
+		if(!successors.contains(successor)) {
+			successors.add(successor);
+			successor.predecessors.add(this);
+		}
+	}
+
+	public String toString(InstructionBuffer code) {
+		StringBuilder result = new StringBuilder("block " + number + " ->");
+		for(BasicBlock successor: successors) {
+			result.append(" ").append(successor.number);
+		}
+		result.append("\n");
+		for(int index: instructions) {
+			if(!code.isKilled(index)) {
+				result.append(code.instruction(index)).append("\n");
+			}
+		}
+		return result.toString();
+	}
+	public String toString() {
+		return "block " + number;
+	}
+}
@@ -0,0 +1,300 @@
+package optimizer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import asmCodeGenerator.codeStorage.ASMOpcode;
+import asmCodeGenerator.codeStorage.InstructionBuffer;
+import static asmCodeGenerator.codeStorage.ASMOpcode.*;
+
+// Reorders basic blocks so that control falls through along the heaviest
+// edges, by Pettis and Hansen's greedy chaining: taking the edges from
+// heaviest to lightest, an edge joins two chains of blocks if it goes from
+// the end of one to the start of the other.  The chain holding the first
+// block goes first, and the rest follow in their original order.
+//
+// The code is then re-emitted with only the jumps the new order needs: a
+// Jump to the next block is dropped, a branch whose target is next is
+// inverted if it can be, and a Jump is added wherever control used to fall
+// through to a block that is no longer next.  Blocks that need a label for
+// that get one.  The data directives go before all the code, in their
+// original order.  The new layout is kept only if it has fewer Jumps.
+//
+// A block ending in Call or CallV always stays just before the block after
+// it, which is where the call returns.  Code using PushPC may depend on the
+// address of any instruction, so it is not rearranged at all.
+public class BlockLayout {
+	private static final String LABEL_PREFIX = "-layout-";
+
+	private EdgeWeights weights;
+	private int jumpsRemoved = 0;
+
+	private InstructionBuffer code;
+	private ControlFlowGraph graph;
+	private List<BasicBlock> blocks;
+	private BasicBlock[] layoutNext;			// by block number: the next block in its chain
+	private BasicBlock[] layoutPrevious;
+	private int[] chainParent;					// union-find of block numbers in the same chain
+	private int nextLabel;
+
+	public BlockLayout() {
+		this(new StaticEdgeWeights());
+	}
+	public BlockLayout(EdgeWeights weights) {
+		this.weights = weights;
+	}
+
+	public int getJumpsRemoved() {
+		return jumpsRemoved;
+	}
+
+	// an edge along which control may fall through.
+	private static class Edge {
+		final BasicBlock from;
+		final BasicBlock to;
+		final long weight;
+
+		Edge(BasicBlock from, BasicBlock to, long weight) {
+			this.from = from;
+			this.to = to;
+			this.weight = weight;
+		}
+	}
+
+	// returns true if the code was rearranged.
+	public boolean arrange(InstructionBuffer code) {
+		this.code = code;
+		this.graph = ControlFlowGraph.build(code);
+		this.blocks = graph.getBlocks();
+		if(blocks.size() < 2 || usesPushPC() || fallsOffEnd()) {
+			return false;
+		}
+		makeChains();
+		List<BasicBlock> order = orderChains();
+
+		int jumpsBefore = countJumps();
+		int sizeBefore = code.size();
+		List<Integer> sequence = emit(order);
+		int jumpsAfter = countJumps(sequence);
+		if(jumpsAfter >= jumpsBefore) {
+			for(int i = code.size() - 1; i >= sizeBefore; i--) {
+				code.kill(i);
+			}
+			code.compact();
+			return false;
+		}
+		int[] result = new int[sequence.size()];
+		for(int i = 0; i < result.length; i++) {
+			result[i] = sequence.get(i);
+		}
+		code.rearrange(result);
+		jumpsRemoved += jumpsBefore - jumpsAfter;
+		return true;
+	}
+	private boolean usesPushPC() {
+		for(BasicBlock block: blocks) {
+			if(code.opcode(block.last()) == PushPC) {
+				return true;
+			}
+		}
+		return false;
+	}
+	// the last block must stay last if control can run off its end.
+	private boolean fallsOffEnd() {
+		return ControlFlowGraph.fallsThrough(code.opcode(blocks.get(blocks.size() - 1).last()));
+	}
+
+
+	////////////////////////////////////////////////////////////////////
+	// chaining
+
+	private void makeChains() {
+		int count = blocks.size();
+		layoutNext = new BasicBlock[count];
+		layoutPrevious = new BasicBlock[count];
+		chainParent = new int[count];
+		for(int i = 0; i < count; i++) {
+			chainParent[i] = i;
+		}
+		for(Edge edge: edgesByWeight()) {
+			join(edge.from, edge.to);
+		}
+	}
+	private List<Edge> edgesByWeight() {
+		List<Edge> edges = new ArrayList<Edge>();
+		for(BasicBlock block: blocks) {
+			ASMOpcode last = code.opcode(block.last());
+			BasicBlock next = originalNext(block);
+			if(last == Jump || ControlFlowGraph.isBranch(last)) {
+				addEdge(edges, block, graph.labelledBlock(code.rawOperand(block.last())), false);
+			}
+			if(ControlFlowGraph.fallsThrough(last) && next != null) {
+				addEdge(edges, block, next, last == Call || last == CallV);
+			}
+		}
+		Collections.sort(edges, new Comparator<Edge>() {
+			public int compare(Edge a, Edge b) {
+				return Long.compare(b.weight, a.weight);
+			}
+		});
+		return edges;
+	}
+	// a fall-through edge that must be kept weighs more than any other.
+	private void addEdge(List<Edge> edges, BasicBlock from, BasicBlock to, boolean mustFallThrough) {
+		if(to == null || to == from) {
+			return;
+		}
+		long weight = mustFallThrough ? Long.MAX_VALUE : weights.weight(graph, from, to);
+		edges.add(new Edge(from, to, weight));
+	}
+	// from must end a chain and to start another, which is not the first block's.
+	private void join(BasicBlock from, BasicBlock to) {
+		int fromChain = chain(from.getNumber());
+		int toChain = chain(to.getNumber());
+		if(layoutNext[from.getNumber()] != null || layoutPrevious[to.getNumber()] != null ||
+				fromChain == toChain || to == blocks.get(0)) {
+			return;
+		}
+		layoutNext[from.getNumber()] = to;
+		layoutPrevious[to.getNumber()] = from;
+		chainParent[toChain] = fromChain;
+	}
+	private int chain(int number) {
+		while(chainParent[number] != number) {
+			chainParent[number] = chainParent[chainParent[number]];
+			number = chainParent[number];
+		}
+		return number;
+	}
+	// chains in the order of their first blocks.
+	private List<BasicBlock> orderChains() {
+		List<BasicBlock> order = new ArrayList<BasicBlock>();
+		for(BasicBlock block: blocks) {
+			if(layoutPrevious[block.getNumber()] != null) {
+				continue;
+			}
+			for(BasicBlock b = block; b != null; b = layoutNext[b.getNumber()]) {
+				order.add(b);
+			}
+		}
+		return order;
+	}
+	private BasicBlock originalNext(BasicBlock block) {
+		int number = block.getNumber() + 1;
+		return number < blocks.size() ? blocks.get(number) : null;
+	}
+
+
+	////////////////////////////////////////////////////////////////////
+	// emitting
+
+	// the new instruction sequence, as buffer indices; new instructions are
+	// added at the end of the buffer.
+	private List<Integer> emit(List<BasicBlock> order) {
+		nextLabel = firstFreeLabelNumber();
+		long[] labels = new long[blocks.size()];
+		int[] newLabels = new int[blocks.size()];
+		for(BasicBlock block: blocks) {
+			labels[block.getNumber()] = code.opcode(block.first()) == Label ? code.rawOperand(block.first()) : -1;
+			newLabels[block.getNumber()] = -1;
+		}
+
+		List<Integer> sequence = new ArrayList<Integer>(graph.getDataDirectives());
+		List<int[]> blockSequences = new ArrayList<int[]>();
+		for(int position = 0; position < order.size(); position++) {
+			BasicBlock block = order.get(position);
+			BasicBlock next = position + 1 < order.size() ? order.get(position + 1) : null;
+			List<Integer> instructions = new ArrayList<Integer>();
+			for(int i = 0; i < block.size(); i++) {
+				instructions.add(block.instruction(i));
+			}
+			fixEnd(block, next, instructions, labels, newLabels);
+			int[] array = new int[instructions.size()];
+			for(int i = 0; i < array.length; i++) {
+				array[i] = instructions.get(i);
+			}
+			blockSequences.add(array);
+		}
+		for(int position = 0; position < order.size(); position++) {
+			int newLabel = newLabels[order.get(position).getNumber()];
+			if(newLabel >= 0) {
+				sequence.add(newLabel);
+			}
+			for(int index: blockSequences.get(position)) {
+				sequence.add(index);
+			}
+		}
+		return sequence;
+	}
+	private void fixEnd(BasicBlock block, BasicBlock next, List<Integer> instructions, long[] labels, int[] newLabels) {
+		int lastIndex = block.last();
+		ASMOpcode last = code.opcode(lastIndex);
+		BasicBlock fallThrough = ControlFlowGraph.fallsThrough(last) ? originalNext(block) : null;
+
+		if(last == Jump) {
+			if(graph.labelledBlock(code.rawOperand(lastIndex)) == next) {
+				instructions.remove(instructions.size() - 1);
+			}
+			return;
+		}
+		if(fallThrough == null || fallThrough == next) {
+			return;
+		}
+		if(ControlFlowGraph.isBranch(last) && last.inverseJump() != null &&
+				graph.labelledBlock(code.rawOperand(lastIndex)) == next) {
+			int inverted = addInstruction(last.inverseJump(), label(fallThrough, labels, newLabels), code.comment(lastIndex));
+			instructions.set(instructions.size() - 1, inverted);
+			return;
+		}
+		instructions.add(addInstruction(Jump, label(fallThrough, labels, newLabels), ""));
+	}
+	// the rawOperand() of block's label, giving it a new one if need be.
+	private long label(BasicBlock block, long[] labels, int[] newLabels) {
+		if(labels[block.getNumber()] == -1) {
+			code.add(Label, LABEL_PREFIX + nextLabel++ + "-", "");
+			newLabels[block.getNumber()] = code.size() - 1;
+			labels[block.getNumber()] = code.rawOperand(code.size() - 1);
+		}
+		return labels[block.getNumber()];
+	}
+	private int addInstruction(ASMOpcode opcode, long rawOperand, String comment) {
+		code.addRaw(opcode, rawOperand, comment);
+		return code.size() - 1;
+	}
+	private int firstFreeLabelNumber() {
+		int result = 0;
+		for(int i = code.nextLive(0); i < code.size(); i = code.nextLive(i + 1)) {
+			if(code.opcode(i) == Label && code.stringOperand(i).startsWith(LABEL_PREFIX)) {
+				String number = code.stringOperand(i).substring(LABEL_PREFIX.length()).replace("-", "");
+				try {
+					result = Math.max(result, Integer.parseInt(number) + 1);
+				}
+				catch (NumberFormatException e) {
+					// not one of ours
+				}
+			}
+		}
+		return result;
+	}
+
+	private int countJumps() {
+		int count = 0;
+		for(BasicBlock block: blocks) {
+			if(code.opcode(block.last()) == Jump) {
+				count++;
+			}
+		}
+		return count;
+	}
+	private int countJumps(List<Integer> sequence) {
+		int count = 0;
+		for(int index: sequence) {
+			if(code.opcode(index) == Jump) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,365 @@
+package optimizer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import asmCodeGenerator.codeStorage.ASMOpcode;
+import asmCodeGenerator.codeStorage.InstructionBuffer;
+import asmCodeGenerator.runtime.PrintFormatter;
+import static asmCodeGenerator.codeStorage.ASMOpcode.*;
+
+// Folds constants through the accumulator stack within each basic block.
+// An abstract stack records, for each value pushed in the block, whether it
+// is a known constant and which push produced it.  An operation whose
+// operands are all known constants from removable pushes has the pushes
+// killed and becomes a push of its result; a conditional jump on a known
+// constant becomes a Jump or disappears.  The results are those of the
+// emulator: 32-bit wrapping integers, IEEE doubles, booleans as 0 and 1, and
+// truncating ConvertI.  Operations the emulator would halt on (integer
+// division by zero, a floating operand to an integer operation, etc.) or
+// whose result it does not define are left alone, as are floating operands
+// and results that a PushF cannot hold exactly.
+//
+// A Duplicate of a known constant becomes a push of it.  An Exchange of two
+// known constants pushed just before it swaps their pushes; otherwise its
+// operands stay on the stack but can no longer be removed.  Instructions
+// whose stack effect is not modeled (Printf, Call, PStack, ...) forget the
+// whole stack.
+public class ConstantFolder {
+	private static final int NOT_REMOVABLE = -1;
+
+	private int operationsFolded = 0;
+	private int branchesResolved = 0;
+
+	private InstructionBuffer code;
+	private List<Value> stack;
+	private boolean changed;
+
+	// an abstract stack element.
+	private static class Value {
+		final boolean known;
+		final boolean floating;
+		final long bits;				// an int value, or the bits of a double
+		int producer;					// index of the push that made it, or NOT_REMOVABLE
+
+		Value(boolean known, boolean floating, long bits, int producer) {
+			this.known = known;
+			this.floating = floating;
+			this.bits = bits;
+			this.producer = producer;
+		}
+		static Value unknown() {
+			return new Value(false, false, 0, NOT_REMOVABLE);
+		}
+		static Value ofInt(int value, int producer) {
+			return new Value(true, false, value, producer);
+		}
+		static Value ofFloat(double value, int producer) {
+			return new Value(true, true, Double.doubleToRawLongBits(value), producer);
+		}
+		boolean isRemovableInt() {
+			return known && !floating && producer != NOT_REMOVABLE;
+		}
+		boolean isRemovableFloat() {
+			return known && floating && producer != NOT_REMOVABLE;
+		}
+		int intValue() {
+			return (int)bits;
+		}
+		double floatValue() {
+			return Double.longBitsToDouble(bits);
+		}
+	}
+
+	public int getOperationsFolded() {
+		return operationsFolded;
+	}
+	public int getBranchesResolved() {
+		return branchesResolved;
+	}
+
+	// returns true if anything changed.
+	public boolean fold(InstructionBuffer code) {
+		this.code = code;
+		this.changed = false;
+		for(BasicBlock block: ControlFlowGraph.build(code).getBlocks()) {
+			stack = new ArrayList<Value>();
+			for(int i = 0; i < block.size(); i++) {
+				if(!code.isKilled(block.instruction(i))) {
+					interpret(block.instruction(i));
+				}
+			}
+		}
+		return changed;
+	}
+
+
+	////////////////////////////////////////////////////////////////////
+	// one instruction
+
+	private void interpret(int index) {
+		ASMOpcode opcode = code.opcode(index);
+		switch(opcode) {
+		case PushI:		push(Value.ofInt(code.intOperand(index), index));			break;
+		case PushF:		pushFloat(index);											break;
+		case Duplicate:	duplicate(index);											break;
+		case Exchange:	exchange(index);											break;
+		case Pop:		popValue(index);											break;
+
+		case Negate: case BNegate: case BTNegate: case ConvertI:
+						foldUnaryInteger(index, opcode);							break;
+		case FNegate: case ConvertF:
+						foldUnaryFloating(index, opcode);							break;
+
+		case Add: case Subtract: case Multiply: case Divide: case Remainder:
+		case And: case Or: case Nand: case Nor: case Xor: case BEqual:
+		case BTAnd: case BTOr: case BTNand: case BTNor: case BTXor: case BTEqual:
+						foldBinaryInteger(index, opcode);							break;
+		case FAdd: case FSubtract: case FMultiply: case FDivide:
+						foldBinaryFloating(index, opcode);							break;
+
+		case JumpFalse: case JumpTrue: case JumpPos: case JumpNeg:
+		case JumpFPos: case JumpFNeg: case JumpFZero:
+						resolveBranch(index, opcode);								break;
+
+		case PushD: case PushPC: case Memtop:
+						push(Value.unknown());										break;
+		case LoadC: case LoadI: case LoadF:
+						pop(); push(Value.unknown());								break;
+		case StoreC: case StoreI: case StoreF:
+						pop(); pop();												break;
+		case Label: case Jump: case Halt: case Nop:
+																					break;
+		default:		stack.clear();												break;
+		}
+	}
+
+	// a PushF operand is written as text with six significant digits, so an
+	// operand that text does not hold exactly is not known: folding with the
+	// full double would compute with a value the program never sees.
+	private void pushFloat(int index) {
+		double value = code.floatOperand(index);
+		push(isEmittedExactly(value) ? Value.ofFloat(value, index) : Value.unknown());
+	}
+	private void duplicate(int index) {
+		Value top = pop();
+		push(top);
+		if(!top.known) {
+			push(Value.unknown());
+			return;
+		}
+		replaceWithPush(index, top.floating, top.bits);
+		push(new Value(true, top.floating, top.bits, index));
+	}
+	private void exchange(int index) {
+		Value top = pop();
+		Value second = pop();
+		if(top.known && second.known && top.producer != NOT_REMOVABLE && second.producer != NOT_REMOVABLE &&
+				top.producer == previousCode(index) && second.producer == previousCode(top.producer)) {
+			replaceWithPush(second.producer, top.floating, top.bits);
+			replaceWithPush(top.producer, second.floating, second.bits);
+			code.kill(index);
+			push(new Value(true, top.floating, top.bits, second.producer));
+			push(new Value(true, second.floating, second.bits, top.producer));
+			operationsFolded++;
+			changed = true;
+			return;
+		}
+		top.producer = NOT_REMOVABLE;
+		second.producer = NOT_REMOVABLE;
+		push(top);
+		push(second);
+	}
+	private void popValue(int index) {
+		Value top = pop();
+		if(top.known && top.producer != NOT_REMOVABLE) {
+			code.kill(top.producer);
+			code.kill(index);
+			operationsFolded++;
+			changed = true;
+		}
+	}
+
+	private void foldUnaryInteger(int index, ASMOpcode opcode) {
+		Value a = pop();
+		if(opcode == ConvertI) {
+			if(a.isRemovableFloat() && convertsToInt(a.floatValue())) {
+				replaceOperation(index, a, null, Value.ofInt((int)a.floatValue(), index));
+				return;
+			}
+		}
+		else if(a.isRemovableInt()) {
+			replaceOperation(index, a, null, Value.ofInt(unaryInteger(opcode, a.intValue()), index));
+			return;
+		}
+		push(Value.unknown());
+	}
+	private void foldUnaryFloating(int index, ASMOpcode opcode) {
+		Value a = pop();
+		if(opcode == ConvertF && a.isRemovableInt() && isEmittedExactly((double)a.intValue())) {
+			replaceOperation(index, a, null, Value.ofFloat((double)a.intValue(), index));
+			return;
+		}
+		if(opcode == FNegate && a.isRemovableFloat() && isEmittedExactly(-a.floatValue())) {
+			replaceOperation(index, a, null, Value.ofFloat(-a.floatValue(), index));
+			return;
+		}
+		push(Value.unknown());
+	}
+	private void foldBinaryInteger(int index, ASMOpcode opcode) {
+		Value b = pop();
+		Value a = pop();
+		if(a.isRemovableInt() && b.isRemovableInt() && isDefined(opcode, a.intValue(), b.intValue())) {
+			replaceOperation(index, a, b, Value.ofInt(binaryInteger(opcode, a.intValue(), b.intValue()), index));
+			return;
+		}
+		push(Value.unknown());
+	}
+	private void foldBinaryFloating(int index, ASMOpcode opcode) {
+		Value b = pop();
+		Value a = pop();
+		if(a.isRemovableFloat() && b.isRemovableFloat() && !(opcode == FDivide && b.floatValue() == 0.0)) {
+			double result = binaryFloating(opcode, a.floatValue(), b.floatValue());
+			if(isEmittedExactly(result)) {
+				replaceOperation(index, a, b, Value.ofFloat(result, index));
+				return;
+			}
+		}
+		push(Value.unknown());
+	}
+	private void resolveBranch(int index, ASMOpcode opcode) {
+		Value a = pop();
+		boolean isFloatingJump = (opcode == JumpFPos || opcode == JumpFNeg || opcode == JumpFZero);
+		if(!(isFloatingJump ? a.isRemovableFloat() : a.isRemovableInt())) {
+			return;
+		}
+		code.kill(a.producer);
+		if(isTaken(opcode, a)) {
+			code.replaceRaw(index, Jump, code.rawOperand(index), code.comment(index));
+		}
+		else {
+			code.kill(index);
+		}
+		branchesResolved++;
+		changed = true;
+	}
+
+	// kills the pushes of the operands and makes the operation push result.
+	private void replaceOperation(int index, Value a, Value b, Value result) {
+		code.kill(a.producer);
+		if(b != null) {
+			code.kill(b.producer);
+		}
+		replaceWithPush(index, result.floating, result.bits);
+		push(result);
+		operationsFolded++;
+		changed = true;
+	}
+	// likewise, only a result that text reads back as exactly is folded.
+	private static boolean isEmittedExactly(double value) {
+		return !Double.isNaN(value) && !Double.isInfinite(value) &&
+				Double.doubleToLongBits(PrintFormatter.asEmitted(value)) == Double.doubleToLongBits(value);
+	}
+	private void replaceWithPush(int index, boolean floating, long bits) {
+		if(floating) {
+			code.replace(index, PushF, Double.longBitsToDouble(bits), code.comment(index));
+		}
+		else {
+			code.replace(index, PushI, (int)bits, code.comment(index));
+		}
+	}
+
+
+	////////////////////////////////////////////////////////////////////
+	// the emulator's arithmetic
+
+	private static int unaryInteger(ASMOpcode opcode, int a) {
+		switch(opcode) {
+		case Negate:	return -a;
+		case BNegate:	return a == 0 ? 1 : 0;
+		case BTNegate:	return ~a;
+		default:
+			throw new IllegalArgumentException("not a unary integer operation: " + opcode);
+		}
+	}
+	private static boolean isDefined(ASMOpcode opcode, int a, int b) {
+		if(opcode == Divide || opcode == Remainder) {
+			return b != 0 && !(a == Integer.MIN_VALUE && b == -1);
+		}
+		return true;
+	}
+	private static int binaryInteger(ASMOpcode opcode, int a, int b) {
+		switch(opcode) {
+		case Add:		return a + b;
+		case Subtract:	return a - b;
+		case Multiply:	return a * b;
+		case Divide:	return a / b;
+		case Remainder:	return a % b;
+		case And:		return (a != 0 && b != 0) ? 1 : 0;
+		case Or:		return (a != 0 || b != 0) ? 1 : 0;
+		case Nand:		return (a != 0 && b != 0) ? 0 : 1;
+		case Nor:		return (a != 0 || b != 0) ? 0 : 1;
+		case Xor:		return ((a != 0) != (b != 0)) ? 1 : 0;
+		case BEqual:	return ((a != 0) == (b != 0)) ? 1 : 0;
+		case BTAnd:		return a & b;
+		case BTOr:		return a | b;
+		case BTNand:	return ~(a & b);
+		case BTNor:		return ~(a | b);
+		case BTXor:		return a ^ b;
+		case BTEqual:	return ~(a ^ b);
+		default:
+			throw new IllegalArgumentException("not a binary integer operation: " + opcode);
+		}
+	}
+	private static double binaryFloating(ASMOpcode opcode, double a, double b) {
+		switch(opcode) {
+		case FAdd:		return a + b;
+		case FSubtract:	return a - b;
+		case FMultiply:	return a * b;
+		case FDivide:	return a / b;
+		default:
+			throw new IllegalArgumentException("not a binary floating operation: " + opcode);
+		}
+	}
+	// ConvertI is defined only for values that truncate into int range.
+	private static boolean convertsToInt(double value) {
+		return value > -2147483649.0 && value < 2147483648.0;
+	}
+	private static boolean isTaken(ASMOpcode opcode, Value a) {
+		switch(opcode) {
+		case JumpFalse:	return a.intValue() == 0;
+		case JumpTrue:	return a.intValue() != 0;
+		case JumpPos:	return a.intValue() > 0;
+		case JumpNeg:	return a.intValue() < 0;
+		case JumpFPos:	return a.floatValue() > 0.0;
+		case JumpFNeg:	return a.floatValue() < 0.0;
+		case JumpFZero:	return a.floatValue() == 0.0;
+		default:
+			throw new IllegalArgumentException("not a conditional jump: " + opcode);
+		}
+	}
+
+
+	////////////////////////////////////////////////////////////////////
+	// the abstract stack
+
+	private void push(Value value) {
+		stack.add(value);
+	}
+	// values from before the block are unknown.
+	private Value pop() {
+		if(stack.isEmpty()) {
+			return Value.unknown();
+		}
+		return stack.remove(stack.size() - 1);
+	}
+	// the live code instruction before index, skipping data directives, or -1.
+	private int previousCode(int index) {
+		for(int i = index - 1; i >= 0; i--) {
+			if(!code.isKilled(i) && !code.opcode(i).isDataDirective()) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,200 @@
+package optimizer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import asmCodeGenerator.codeStorage.ASMOpcode;
+import asmCodeGenerator.codeStorage.InstructionBuffer;
+import static asmCodeGenerator.codeStorage.ASMOpcode.*;
+
+// The basic blocks of the live code in an InstructionBuffer.  A block starts
+// at each Label, and ends after each jump, Return, PopPC, JumpV and Halt.
+// Call and CallV fall through, so they do not end blocks; a Call's block also
+// has the called block as a successor.  PushPC ends its block too, since
+// control may come back to the instruction after it.
+//
+// Data directives are not code: they are kept aside as the data section.
+//
+// Control can also reach a block from an address on the stack (through
+// Return, PopPC, JumpV or CallV), so the roots of the graph are the first
+// block, blocks whose label is used as data (by PushD or DataD), and blocks
+// following a PushPC.
+public class ControlFlowGraph {
+	private InstructionBuffer code;
+	private List<BasicBlock> blocks = new ArrayList<BasicBlock>();
+	private List<Integer> dataDirectives = new ArrayList<Integer>();
+	private Map<Long, BasicBlock> labelledBlocks = new HashMap<Long, BasicBlock>();
+	private List<BasicBlock> roots = new ArrayList<BasicBlock>();
+
+	public static ControlFlowGraph build(InstructionBuffer code) {
+		return new ControlFlowGraph(code);
+	}
+	private ControlFlowGraph(InstructionBuffer code) {
+		this.code = code;
+		makeBlocks();
+		connectBlocks();
+		findRoots();
+	}
+
+	public InstructionBuffer getCode() {
+		return code;
+	}
+	public List<BasicBlock> getBlocks() {
+		return Collections.unmodifiableList(blocks);
+	}
+	// buffer indices of the data directives, in order.
+	public List<Integer> getDataDirectives() {
+		return Collections.unmodifiableList(dataDirectives);
+	}
+	public List<BasicBlock> getRoots() {
+		return Collections.unmodifiableList(roots);
+	}
+	// the block labelled with the label whose rawOperand() is label, or null.
+	public BasicBlock labelledBlock(long label) {
+		return labelledBlocks.get(label);
+	}
+
+
+	////////////////////////////////////////////////////////////////////
+	// blocks
+
+	private void makeBlocks() {
+		List<Integer> current = new ArrayList<Integer>();
+		for(int i = code.nextLive(0); i < code.size(); i = code.nextLive(i + 1)) {
+			ASMOpcode opcode = code.opcode(i);
+			if(opcode.isDataDirective()) {
+				dataDirectives.add(i);
+				continue;
+			}
+			if(opcode == Label) {
+				endBlock(current);
+			}
+			current.add(i);
+			if(endsBlock(opcode)) {
+				endBlock(current);
+			}
+		}
+		endBlock(current);
+	}
+	static boolean endsBlock(ASMOpcode opcode) {
+		return isBranch(opcode) || opcode == Jump || opcode == JumpV ||
+				opcode == Return || opcode == PopPC || opcode == Halt || opcode == PushPC;
+	}
+	// a jump that may fall through.
+	static boolean isBranch(ASMOpcode opcode) {
+		return opcode.isJump() && opcode != Jump && opcode != JumpV && opcode != Call && opcode != CallV;
+	}
+	private void endBlock(List<Integer> current) {
+		if(current.isEmpty()) {
+			return;
+		}
+		int[] instructions = new int[current.size()];
+		for(int i = 0; i < instructions.length; i++) {
+			instructions[i] = current.get(i);
+		}
+		BasicBlock block = new BasicBlock(blocks.size(), instructions);
+		blocks.add(block);
+		if(code.opcode(block.first()) == Label) {
+			labelledBlocks.put(code.rawOperand(block.first()), block);
+		}
+		current.clear();
+	}
+
+
+	////////////////////////////////////////////////////////////////////
+	// edges and roots
+
+	private void connectBlocks() {
+		for(BasicBlock block: blocks) {
+			for(int i = 0; i < block.size(); i++) {
+				int index = block.instruction(i);
+				if(code.opcode(index) == Call) {
+					addEdge(block, labelledBlock(code.rawOperand(index)));
+				}
+			}
+			ASMOpcode last = code.opcode(block.last());
+			if(last == Jump || isBranch(last)) {
+				addEdge(block, labelledBlock(code.rawOperand(block.last())));
+			}
+			if(fallsThrough(last)) {
+				addEdge(block, nextBlock(block));
+			}
+		}
+	}
+	// true if the only way from from to to is a Call.
+	public boolean isCallEdge(BasicBlock from, BasicBlock to) {
+		ASMOpcode last = code.opcode(from.last());
+		if((last == Jump || isBranch(last)) && labelledBlock(code.rawOperand(from.last())) == to) {
+			return false;
+		}
+		if(fallsThrough(last) && nextBlock(from) == to) {
+			return false;
+		}
+		return from.getSuccessors().contains(to);
+	}
+	static boolean fallsThrough(ASMOpcode opcode) {
+		return !(opcode == Jump || opcode == JumpV || opcode == Return || opcode == PopPC || opcode == Halt);
+	}
+	private BasicBlock nextBlock(BasicBlock block) {
+		int number = block.getNumber() + 1;
+		return number < blocks.size() ? blocks.get(number) : null;
+	}
+	private void addEdge(BasicBlock from, BasicBlock to) {
+		if(to != null) {
+			from.addSuccessor(to);
+		}
+	}
+
+	private void findRoots() {
+		if(blocks.isEmpty()) {
+			return;
+		}
+		addRoot(blocks.get(0));
+		for(int i = code.nextLive(0); i < code.size(); i = code.nextLive(i + 1)) {
+			ASMOpcode opcode = code.opcode(i);
+			if(opcode == PushD || opcode == DataD) {
+				addRoot(labelledBlock(code.rawOperand(i)));
+			}
+		}
+		for(BasicBlock block: blocks) {
+			if(code.opcode(block.last()) == PushPC) {
+				addRoot(nextBlock(block));
+			}
+		}
+	}
+	private void addRoot(BasicBlock block) {
+		if(block != null && !roots.contains(block)) {
+			roots.add(block);
+		}
+	}
+
+	// the blocks that control can reach from the roots, as a mark per block number.
+	public boolean[] reachable() {
+		boolean[] reached = new boolean[blocks.size()];
+		List<BasicBlock> worklist = new ArrayList<BasicBlock>(roots);
+		for(BasicBlock root: roots) {
+			reached[root.getNumber()] = true;
+		}
+		while(!worklist.isEmpty()) {
+			BasicBlock block = worklist.remove(worklist.size() - 1);
+			for(BasicBlock successor: block.getSuccessors()) {
+				if(!reached[successor.getNumber()]) {
+					reached[successor.getNumber()] = true;
+					worklist.add(successor);
+				}
+			}
+		}
+		return reached;
+	}
+
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		for(BasicBlock block: blocks) {
+			result.append(block.toString(code));
+		}
+		return result.toString();
+	}
+}
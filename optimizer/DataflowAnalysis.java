@@ -0,0 +1,152 @@
+package optimizer;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+
+// A dataflow problem over the blocks of a ControlFlowGraph whose values are
+// bit vectors, solved by iterating to a fixed point with a worklist.
+//
+// A forward problem computes the value on entry to each block by meeting the
+// values on exit from its predecessors, and the value on exit by applying the
+// block's transfer function; a backward problem does the same from
+// successors to predecessors.  Where control enters (forward) or leaves
+// (backward) the graph at a block, boundary() supplies the value flowing
+// across that edge.
+//
+// Subclasses choose the direction and meet and give the boundary and transfer
+// functions; solve() then fills in the value before and after every block.
+public abstract class DataflowAnalysis {
+	public enum Direction { FORWARD, BACKWARD }
+	public enum Meet { UNION, INTERSECTION }
+
+	private final Direction direction;
+	private final Meet meet;
+	private final int width;
+	private BitSet[] before;
+	private BitSet[] after;
+
+	// width is the number of bits that may be set; it is the top of an
+	// INTERSECTION lattice.
+	protected DataflowAnalysis(Direction direction, Meet meet, int width) {
+		this.direction = direction;
+		this.meet = meet;
+		this.width = width;
+	}
+
+	// the value crossing the edge of the graph into (forward) or out of
+	// (backward) block, or null if control does not cross it there.
+	protected abstract BitSet boundary(BasicBlock block);
+
+	// the value on the far side of block (after it for a forward problem,
+	// before it for a backward one), given the value on the near side.  The
+	// given value must not be modified.
+	protected abstract BitSet transfer(BasicBlock block, BitSet value);
+
+	// false for edges the transfer functions account for themselves, such as
+	// the edge from a Call to its subroutine.
+	protected boolean followsEdge(BasicBlock from, BasicBlock to) {
+		return true;
+	}
+
+
+	////////////////////////////////////////////////////////////////////
+	// solving
+
+	public void solve(ControlFlowGraph graph) {
+		List<BasicBlock> blocks = graph.getBlocks();
+		before = new BitSet[blocks.size()];
+		after = new BitSet[blocks.size()];
+		for(int i = 0; i < blocks.size(); i++) {
+			before[i] = top();
+			after[i] = top();
+		}
+
+		Deque<BasicBlock> worklist = new ArrayDeque<BasicBlock>();
+		boolean[] onWorklist = new boolean[blocks.size()];
+		for(int i = 0; i < blocks.size(); i++) {
+			BasicBlock block = blocks.get(direction == Direction.FORWARD ? i : blocks.size() - 1 - i);
+			worklist.add(block);
+			onWorklist[block.getNumber()] = true;
+		}
+
+		while(!worklist.isEmpty()) {
+			BasicBlock block = worklist.removeFirst();
+			onWorklist[block.getNumber()] = false;
+
+			BitSet near = meetOfNeighbours(block);
+			BitSet far = transfer(block, near);
+			nearSide()[block.getNumber()] = near;
+			if(far.equals(farSide()[block.getNumber()])) {
+				continue;
+			}
+			farSide()[block.getNumber()] = far;
+			for(BasicBlock dependent: dependents(block)) {
+				if(!onWorklist[dependent.getNumber()]) {
+					onWorklist[dependent.getNumber()] = true;
+					worklist.addLast(dependent);
+				}
+			}
+		}
+	}
+	private BitSet meetOfNeighbours(BasicBlock block) {
+		BitSet result = null;
+		BitSet edge = boundary(block);
+		if(edge != null) {
+			result = (BitSet)edge.clone();
+		}
+		for(BasicBlock neighbour: neighbours(block)) {
+			BasicBlock from = direction == Direction.FORWARD ? neighbour : block;
+			BasicBlock to = direction == Direction.FORWARD ? block : neighbour;
+			if(!followsEdge(from, to)) {
+				continue;
+			}
+			BitSet value = farSide()[neighbour.getNumber()];
+			if(result == null) {
+				result = (BitSet)value.clone();
+			}
+			else if(meet == Meet.UNION) {
+				result.or(value);
+			}
+			else {
+				result.and(value);
+			}
+		}
+		return result == null ? top() : result;
+	}
+	// the identity of the meet.
+	private BitSet top() {
+		BitSet result = new BitSet(width);
+		if(meet == Meet.INTERSECTION) {
+			result.set(0, width);
+		}
+		return result;
+	}
+
+	// blocks whose values flow into block's near side.
+	private List<BasicBlock> neighbours(BasicBlock block) {
+		return direction == Direction.FORWARD ? block.getPredecessors() : block.getSuccessors();
+	}
+	// blocks whose near side depends on block's far side.
+	private List<BasicBlock> dependents(BasicBlock block) {
+		return direction == Direction.FORWARD ? block.getSuccessors() : block.getPredecessors();
+	}
+	private BitSet[] nearSide() {
+		return direction == Direction.FORWARD ? before : after;
+	}
+	private BitSet[] farSide() {
+		return direction == Direction.FORWARD ? after : before;
+	}
+
+
+	////////////////////////////////////////////////////////////////////
+	// results, which must not be modified.
+
+	public BitSet before(BasicBlock block) {
+		return before[block.getNumber()];
+	}
+	public BitSet after(BasicBlock block) {
+		return after[block.getNumber()];
+	}
+}
@@ -0,0 +1,61 @@
+package optimizer;
+
+import java.util.BitSet;
+
+import asmCodeGenerator.codeStorage.InstructionBuffer;
+import static asmCodeGenerator.codeStorage.ASMOpcode.*;
+
+// Removes static stores whose bytes are dead (see MemorySlotLiveness): the
+// instructions computing the address are killed and the store becomes a Pop
+// of the stored value.  A store whose address is computed by instructions
+// that do anything else (a Duplicate or Exchange, for instance) is kept.
+public class DeadStoreEliminator {
+	private int storesRemoved = 0;
+
+	public int getStoresRemoved() {
+		return storesRemoved;
+	}
+
+	// returns true if anything was removed.
+	public boolean eliminate(InstructionBuffer code) {
+		ControlFlowGraph graph = ControlFlowGraph.build(code);
+		StaticMemoryAccesses accesses = StaticMemoryAccesses.analyze(graph);
+		if(accesses.getStoredBytes().isEmpty()) {
+			return false;
+		}
+		MemorySlotLiveness liveness = new MemorySlotLiveness(graph, accesses);
+		liveness.solve(graph);
+
+		boolean changed = false;
+		for(BasicBlock block: graph.getBlocks()) {
+			BitSet live = (BitSet)liveness.after(block).clone();
+			for(int i = block.size() - 1; i >= 0; i--) {
+				int index = block.instruction(i);
+				if(code.isKilled(index)) {
+					continue;
+				}
+				StaticMemoryAccesses.Access access = accesses.access(index);
+				if(isDeadStore(access, live)) {
+					removeStore(code, index, access);
+					changed = true;
+				}
+				liveness.update(live, index);
+			}
+		}
+		return changed;
+	}
+	private boolean isDeadStore(StaticMemoryAccesses.Access access, BitSet live) {
+		if(access == null || !access.isStore() || access.getAddressProducers() == null) {
+			return false;
+		}
+		int next = live.nextSetBit(access.getAddress());
+		return next < 0 || next >= access.end();
+	}
+	private void removeStore(InstructionBuffer code, int index, StaticMemoryAccesses.Access access) {
+		for(int producer: access.getAddressProducers()) {
+			code.kill(producer);
+		}
+		code.replace(index, Pop);
+		storesRemoved++;
+	}
+}
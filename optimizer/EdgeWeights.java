@@ -0,0 +1,8 @@
+package optimizer;
+
+// How often control is expected to go along each edge of a ControlFlowGraph,
+// for BlockLayout.  Only the order of the weights matters; they may be
+// static estimates or counts from a profile.
+public interface EdgeWeights {
+	long weight(ControlFlowGraph graph, BasicBlock from, BasicBlock to);
+}
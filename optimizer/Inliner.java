@@ -0,0 +1,352 @@
+package optimizer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import asmCodeGenerator.codeStorage.ASMOpcode;
+import asmCodeGenerator.codeStorage.InstructionBuffer;
+import static asmCodeGenerator.codeStorage.ASMOpcode.*;
+
+// Replaces Calls of small subroutines with copies of their bodies.  The
+// subroutines handled are those written the way the runtime's are, keeping
+// the return address in a word of data R:
+//
+//     Label L; PushD R; Exchange; StoreI; ...; PushD R; LoadI; Return
+//
+// with every Return in that form.  A copy drops the store to R, turns each
+// PushD R; LoadI; Return into a Jump to a new label just after the copy, and
+// renames the subroutine's labels so that every copy has its own.  As R is
+// then only needed by the original (which TreeShaker removes once nothing
+// calls it), no PushD or DataD other than the subroutine's own may name R.
+//
+// The body is the blocks control reaches from L without taking a Call.  It
+// is copied only if it holds no Call of L, no PushPC, PopPC or JumpV, and
+// no block whose label is used as data, and if its blocks fall through to
+// one another in the order they appear, starting with L's.
+//
+// Copies are limited by size: a body of more than MAX_BODY_SIZE
+// instructions is never copied, and the copies together may add no more
+// than GROWTH_PERCENT percent to the size of the code (or MAX_BODY_SIZE
+// instructions, if that is more).  Subroutines that call nothing are
+// inlined first, then smallest bodies first.  A copy may itself hold Calls,
+// which later rounds may inline in turn.
+public class Inliner {
+	private static final int MAX_BODY_SIZE = 64;
+	private static final int GROWTH_PERCENT = 25;
+	private static final String LABEL_PREFIX = "-inline-";
+
+	private int callsInlined = 0;
+	private int instructionsAdded = 0;
+
+	private InstructionBuffer code;
+	private ControlFlowGraph graph;
+	private int budget;
+	private int nextLabel;
+
+	public int getCallsInlined() {
+		return callsInlined;
+	}
+	// the net growth of the code, before the originals are removed.
+	public int getInstructionsAdded() {
+		return instructionsAdded;
+	}
+
+	// a subroutine that may be copied.
+	private static class Subroutine {
+		final List<BasicBlock> body;		// in order, L's block first
+		final int size;						// of a copy, less its labels
+		final boolean isLeaf;				// true if it holds no Call
+
+		Subroutine(List<BasicBlock> body, int size, boolean isLeaf) {
+			this.body = body;
+			this.size = size;
+			this.isLeaf = isLeaf;
+		}
+	}
+	private static class Site {
+		final int call;
+		final Subroutine subroutine;
+
+		Site(int call, Subroutine subroutine) {
+			this.call = call;
+			this.subroutine = subroutine;
+		}
+	}
+
+	// returns true if any Call was inlined.
+	public boolean inline(InstructionBuffer code) {
+		this.code = code;
+		this.budget = Math.max(MAX_BODY_SIZE, liveCodeSize() * GROWTH_PERCENT / 100);
+		this.nextLabel = firstFreeLabelNumber();
+
+		boolean changed = false;
+		while(inlineRound()) {
+			changed = true;
+		}
+		return changed;
+	}
+	private boolean inlineRound() {
+		graph = ControlFlowGraph.build(code);
+		List<Site> sites = findSites();
+		Collections.sort(sites, new Comparator<Site>() {
+			public int compare(Site a, Site b) {
+				return Integer.compare(a.subroutine.size, b.subroutine.size);
+			}
+		});
+
+		int oldSize = code.size();
+		Map<Integer, List<Integer>> copies = new HashMap<Integer, List<Integer>>();
+		for(Site site: sites) {
+			int growth = Math.max(1, site.subroutine.size - 1);
+			if(growth > budget) {
+				continue;
+			}
+			budget -= growth;
+			copies.put(site.call, copy(site.subroutine));
+			callsInlined++;
+			instructionsAdded += site.subroutine.size - 1;
+		}
+		if(copies.isEmpty()) {
+			return false;
+		}
+		splice(copies, oldSize);
+		return true;
+	}
+	private int liveCodeSize() {
+		int result = 0;
+		for(int i = code.nextLive(0); i < code.size(); i = code.nextLive(i + 1)) {
+			if(!code.opcode(i).isDataDirective()) {
+				result++;
+			}
+		}
+		return result;
+	}
+
+
+	////////////////////////////////////////////////////////////////////
+	// finding subroutines
+
+	// the Calls in reachable code of subroutines that may be copied.  If any
+	// of those subroutines call nothing, only their Calls are taken, so that
+	// callers are copied after their callees are inlined into them.
+	private List<Site> findSites() {
+		Map<Long, Subroutine> subroutines = new HashMap<Long, Subroutine>();
+		boolean[] reachable = graph.reachable();
+		List<Site> sites = new ArrayList<Site>();
+		List<Site> leafSites = new ArrayList<Site>();
+		for(BasicBlock block: graph.getBlocks()) {
+			if(!reachable[block.getNumber()]) {
+				continue;
+			}
+			for(int i = 0; i < block.size(); i++) {
+				int index = block.instruction(i);
+				if(code.opcode(index) != Call) {
+					continue;
+				}
+				long label = code.rawOperand(index);
+				if(!subroutines.containsKey(label)) {
+					subroutines.put(label, subroutine(label));
+				}
+				Subroutine subroutine = subroutines.get(label);
+				if(subroutine != null) {
+					sites.add(new Site(index, subroutine));
+					if(subroutine.isLeaf) {
+						leafSites.add(sites.get(sites.size() - 1));
+					}
+				}
+			}
+		}
+		return leafSites.isEmpty() ? sites : leafSites;
+	}
+	// the subroutine at label, or null if it may not be copied.
+	private Subroutine subroutine(long label) {
+		BasicBlock entry = graph.labelledBlock(label);
+		if(entry == null || entry.size() < 4 || !isReturnAddressStore(entry)) {
+			return null;
+		}
+		long returnAddress = code.rawOperand(entry.instruction(1));
+		List<BasicBlock> body = body(entry);
+		if(body.get(0) != entry) {
+			return null;
+		}
+
+		int size = 0;
+		int returns = 0;
+		boolean isLeaf = true;
+		for(int k = 0; k < body.size(); k++) {
+			BasicBlock block = body.get(k);
+			if(graph.getRoots().contains(block)) {
+				return null;
+			}
+			ASMOpcode last = code.opcode(block.last());
+			if(ControlFlowGraph.fallsThrough(last) && (k + 1 == body.size() || !followsDirectly(block, body.get(k + 1)))) {
+				return null;
+			}
+			if(last == Return) {
+				if(!isReturn(block, returnAddress)) {
+					return null;
+				}
+				returns++;
+			}
+			for(int i = 0; i < block.size(); i++) {
+				int index = block.instruction(i);
+				ASMOpcode opcode = code.opcode(index);
+				if(opcode == PushPC || opcode == PopPC || opcode == JumpV ||
+						(opcode == Call && code.rawOperand(index) == label)) {
+					return null;
+				}
+				if(opcode == Call || opcode == CallV) {
+					isLeaf = false;
+				}
+				if(opcode != Label) {
+					size++;
+				}
+			}
+		}
+		if(returns == 0 || namesOf(returnAddress) != 1 + returns) {
+			return null;
+		}
+		size -= 3 + 2 * returns;		// each Return's three become one Jump
+		return size <= MAX_BODY_SIZE ? new Subroutine(body, size, isLeaf) : null;
+	}
+	private boolean isReturnAddressStore(BasicBlock entry) {
+		return code.opcode(entry.instruction(1)) == PushD &&
+			   code.opcode(entry.instruction(2)) == Exchange &&
+			   code.opcode(entry.instruction(3)) == StoreI;
+	}
+	private boolean isReturn(BasicBlock block, long returnAddress) {
+		int size = block.size();
+		return size >= 3 &&
+			   code.opcode(block.instruction(size - 3)) == PushD &&
+			   code.rawOperand(block.instruction(size - 3)) == returnAddress &&
+			   code.opcode(block.instruction(size - 2)) == LoadI;
+	}
+	// the number of PushDs and DataDs naming label.
+	private int namesOf(long label) {
+		int result = 0;
+		for(int i = code.nextLive(0); i < code.size(); i = code.nextLive(i + 1)) {
+			if((code.opcode(i) == PushD || code.opcode(i) == DataD) && code.rawOperand(i) == label) {
+				result++;
+			}
+		}
+		return result;
+	}
+	// the blocks reachable from entry without taking a Call, in order.
+	private List<BasicBlock> body(BasicBlock entry) {
+		boolean[] inBody = new boolean[graph.getBlocks().size()];
+		List<BasicBlock> worklist = new ArrayList<BasicBlock>();
+		inBody[entry.getNumber()] = true;
+		worklist.add(entry);
+		while(!worklist.isEmpty()) {
+			BasicBlock block = worklist.remove(worklist.size() - 1);
+			for(BasicBlock successor: block.getSuccessors()) {
+				if(!inBody[successor.getNumber()] && !graph.isCallEdge(block, successor)) {
+					inBody[successor.getNumber()] = true;
+					worklist.add(successor);
+				}
+			}
+		}
+		List<BasicBlock> body = new ArrayList<BasicBlock>();
+		for(BasicBlock block: graph.getBlocks()) {
+			if(inBody[block.getNumber()]) {
+				body.add(block);
+			}
+		}
+		return body;
+	}
+	private static boolean followsDirectly(BasicBlock block, BasicBlock next) {
+		return next.getNumber() == block.getNumber() + 1;
+	}
+
+
+	////////////////////////////////////////////////////////////////////
+	// copying
+
+	// appends a copy of the subroutine to the buffer, and returns its
+	// indices there, ending with the label it returns to.
+	private List<Integer> copy(Subroutine subroutine) {
+		int number = nextLabel++;
+		Map<Long, Integer> labels = new HashMap<Long, Integer>();		// to the new Labels' indices
+		for(BasicBlock block: subroutine.body) {
+			if(code.opcode(block.first()) == Label) {
+				String name = code.stringOperand(block.first()).replaceFirst("^[-$]+", "");
+				labels.put(code.rawOperand(block.first()), newLabel(number, name));
+			}
+		}
+		int returnLabel = newLabel(number, "return");
+
+		List<Integer> result = new ArrayList<Integer>();
+		BasicBlock entry = subroutine.body.get(0);
+		for(BasicBlock block: subroutine.body) {
+			int end = code.opcode(block.last()) == Return ? block.size() - 3 : block.size();
+			for(int i = 0; i < end; i++) {
+				int index = block.instruction(i);
+				ASMOpcode opcode = code.opcode(index);
+				long operand = code.rawOperand(index);
+				if(opcode == Label) {
+					result.add(labels.get(operand));
+				}
+				else if(block == entry && i < 4) {
+					continue;				// the store of the return address
+				}
+				else if(opcode != Call && labels.containsKey(operand)) {
+					result.add(add(opcode, code.rawOperand(labels.get(operand)), code.comment(index)));
+				}
+				else {
+					result.add(add(opcode, operand, code.comment(index)));
+				}
+			}
+			if(end < block.size()) {
+				result.add(add(Jump, code.rawOperand(returnLabel), code.comment(block.last())));
+			}
+		}
+		result.add(returnLabel);
+		return result;
+	}
+	private int newLabel(int number, String name) {
+		code.add(Label, LABEL_PREFIX + number + "-" + name, "");
+		return code.size() - 1;
+	}
+	private int add(ASMOpcode opcode, long rawOperand, String comment) {
+		code.addRaw(opcode, rawOperand, comment);
+		return code.size() - 1;
+	}
+	// puts each copy where its Call was; the copies follow oldSize.
+	private void splice(Map<Integer, List<Integer>> copies, int oldSize) {
+		List<Integer> order = new ArrayList<Integer>();
+		for(int i = code.nextLive(0); i < oldSize; i = code.nextLive(i + 1)) {
+			List<Integer> copy = copies.get(i);
+			if(copy == null) {
+				order.add(i);
+			}
+			else {
+				order.addAll(copy);
+			}
+		}
+		int[] result = new int[order.size()];
+		for(int i = 0; i < result.length; i++) {
+			result[i] = order.get(i);
+		}
+		code.rearrange(result);
+	}
+	private int firstFreeLabelNumber() {
+		int result = 0;
+		for(int i = code.nextLive(0); i < code.size(); i = code.nextLive(i + 1)) {
+			if(code.opcode(i) == Label && code.stringOperand(i).startsWith(LABEL_PREFIX)) {
+				String rest = code.stringOperand(i).substring(LABEL_PREFIX.length());
+				int end = rest.indexOf('-');
+				try {
+					result = Math.max(result, Integer.parseInt(end < 0 ? rest : rest.substring(0, end)) + 1);
+				}
+				catch (NumberFormatException e) {
+					// not one of ours
+				}
+			}
+		}
+		return result;
+	}
+}
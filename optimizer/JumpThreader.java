@@ -0,0 +1,175 @@
+package optimizer;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import asmCodeGenerator.codeStorage.ASMOpcode;
+import asmCodeGenerator.codeStorage.InstructionBuffer;
+import static asmCodeGenerator.codeStorage.ASMOpcode.*;
+
+// Simplifies the jumps of the jumping code for conditions:
+//   - a jump to a label whose code starts with "Jump M" is retargeted to M;
+//   - a jump to a label that follows it directly is removed (a conditional
+//     one becomes a Pop of its operand);
+//   - "JumpFalse L; Jump M; Label L" becomes "JumpTrue M; Label L", and
+//     likewise for the other pairs given by ASMOpcode.inverseJump();
+//   - labels that nothing refers to any more are removed.
+// Data directives between instructions are skipped over, as they are not code.
+public class JumpThreader {
+	private int jumpsRetargeted = 0;
+	private int jumpsRemoved = 0;
+	private int jumpsInverted = 0;
+	private int labelsRemoved = 0;
+
+	private InstructionBuffer code;
+	private LabelReferences references;
+	private Map<Long, Integer> labelIndices;
+
+	public int getJumpsRetargeted() {
+		return jumpsRetargeted;
+	}
+	public int getJumpsRemoved() {
+		return jumpsRemoved;
+	}
+	public int getJumpsInverted() {
+		return jumpsInverted;
+	}
+	public int getLabelsRemoved() {
+		return labelsRemoved;
+	}
+
+	// returns true if anything changed.
+	public boolean thread(InstructionBuffer code) {
+		this.code = code;
+		this.references = new LabelReferences(code);
+		boolean changed = false;
+		while(threadOnce()) {
+			changed = true;
+		}
+		return changed;
+	}
+	private boolean threadOnce() {
+		findLabels();
+		boolean changed = false;
+		for(int i = nextCode(-1); i < code.size(); i = nextCode(i)) {
+			ASMOpcode opcode = code.opcode(i);
+			if(opcode == Jump || ControlFlowGraph.isBranch(opcode)) {
+				changed |= retarget(i) || removeIfToNextLabel(i) || invertOverJump(i);
+			}
+		}
+		changed |= removeUnreferencedLabels();
+		return changed;
+	}
+	private void findLabels() {
+		labelIndices = new HashMap<Long, Integer>();
+		for(int i = code.nextLive(0); i < code.size(); i = code.nextLive(i + 1)) {
+			if(code.opcode(i) == Label) {
+				labelIndices.put(code.rawOperand(i), i);
+			}
+		}
+	}
+
+
+	////////////////////////////////////////////////////////////////////
+	// the three rewrites of a jump at index
+
+	private boolean retarget(int index) {
+		long target = code.rawOperand(index);
+		long finalTarget = target;
+		Set<Long> seen = new HashSet<Long>();
+		while(seen.add(finalTarget)) {
+			int destination = firstInstructionAt(finalTarget);
+			if(destination == code.size() || code.opcode(destination) != Jump) {
+				break;
+			}
+			finalTarget = code.rawOperand(destination);
+		}
+		if(finalTarget == target || !labelIndices.containsKey(finalTarget)) {
+			return false;
+		}
+		setJump(index, code.opcode(index), finalTarget);
+		jumpsRetargeted++;
+		return true;
+	}
+	private boolean removeIfToNextLabel(int index) {
+		if(!labelFollows(index, code.rawOperand(index))) {
+			return false;
+		}
+		references.remove(code, index);
+		if(code.opcode(index) == Jump) {
+			code.kill(index);
+		}
+		else {
+			code.replace(index, Pop);
+		}
+		jumpsRemoved++;
+		return true;
+	}
+	private boolean invertOverJump(int index) {
+		ASMOpcode inverse = code.opcode(index).inverseJump();
+		int next = nextCode(index);
+		if(inverse == null || next == code.size() || code.opcode(next) != Jump ||
+				!labelFollows(next, code.rawOperand(index))) {
+			return false;
+		}
+		long jumpTarget = code.rawOperand(next);
+		references.remove(code, next);
+		code.kill(next);
+		setJump(index, inverse, jumpTarget);
+		jumpsInverted++;
+		return true;
+	}
+	private void setJump(int index, ASMOpcode opcode, long target) {
+		references.remove(code, index);
+		code.replaceRaw(index, opcode, target, code.comment(index));
+		references.add(code, index);
+	}
+
+	private boolean removeUnreferencedLabels() {
+		boolean changed = false;
+		for(int index: labelIndices.values()) {
+			if(!code.isKilled(index) && !references.isReferenced(code.rawOperand(index))) {
+				code.kill(index);
+				labelsRemoved++;
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+
+	////////////////////////////////////////////////////////////////////
+	// walking the code
+
+	// the next live instruction after index that is not a data directive, or code.size().
+	private int nextCode(int index) {
+		int next = code.nextLive(index + 1);
+		while(next < code.size() && code.opcode(next).isDataDirective()) {
+			next = code.nextLive(next + 1);
+		}
+		return next;
+	}
+	// the first instruction executed on jumping to label, or code.size().
+	private int firstInstructionAt(long label) {
+		Integer labelIndex = labelIndices.get(label);
+		if(labelIndex == null || code.isKilled(labelIndex)) {
+			return code.size();
+		}
+		int index = labelIndex;
+		while(index < code.size() && code.opcode(index) == Label) {
+			index = nextCode(index);
+		}
+		return index;
+	}
+	// true if label is among the labels directly after index.
+	private boolean labelFollows(int index, long label) {
+		for(int next = nextCode(index); next < code.size() && code.opcode(next) == Label; next = nextCode(next)) {
+			if(code.rawOperand(next) == label) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
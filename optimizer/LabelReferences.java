@@ -0,0 +1,46 @@
+package optimizer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import asmCodeGenerator.codeStorage.ASMOpcode;
+import asmCodeGenerator.codeStorage.InstructionBuffer;
+
+// the number of instructions using each label (as a jump or call target, a
+// PushD or a DataD), keyed by InstructionBuffer.rawOperand().
+class LabelReferences {
+	private Map<Long, Integer> counts = new HashMap<Long, Integer>();
+
+	LabelReferences(InstructionBuffer code) {
+		for(int i = code.nextLive(0); i < code.size(); i = code.nextLive(i + 1)) {
+			add(code, i);
+		}
+	}
+	static boolean isReference(ASMOpcode opcode) {
+		return opcode.takesString() && opcode != ASMOpcode.Label &&
+				opcode != ASMOpcode.DLabel && opcode != ASMOpcode.DataS;
+	}
+
+	boolean isReferenced(long label) {
+		return counts.containsKey(label);
+	}
+	void add(InstructionBuffer code, int index) {
+		if(isReference(code.opcode(index))) {
+			long label = code.rawOperand(index);
+			Integer count = counts.get(label);
+			counts.put(label, count == null ? 1 : count + 1);
+		}
+	}
+	void remove(InstructionBuffer code, int index) {
+		if(isReference(code.opcode(index))) {
+			long label = code.rawOperand(index);
+			int count = counts.get(label);
+			if(count == 1) {
+				counts.remove(label);
+			}
+			else {
+				counts.put(label, count - 1);
+			}
+		}
+	}
+}
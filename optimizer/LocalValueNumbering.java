@@ -0,0 +1,444 @@
+package optimizer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import asmCodeGenerator.codeStorage.ASMOpcode;
+import asmCodeGenerator.codeStorage.InstructionBuffer;
+import static asmCodeGenerator.codeStorage.ASMOpcode.*;
+
+// Removes recomputations of values within a basic block.  Each block is
+// executed over an abstract stack of value numbers: pushes of the same
+// constant or label get the same number, as do the same operation on the
+// same numbers and loads of the same address between the same two stores.
+// A value is a run of consecutive instructions (its own and those of its
+// operands) with no other effect.
+//
+// When a value is computed again, its run is replaced by
+//  - a Duplicate, if the value is on top of the stack where the run starts;
+//  - otherwise, PushD and a load of a spill slot, a word of data reserved by
+//    the optimizer.  The first computation of the value then stores a copy
+//    there with Duplicate; PushD; Exchange; StoreX, so a spill is made only
+//    if its reuses save more than those four instructions.
+// Call, Printf and the like end what is known, so no spill slot is live
+// across code that may use it too.
+//
+// Spill slots go among the program's other data, just before its second
+// DLabel group (the one after $eat-location-zero), so that they are neither
+// at location zero nor after the last DLabel, where the heap begins.
+public class LocalValueNumbering {
+	public static final String SPILL_LABEL_PREFIX = "$optimizer-spill-";
+	private static final int SPILL_SLOT_SIZE = 8;
+	private static final int SPILL_COST = 4;
+
+	private int instructionsSaved = 0;
+	private int[] blockSavings = new int[0];
+
+	private InstructionBuffer code;
+	private List<Insertion> insertions;
+	private Map<Integer, Long> spillLabels;
+	private int spillPosition;
+
+	public int getInstructionsSaved() {
+		return instructionsSaved;
+	}
+	// the instructions saved in each block, by block number, in the last run.
+	public int[] getBlockSavings() {
+		return blockSavings;
+	}
+
+	// returns true if anything changed.
+	public boolean number(InstructionBuffer code) {
+		this.code = code;
+		this.insertions = new ArrayList<Insertion>();
+		this.spillLabels = new HashMap<Integer, Long>();
+		this.spillPosition = -1;
+		ControlFlowGraph graph = ControlFlowGraph.build(code);
+		blockSavings = new int[graph.getBlocks().size()];
+		boolean changed = false;
+		for(BasicBlock block: graph.getBlocks()) {
+			BlockNumbering numbering = new BlockNumbering(block);
+			int saved = numbering.rewrite();
+			blockSavings[block.getNumber()] = saved;
+			instructionsSaved += saved;
+			changed |= saved > 0;
+		}
+		applyInsertions();
+		return changed;
+	}
+
+
+	////////////////////////////////////////////////////////////////////
+	// one block
+
+	private enum Type { INTEGER, FLOATING }
+
+	// an abstract stack element: value number vn, made by the instructions
+	// at block positions start..end, or start -1 if they are not a run.
+	private static class Entry {
+		final int vn;
+		final int start;
+		final int end;
+
+		Entry(int vn, int start, int end) {
+			this.vn = vn;
+			this.start = start;
+			this.end = end;
+		}
+		boolean isRun() {
+			return start >= 0;
+		}
+	}
+
+	// a recomputation to replace.
+	private static class Candidate {
+		final int vn;
+		final int start;
+		final int end;
+		final boolean duplicate;
+
+		Candidate(int vn, int start, int end, boolean duplicate) {
+			this.vn = vn;
+			this.start = start;
+			this.end = end;
+			this.duplicate = duplicate;
+		}
+		int saving() {
+			return duplicate ? (end - start) : (end - start - 1);
+		}
+		boolean overlaps(Candidate other) {
+			return start <= other.end && other.start <= end;
+		}
+	}
+
+	private class BlockNumbering {
+		private final BasicBlock block;
+		private final List<Entry> stack = new ArrayList<Entry>();
+		private final Map<List<Long>, Integer> numbers = new HashMap<List<Long>, Integer>();
+		private final Map<Integer, Integer> firstComputed = new HashMap<Integer, Integer>();
+		private final Map<Integer, Type> types = new HashMap<Integer, Type>();
+		private final List<Candidate> candidates = new ArrayList<Candidate>();
+		private int[] topBefore;
+		private int nextNumber = 0;
+		private int memoryVersion = 0;
+
+		BlockNumbering(BasicBlock block) {
+			this.block = block;
+			topBefore = new int[block.size()];
+			for(int k = 0; k < block.size(); k++) {
+				topBefore[k] = stack.isEmpty() ? -1 : stack.get(stack.size() - 1).vn;
+				execute(k);
+			}
+		}
+
+		private void execute(int k) {
+			int index = block.instruction(k);
+			ASMOpcode opcode = code.opcode(index);
+			switch(opcode) {
+			case PushI: case PushD:
+				complete(number(opcode, code.rawOperand(index)), k, k, Type.INTEGER);
+				break;
+			case PushF:
+				complete(number(opcode, code.rawOperand(index)), k, k, Type.FLOATING);
+				break;
+
+			case Negate: case BNegate: case BTNegate: case ConvertI:
+			case LoadC: case LoadI:
+				unary(opcode, k, Type.INTEGER);
+				break;
+			case FNegate: case ConvertF: case LoadF:
+				unary(opcode, k, Type.FLOATING);
+				break;
+			case Add: case Subtract: case Multiply: case Divide: case Remainder:
+			case And: case Or: case Nand: case Nor: case Xor: case BEqual:
+			case BTAnd: case BTOr: case BTNand: case BTNor: case BTXor: case BTEqual:
+				binary(opcode, k, Type.INTEGER);
+				break;
+			case FAdd: case FSubtract: case FMultiply: case FDivide:
+				binary(opcode, k, Type.FLOATING);
+				break;
+
+			case Duplicate:
+				Entry top = pop();
+				push(top);
+				push(new Entry(top.vn, k, k));
+				break;
+			case Exchange:
+				Entry b = pop();
+				Entry a = pop();
+				push(new Entry(b.vn, -1, -1));
+				push(new Entry(a.vn, -1, -1));
+				break;
+			case StoreC: case StoreI: case StoreF:
+				pop();
+				pop();
+				memoryVersion++;
+				break;
+			default:
+				if(!StackEffect.isFixed(opcode)) {
+					forgetEverything();
+					break;
+				}
+				for(int i = 0; i < StackEffect.pops(opcode); i++) {
+					pop();
+				}
+				for(int i = 0; i < StackEffect.pushes(opcode); i++) {
+					push(new Entry(nextNumber++, -1, -1));
+				}
+				break;
+			}
+		}
+		private void unary(ASMOpcode opcode, int k, Type type) {
+			Entry a = pop();
+			boolean isLoad = (opcode == LoadC || opcode == LoadI || opcode == LoadF);
+			int vn = number(opcode, a.vn, isLoad ? memoryVersion : 0);
+			int start = a.isRun() && a.end == k - 1 ? a.start : -1;
+			complete(vn, start, k, type);
+		}
+		private void binary(ASMOpcode opcode, int k, Type type) {
+			Entry b = pop();
+			Entry a = pop();
+			int vn = number(opcode, a.vn, b.vn);
+			boolean isRun = a.isRun() && b.isRun() && a.end + 1 == b.start && b.end == k - 1;
+			complete(vn, isRun ? a.start : -1, k, type);
+		}
+		// any value not seen before in this block gets a new number.
+		private int number(ASMOpcode opcode, long... operands) {
+			List<Long> key = new ArrayList<Long>(operands.length + 1);
+			key.add((long)opcode.ordinal());
+			for(long operand: operands) {
+				key.add(operand);
+			}
+			Integer vn = numbers.get(key);
+			if(vn == null) {
+				vn = nextNumber++;
+				numbers.put(key, vn);
+			}
+			return vn;
+		}
+
+		// the value vn has just been made by positions start..end.
+		private void complete(int vn, int start, int end, Type type) {
+			push(new Entry(vn, start, end));
+			if(start < 0) {
+				return;
+			}
+			Integer first = firstComputed.get(vn);
+			if(first == null) {
+				firstComputed.put(vn, end);
+				types.put(vn, type);
+				return;
+			}
+			if(first >= start) {
+				return;
+			}
+			if(topBefore[start] == vn && end > start) {
+				candidates.add(new Candidate(vn, start, end, true));
+			}
+			else if(end - start >= 2) {
+				candidates.add(new Candidate(vn, start, end, false));
+			}
+		}
+		private void forgetEverything() {
+			stack.clear();
+			numbers.clear();
+			memoryVersion++;
+		}
+		private void push(Entry entry) {
+			stack.add(entry);
+		}
+		// values from before the block are unknown.
+		private Entry pop() {
+			if(stack.isEmpty()) {
+				return new Entry(nextNumber++, -1, -1);
+			}
+			return stack.remove(stack.size() - 1);
+		}
+
+
+		////////////////////////////////////////////////////////////////
+		// choosing and rewriting
+
+		// returns the number of instructions saved.
+		int rewrite() {
+			List<Candidate> chosen = choose(candidates);
+			Map<Integer, Integer> spillSavings = spillSavings(chosen);
+			for(Map.Entry<Integer, Integer> entry: spillSavings.entrySet()) {
+				if(entry.getValue() <= SPILL_COST) {
+					removeSpills(chosen, entry.getKey());
+				}
+			}
+			spillSavings = spillSavings(chosen);
+
+			int saved = 0;
+			Map<Integer, Integer> spillSlots = new HashMap<Integer, Integer>();
+			for(int vn: spillSavings.keySet()) {
+				int slot = spillSlots.size();
+				spillSlots.put(vn, slot);
+				spillAfter(firstComputed.get(vn), slot, types.get(vn));
+				saved -= SPILL_COST;
+			}
+			for(Candidate candidate: chosen) {
+				if(candidate.duplicate) {
+					replaceWithDuplicate(candidate);
+				}
+				else {
+					replaceWithReload(candidate, spillSlots.get(candidate.vn), types.get(candidate.vn));
+				}
+				saved += candidate.saving();
+			}
+			return saved;
+		}
+		// outermost first; every inner candidate is inside one chosen, or disjoint.
+		private List<Candidate> choose(List<Candidate> all) {
+			List<Candidate> sorted = new ArrayList<Candidate>(all);
+			Collections.sort(sorted, new Comparator<Candidate>() {
+				public int compare(Candidate a, Candidate b) {
+					return (b.end - b.start) - (a.end - a.start);
+				}
+			});
+			List<Candidate> chosen = new ArrayList<Candidate>();
+			for(Candidate candidate: sorted) {
+				if(!overlapsAny(candidate, chosen) && !containsSpillSource(candidate)) {
+					chosen.add(candidate);
+				}
+			}
+			return chosen;
+		}
+		private boolean overlapsAny(Candidate candidate, List<Candidate> chosen) {
+			for(Candidate other: chosen) {
+				if(candidate.overlaps(other)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		// a replaced run may not hold the first computation of a spilled value.
+		private boolean containsSpillSource(Candidate candidate) {
+			for(Candidate other: candidates) {
+				if(!other.duplicate) {
+					int source = firstComputed.get(other.vn);
+					if(candidate.start <= source && source <= candidate.end) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+		private Map<Integer, Integer> spillSavings(List<Candidate> chosen) {
+			Map<Integer, Integer> result = new HashMap<Integer, Integer>();
+			for(Candidate candidate: chosen) {
+				if(!candidate.duplicate) {
+					Integer sum = result.get(candidate.vn);
+					result.put(candidate.vn, (sum == null ? 0 : sum) + candidate.saving());
+				}
+			}
+			return result;
+		}
+		private void removeSpills(List<Candidate> chosen, int vn) {
+			for(int i = chosen.size() - 1; i >= 0; i--) {
+				if(!chosen.get(i).duplicate && chosen.get(i).vn == vn) {
+					chosen.remove(i);
+				}
+			}
+		}
+
+		private void replaceWithDuplicate(Candidate candidate) {
+			for(int k = candidate.start; k < candidate.end; k++) {
+				code.kill(block.instruction(k));
+			}
+			code.replace(block.instruction(candidate.end), Duplicate);
+		}
+		private void replaceWithReload(Candidate candidate, int slot, Type type) {
+			for(int k = candidate.start; k < candidate.end - 1; k++) {
+				code.kill(block.instruction(k));
+			}
+			code.replaceRaw(block.instruction(candidate.end - 1), PushD, spillSlot(slot), "");
+			code.replace(block.instruction(candidate.end), type == Type.FLOATING ? LoadF : LoadI);
+		}
+		private void spillAfter(int position, int slot, Type type) {
+			int before = block.instruction(position) + 1;
+			insertions.add(new Insertion(before, Duplicate, 0));
+			insertions.add(new Insertion(before, PushD, spillSlot(slot)));
+			insertions.add(new Insertion(before, Exchange, 0));
+			insertions.add(new Insertion(before, type == Type.FLOATING ? StoreF : StoreI, 0));
+		}
+	}
+
+
+	////////////////////////////////////////////////////////////////////
+	// spill slots and insertions
+
+	// the rawOperand() of the label of spill slot number slot, reserving it if need be.
+	private long spillSlot(int slot) {
+		if(spillLabels.isEmpty()) {
+			findSpillSlots();
+		}
+		Long label = spillLabels.get(slot);
+		if(label == null) {
+			label = code.rawOperand(SPILL_LABEL_PREFIX + slot);
+			insertions.add(new Insertion(spillPosition, DLabel, label));
+			insertions.add(new Insertion(spillPosition, DataZ, SPILL_SLOT_SIZE));
+			spillLabels.put(slot, label);
+		}
+		return label;
+	}
+	// finds the slots reserved by earlier runs, and where new ones go.
+	private void findSpillSlots() {
+		int firstData = -1;
+		boolean groupHasData = false;
+		for(int i = code.nextLive(0); i < code.size(); i = code.nextLive(i + 1)) {
+			ASMOpcode opcode = code.opcode(i);
+			if(opcode == DLabel && code.stringOperand(i).startsWith(SPILL_LABEL_PREFIX)) {
+				String number = code.stringOperand(i).substring(SPILL_LABEL_PREFIX.length());
+				spillLabels.put(Integer.parseInt(number), code.rawOperand(i));
+			}
+			if(opcode == DLabel && groupHasData && spillPosition < 0) {
+				spillPosition = i;
+			}
+			if(opcode.isDataDirective()) {
+				firstData = (firstData < 0) ? i : firstData;
+				groupHasData |= opcode != DLabel;
+			}
+		}
+		if(spillPosition < 0) {
+			spillPosition = (firstData < 0) ? code.size() : firstData;
+		}
+	}
+
+	private static class Insertion {
+		final int before;
+		final ASMOpcode opcode;
+		final long operand;
+
+		Insertion(int before, ASMOpcode opcode, long operand) {
+			this.before = before;
+			this.opcode = opcode;
+			this.operand = operand;
+		}
+	}
+	private void applyInsertions() {
+		List<Insertion> sorted = new ArrayList<Insertion>(insertions);
+		Collections.sort(sorted, new Comparator<Insertion>() {
+			public int compare(Insertion a, Insertion b) {
+				return a.before - b.before;
+			}
+		});
+		int count = sorted.size();
+		int[] before = new int[count];
+		ASMOpcode[] opcodes = new ASMOpcode[count];
+		long[] operands = new long[count];
+		String[] comments = new String[count];
+		for(int i = 0; i < count; i++) {
+			before[i] = sorted.get(i).before;
+			opcodes[i] = sorted.get(i).opcode;
+			operands[i] = sorted.get(i).operand;
+			comments[i] = "";
+		}
+		code.insertRaw(before, opcodes, operands, comments);
+	}
+}
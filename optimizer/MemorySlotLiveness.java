@@ -0,0 +1,75 @@
+package optimizer;
+
+import java.util.BitSet;
+
+import asmCodeGenerator.codeStorage.ASMOpcode;
+import asmCodeGenerator.codeStorage.InstructionBuffer;
+import static asmCodeGenerator.codeStorage.ASMOpcode.*;
+
+// Liveness of the bytes of data memory written by static stores: a byte is
+// live at a point if some path from there may read it before a static store
+// overwrites it.  Bits are byte addresses.
+//
+// Static loads read their bytes; loads from computed addresses and Printf
+// read the exposed bytes (see StaticMemoryAccesses).  Call and CallV run code
+// that may read anything, so they read every stored byte, as does leaving the
+// graph by Return, PopPC or JumpV, which goes back to code that may read it.
+// Nothing is live after Halt.
+public class MemorySlotLiveness extends DataflowAnalysis {
+	private ControlFlowGraph graph;
+	private InstructionBuffer code;
+	private StaticMemoryAccesses accesses;
+
+	public MemorySlotLiveness(ControlFlowGraph graph, StaticMemoryAccesses accesses) {
+		super(Direction.BACKWARD, Meet.UNION, accesses.getDataSize());
+		this.graph = graph;
+		this.code = graph.getCode();
+		this.accesses = accesses;
+	}
+
+	@Override
+	protected BitSet boundary(BasicBlock block) {
+		ASMOpcode last = code.opcode(block.last());
+		if(last == Halt) {
+			return new BitSet();
+		}
+		if(last == Return || last == PopPC || last == JumpV || block.getSuccessors().isEmpty()) {
+			return accesses.getStoredBytes();
+		}
+		return null;
+	}
+
+	// a Call reads everything itself.
+	@Override
+	protected boolean followsEdge(BasicBlock from, BasicBlock to) {
+		return !graph.isCallEdge(from, to);
+	}
+
+	@Override
+	protected BitSet transfer(BasicBlock block, BitSet value) {
+		BitSet live = (BitSet)value.clone();
+		for(int i = block.size() - 1; i >= 0; i--) {
+			update(live, block.instruction(i));
+		}
+		return live;
+	}
+
+	// changes live from the liveness after the instruction at index to the liveness before it.
+	public void update(BitSet live, int index) {
+		StaticMemoryAccesses.Access access = accesses.access(index);
+		if(access != null) {
+			if(access.isStore()) {
+				live.clear(access.getAddress(), access.end());
+			}
+			else {
+				live.set(access.getAddress(), access.end());
+			}
+		}
+		else if(accesses.readsUnknownMemory(index)) {
+			live.or(accesses.getExposedBytes());
+		}
+		else if(code.opcode(index) == Call || code.opcode(index) == CallV) {
+			live.or(accesses.getStoredBytes());
+		}
+	}
+}
@@ -1,9 +1,22 @@
 package optimizer;
 
+import java.util.Map;
+
 import asmCodeGenerator.codeStorage.ASMCodeFragment;
+import asmCodeGenerator.codeStorage.InstructionBuffer;
 
 public class Optimizer {
 	private ASMCodeFragment fragment;
+	private PeepholeOptimizer peephole = new PeepholeOptimizer();
+	private Inliner inliner = new Inliner();
+	private UnreachableCodeEliminator unreachableCode = new UnreachableCodeEliminator();
+	private JumpThreader jumpThreader = new JumpThreader();
+	private ConstantFolder constantFolder = new ConstantFolder();
+	private DeadStoreEliminator deadStores = new DeadStoreEliminator();
+	private StoreForwarder storeForwarder = new StoreForwarder();
+	private LocalValueNumbering valueNumbering = new LocalValueNumbering();
+	private TreeShaker treeShaker = new TreeShaker();
+	private BlockLayout blockLayout = new BlockLayout();
 	
 	public static ASMCodeFragment optimize(ASMCodeFragment fragment) {
 		Optimizer optimizer = new Optimizer(fragment);
@@ -13,7 +26,62 @@ public class Optimizer {
 		this.fragment = fragment;
 	}
 	
+	// the passes work on one flat buffer of the whole program.
 	public ASMCodeFragment optimize() {
-		return fragment;
+		InstructionBuffer instructions = fragment.toInstructionBuffer();
+		
+		inliner.inline(instructions);
+		do {
+			peephole.optimize(instructions);
+			while(simplify(instructions)) {
+				peephole.optimize(instructions);
+			}
+		} while(blockLayout.arrange(instructions));
+		instructions.compact();
+		return ASMCodeFragment.fromInstructionBuffer(instructions, ASMCodeFragment.CodeType.GENERATES_VOID);
+	}
+	
+	// true if anything changed.
+	private boolean simplify(InstructionBuffer instructions) {
+		boolean changed = constantFolder.fold(instructions);
+		changed |= unreachableCode.eliminate(instructions);
+		changed |= jumpThreader.thread(instructions);
+		changed |= deadStores.eliminate(instructions);
+		changed |= storeForwarder.forward(instructions);
+		changed |= valueNumbering.number(instructions);
+		changed |= treeShaker.shake(instructions);
+		return changed;
+	}
+	
+	// rewrites done by each peephole rule, by rule name.
+	public Map<String, Integer> getPeepholeHitCounts() {
+		return peephole.getHitCounts();
+	}
+	public Inliner getInliner() {
+		return inliner;
+	}
+	public int getUnreachableInstructionsRemoved() {
+		return unreachableCode.getInstructionsRemoved();
+	}
+	public JumpThreader getJumpThreader() {
+		return jumpThreader;
+	}
+	public ConstantFolder getConstantFolder() {
+		return constantFolder;
+	}
+	public int getDeadStoresRemoved() {
+		return deadStores.getStoresRemoved();
+	}
+	public StoreForwarder getStoreForwarder() {
+		return storeForwarder;
+	}
+	public LocalValueNumbering getValueNumbering() {
+		return valueNumbering;
+	}
+	public TreeShaker getTreeShaker() {
+		return treeShaker;
+	}
+	public BlockLayout getBlockLayout() {
+		return blockLayout;
 	}
 }
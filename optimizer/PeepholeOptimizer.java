@@ -0,0 +1,85 @@
+package optimizer;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import asmCodeGenerator.codeStorage.InstructionBuffer;
+
+// Applies peephole rules to a fixpoint.  A window slides over the live
+// instructions; at each position the first rule that matches is applied and
+// the window backs up far enough to catch any rewrite the change enables.
+// Every rule shortens the code, so this terminates.
+public class PeepholeOptimizer {
+	private List<PeepholeRule> rules;
+	private int window;
+	private Map<String, Integer> hitCounts = new LinkedHashMap<String, Integer>();
+
+	public PeepholeOptimizer() {
+		this(PeepholeRules.all());
+	}
+	public PeepholeOptimizer(List<PeepholeRule> rules) {
+		this.rules = rules;
+		for(PeepholeRule rule: rules) {
+			window = Math.max(window, rule.length());
+			hitCounts.put(rule.getName(), 0);
+		}
+	}
+
+	// the number of rewrites done by each rule (by name), over all optimize() calls.
+	public Map<String, Integer> getHitCounts() {
+		return Collections.unmodifiableMap(hitCounts);
+	}
+
+	public void optimize(InstructionBuffer code) {
+		LabelReferences references = new LabelReferences(code);
+		int[] positions = new int[window];
+		int index = code.nextLive(0);
+		while(index < code.size()) {
+			int live = livePositions(code, index, positions);
+			PeepholeRule applied = applyFirstMatch(code, positions, live, references);
+			if(applied == null) {
+				index = code.nextLive(index + 1);
+			}
+			else {
+				hitCounts.put(applied.getName(), hitCounts.get(applied.getName()) + 1);
+				index = backUp(code, index, window - 1);
+			}
+		}
+	}
+	private PeepholeRule applyFirstMatch(InstructionBuffer code, int[] positions, int live,
+			LabelReferences references) {
+		for(PeepholeRule rule: rules) {
+			if(rule.length() > live) {
+				continue;
+			}
+			Map<String, Long> bindings = rule.match(code, positions, references);
+			if(bindings != null) {
+				rule.rewrite(code, positions, bindings, references);
+				return rule;
+			}
+		}
+		return null;
+	}
+	// fills positions with the indices of up to window live instructions from
+	// index on, returning how many there are.
+	private int livePositions(InstructionBuffer code, int index, int[] positions) {
+		int count = 0;
+		for(int i = index; i < code.size() && count < window; i = code.nextLive(i + 1)) {
+			positions[count++] = i;
+		}
+		return count;
+	}
+	// the live index steps live instructions before index, or the first live one.
+	private int backUp(InstructionBuffer code, int index, int steps) {
+		int result = code.nextLive(index);
+		for(int i = index - 1; i >= 0 && steps > 0; i--) {
+			if(!code.isKilled(i)) {
+				result = i;
+				steps--;
+			}
+		}
+		return result;
+	}
+}
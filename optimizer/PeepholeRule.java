@@ -0,0 +1,289 @@
+package optimizer;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import asmCodeGenerator.codeStorage.ASMOpcode;
+import asmCodeGenerator.codeStorage.InstructionBuffer;
+
+// A peephole rule, written as
+//
+//     pattern => replacement [if condition, condition...]
+//
+// The pattern is a sequence of instructions separated by semicolons, each an
+// opcode (or alternatives, as in PushI|PushF) and an operand if the opcodes
+// take one.  An operand is a literal, _ (anything), or a variable $name; a
+// variable matches the same operand everywhere it appears in the pattern.
+// The replacement is a sequence of instructions, possibly empty, whose
+// operands are literals or variables bound by the pattern.  The only
+// condition is "unreferenced $L": nothing in the code uses the label $L.
+//
+// A replacement must be shorter than its pattern, so that rewriting always
+// terminates.  For example:
+//
+//     PushI $v; PushD $a; Exchange => PushD $a; PushI $v
+//     Jump $L; Label $L => Label $L
+public class PeepholeRule {
+	private String name;
+	private String text;
+	private List<Element> pattern = new ArrayList<Element>();
+	private List<Element> replacement = new ArrayList<Element>();
+	private List<String> unreferencedLabels = new ArrayList<String>();
+	private Map<String, OperandKind> variableKinds = new HashMap<String, OperandKind>();
+
+	private enum OperandKind { NONE, INTEGER, FLOATING, STRING }
+
+	// one instruction of a pattern or replacement.
+	private static class Element {
+		EnumSet<ASMOpcode> opcodes;
+		OperandKind kind;
+		String variable;			// non-null for $name
+		boolean wildcard;			// true for _
+		long literal;				// integer or floating bits
+		String stringLiteral;
+
+		ASMOpcode opcode() {
+			return opcodes.iterator().next();
+		}
+	}
+
+	public static PeepholeRule parse(String name, String text) {
+		return new PeepholeRule(name, text);
+	}
+	private PeepholeRule(String name, String text) {
+		this.name = name;
+		this.text = text;
+
+		String[] sides = text.split("=>", -1);
+		if(sides.length != 2) {
+			throw error("expected one =>");
+		}
+		String[] rightAndConditions = sides[1].split("\\bif\\b", -1);
+		if(rightAndConditions.length > 2) {
+			throw error("expected at most one if");
+		}
+		parseInstructions(sides[0], pattern, true);
+		parseInstructions(rightAndConditions[0], replacement, false);
+		if(rightAndConditions.length == 2) {
+			parseConditions(rightAndConditions[1]);
+		}
+		if(pattern.isEmpty()) {
+			throw error("empty pattern");
+		}
+		if(replacement.size() >= pattern.size()) {
+			throw error("replacement must be shorter than pattern");
+		}
+	}
+
+	private void parseInstructions(String instructions, List<Element> result, boolean isPattern) {
+		if(instructions.trim().isEmpty()) {
+			return;
+		}
+		for(String instruction: instructions.split(";")) {
+			result.add(parseElement(instruction.trim().split("\\s+"), isPattern));
+		}
+	}
+	private Element parseElement(String[] words, boolean isPattern) {
+		Element element = new Element();
+		element.opcodes = EnumSet.noneOf(ASMOpcode.class);
+		for(String opcodeName: words[0].split("\\|")) {
+			element.opcodes.add(opcode(opcodeName));
+		}
+		if(!isPattern && element.opcodes.size() > 1) {
+			throw error("alternatives in replacement: " + words[0]);
+		}
+		element.kind = operandKind(element.opcodes);
+
+		boolean hasOperand = (element.kind != OperandKind.NONE);
+		if(words.length != (hasOperand ? 2 : 1)) {
+			throw error("wrong number of operands: " + words[0]);
+		}
+		if(hasOperand) {
+			parseOperand(element, words[1], isPattern);
+		}
+		return element;
+	}
+	private void parseOperand(Element element, String operand, boolean isPattern) {
+		if(operand.equals("_")) {
+			if(!isPattern) {
+				throw error("_ in replacement");
+			}
+			element.wildcard = true;
+		}
+		else if(operand.length() > 1 && operand.charAt(0) == '$' && Character.isLetter(operand.charAt(1))) {
+			element.variable = operand.substring(1);
+			bindVariable(element.variable, element.kind, isPattern);
+		}
+		else {
+			parseLiteral(element, operand);
+		}
+	}
+	private void bindVariable(String variable, OperandKind kind, boolean isPattern) {
+		OperandKind bound = variableKinds.get(variable);
+		if(bound == null && !isPattern) {
+			throw error("unbound variable $" + variable);
+		}
+		if(bound != null && bound != kind) {
+			throw error("variable $" + variable + " used for different operand types");
+		}
+		variableKinds.put(variable, kind);
+	}
+	private void parseLiteral(Element element, String operand) {
+		try {
+			switch(element.kind) {
+			case INTEGER:	element.literal = Integer.parseInt(operand);							break;
+			case FLOATING:	element.literal = Double.doubleToRawLongBits(Double.parseDouble(operand));	break;
+			default:		element.stringLiteral = operand;										break;
+			}
+		}
+		catch (NumberFormatException e) {
+			throw error("bad literal " + operand);
+		}
+	}
+	private void parseConditions(String conditions) {
+		for(String condition: conditions.split(",")) {
+			String[] words = condition.trim().split("\\s+");
+			if(words.length != 2 || !words[0].equals("unreferenced") || !words[1].startsWith("$")) {
+				throw error("unknown condition " + condition.trim());
+			}
+			String variable = words[1].substring(1);
+			if(variableKinds.get(variable) != OperandKind.STRING) {
+				throw error("unreferenced needs a label variable: " + words[1]);
+			}
+			unreferencedLabels.add(variable);
+		}
+	}
+
+	private ASMOpcode opcode(String opcodeName) {
+		try {
+			return ASMOpcode.valueOf(opcodeName);
+		}
+		catch (IllegalArgumentException e) {
+			throw error("unknown opcode " + opcodeName);
+		}
+	}
+	private OperandKind operandKind(EnumSet<ASMOpcode> opcodes) {
+		OperandKind result = null;
+		for(ASMOpcode opcode: opcodes) {
+			OperandKind kind = opcode.takesInteger() ? OperandKind.INTEGER :
+							   opcode.takesFloat()   ? OperandKind.FLOATING :
+							   opcode.takesString()  ? OperandKind.STRING :
+							   OperandKind.NONE;
+			if(result != null && kind != result) {
+				throw error("alternatives with different operands: " + opcodes);
+			}
+			result = kind;
+		}
+		return result;
+	}
+	private IllegalArgumentException error(String problem) {
+		return new IllegalArgumentException("peephole rule " + name + " (" + text + "): " + problem);
+	}
+
+
+	////////////////////////////////////////////////////////////////////
+	// matching and rewriting
+
+	public String getName() {
+		return name;
+	}
+	public int length() {
+		return pattern.size();
+	}
+
+	// the variable bindings if the live instructions at positions match the
+	// pattern and the conditions hold, or null.
+	Map<String, Long> match(InstructionBuffer code, int[] positions, LabelReferences references) {
+		Map<String, Long> bindings = new HashMap<String, Long>();
+		for(int i = 0; i < pattern.size(); i++) {
+			if(!matches(pattern.get(i), code, positions[i], bindings)) {
+				return null;
+			}
+		}
+		for(String variable: unreferencedLabels) {
+			if(references.isReferenced(bindings.get(variable))) {
+				return null;
+			}
+		}
+		return bindings;
+	}
+	private boolean matches(Element element, InstructionBuffer code, int index, Map<String, Long> bindings) {
+		if(!element.opcodes.contains(code.opcode(index))) {
+			return false;
+		}
+		if(element.kind == OperandKind.NONE || element.wildcard) {
+			return true;
+		}
+		long operand = code.rawOperand(index);
+		if(element.variable != null) {
+			Long bound = bindings.get(element.variable);
+			if(bound == null) {
+				bindings.put(element.variable, operand);
+				return true;
+			}
+			return bound == operand;
+		}
+		if(element.kind == OperandKind.STRING) {
+			return code.stringOperand(index).equals(element.stringLiteral);
+		}
+		return operand == element.literal;
+	}
+
+	// rewrites the matched instructions at positions: the first ones become
+	// the replacement and the rest are killed.  A replacement instruction keeps
+	// the comment of an identical matched instruction, if there is one.
+	void rewrite(InstructionBuffer code, int[] positions, Map<String, Long> bindings, LabelReferences references) {
+		String[] comments = new String[replacement.size()];
+		for(int i = 0; i < replacement.size(); i++) {
+			comments[i] = commentFor(replacement.get(i), code, positions, bindings);
+		}
+		for(int i = 0; i < pattern.size(); i++) {
+			references.remove(code, positions[i]);
+		}
+		for(int i = 0; i < replacement.size(); i++) {
+			Element element = replacement.get(i);
+			String comment = comments[i];
+			if(element.kind == OperandKind.STRING && element.stringLiteral != null) {
+				code.replace(positions[i], element.opcode(), element.stringLiteral, comment);
+			}
+			else {
+				code.replaceRaw(positions[i], element.opcode(), operand(element, bindings), comment);
+			}
+			references.add(code, positions[i]);
+		}
+		for(int i = replacement.size(); i < pattern.size(); i++) {
+			code.kill(positions[i]);
+		}
+	}
+	private String commentFor(Element element, InstructionBuffer code, int[] positions, Map<String, Long> bindings) {
+		for(int i = 0; i < pattern.size(); i++) {
+			int index = positions[i];
+			if(code.opcode(index) == element.opcode() && sameOperand(element, code, index, bindings)) {
+				return code.comment(index);
+			}
+		}
+		return "";
+	}
+	private boolean sameOperand(Element element, InstructionBuffer code, int index, Map<String, Long> bindings) {
+		if(element.kind == OperandKind.NONE) {
+			return true;
+		}
+		if(element.stringLiteral != null) {
+			return code.stringOperand(index).equals(element.stringLiteral);
+		}
+		return code.rawOperand(index) == operand(element, bindings);
+	}
+	private long operand(Element element, Map<String, Long> bindings) {
+		if(element.variable != null) {
+			return bindings.get(element.variable);
+		}
+		return element.literal;
+	}
+
+	public String toString() {
+		return name + ": " + text;
+	}
+}
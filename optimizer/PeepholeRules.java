@@ -0,0 +1,43 @@
+package optimizer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// The peephole rules, in the order they are tried.  Each is a pattern the
+// code generator, its SimpleCodeGenerators or Macros actually emit.
+public class PeepholeRules {
+	private static List<PeepholeRule> rules = new ArrayList<PeepholeRule>();
+
+	static {
+		// storing a pushed constant: the value need not go under the address.
+		rule("push-address-exchange",	"PushI $v; PushD $a; Exchange => PushD $a; PushI $v");
+		rule("push-address-exchange",	"PushF $v; PushD $a; Exchange => PushD $a; PushF $v");
+		rule("push-address-exchange",	"PushD $v; PushD $a; Exchange => PushD $a; PushD $v");
+
+		// offsets and identities from address arithmetic and Macros.readIOffset.
+		rule("add-zero",				"PushI 0; Add => ");
+		rule("subtract-zero",			"PushI 0; Subtract => ");
+		rule("multiply-one",			"PushI 1; Multiply => ");
+
+		// values computed and immediately dropped.
+		rule("duplicate-pop",			"Duplicate; Pop => ");
+		rule("push-pop",				"PushI _; Pop => ");
+		rule("push-pop",				"PushF _; Pop => ");
+		rule("push-pop",				"PushD _; Pop => ");
+		rule("exchange-exchange",		"Exchange; Exchange => ");
+		rule("negate-negate",			"Negate; Negate => ");
+		rule("fnegate-fnegate",			"FNegate; FNegate => ");
+
+		// control flow from the jumping code for conditions.
+		rule("jump-to-next",			"Jump $L; Label $L => Label $L");
+		rule("unreferenced-label",		"Label $L => if unreferenced $L");
+	}
+	private static void rule(String name, String text) {
+		rules.add(PeepholeRule.parse(name, text));
+	}
+
+	public static List<PeepholeRule> all() {
+		return Collections.unmodifiableList(rules);
+	}
+}
@@ -0,0 +1,52 @@
+package optimizer;
+
+import asmCodeGenerator.codeStorage.ASMOpcode;
+
+// The number of accumulator stack elements each instruction pops and pushes.
+// Instructions whose effect is not fixed, or that look at or leave for code
+// that may look at the whole stack (Printf, PStack, Call, Return, ...), have
+// no effect here: pops() and pushes() give VARIABLE for them.
+public class StackEffect {
+	public static final int VARIABLE = -1;
+
+	public static boolean isFixed(ASMOpcode opcode) {
+		return pops(opcode) != VARIABLE;
+	}
+
+	public static int pops(ASMOpcode opcode) {
+		switch(opcode) {
+		case Add: case Subtract: case Multiply: case Divide: case Remainder:
+		case FAdd: case FSubtract: case FMultiply: case FDivide:
+		case And: case Or: case Nand: case Nor: case Xor: case BEqual:
+		case BTAnd: case BTOr: case BTNand: case BTNor: case BTXor: case BTEqual:
+		case Exchange:
+		case StoreC: case StoreI: case StoreF:
+			return 2;
+		case Negate: case FNegate: case BNegate: case BTNegate: case ConvertF: case ConvertI:
+		case Duplicate: case Pop:
+		case LoadC: case LoadI: case LoadF:
+		case JumpFalse: case JumpTrue: case JumpPos: case JumpNeg:
+		case JumpFPos: case JumpFNeg: case JumpFZero:
+			return 1;
+		case PushI: case PushD: case PushF: case PushPC: case Memtop:
+		case Label: case Jump: case Nop: case Halt:
+			return 0;
+		default:
+			return VARIABLE;
+		}
+	}
+	public static int pushes(ASMOpcode opcode) {
+		switch(opcode) {
+		case Duplicate: case Exchange:
+			return 2;
+		case Pop:
+		case StoreC: case StoreI: case StoreF:
+		case JumpFalse: case JumpTrue: case JumpPos: case JumpNeg:
+		case JumpFPos: case JumpFNeg: case JumpFZero:
+		case Label: case Jump: case Nop: case Halt:
+			return 0;
+		default:
+			return isFixed(opcode) ? 1 : VARIABLE;
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package optimizer;
+
+import asmCodeGenerator.codeStorage.InstructionBuffer;
+import static asmCodeGenerator.codeStorage.ASMOpcode.*;
+
+// Edge weights guessed from the shape of the code: a backward edge is
+// probably a loop and is taken often, and an edge into a block that halts
+// (the end of the program, or a runtime error) is taken at most once.
+public class StaticEdgeWeights implements EdgeWeights {
+	private static final long LOOP = 8;
+	private static final long ORDINARY = 4;
+	private static final long TO_HALT = 1;
+
+	public long weight(ControlFlowGraph graph, BasicBlock from, BasicBlock to) {
+		InstructionBuffer code = graph.getCode();
+		if(code.opcode(to.last()) == Halt) {
+			return TO_HALT;
+		}
+		if(to.getNumber() <= from.getNumber()) {
+			return LOOP;
+		}
+		return ORDINARY;
+	}
+}
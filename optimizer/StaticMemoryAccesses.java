@@ -0,0 +1,315 @@
+package optimizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import asmCodeGenerator.codeStorage.ASMOpcode;
+import asmCodeGenerator.codeStorage.InstructionBuffer;
+import static asmCodeGenerator.codeStorage.ASMOpcode.*;
+
+// Finds the loads and stores whose addresses are known when the code is
+// written: a data label, optionally plus a constant, as in
+//
+//     PushD $global-memory-block; PushI 4; Add; ... StoreI
+//
+// Data labels are given their addresses by laying out the data directives in
+// order from address 0, as the emulator does, so labels at the same address
+// are recognized as aliases.
+//
+// Each block is executed over an abstract stack whose elements are static
+// addresses, integer constants or unknown values; values from before the
+// block are unknown.  An address that is used for anything other than a load
+// or store (passed to Printf, stored in memory, added to an unknown value,
+// left on the stack at the end of a block, named by DataD, ...) escapes, and
+// so may be read later through a computed address.  An escaping address
+// exposes the whole labelled region it points into: the bytes from the
+// nearest data label at or below it to the next label above it.  Addresses
+// into the data are assumed to come only from PushD and DataD, never from
+// integer arithmetic on constants.
+public class StaticMemoryAccesses {
+	private InstructionBuffer code;
+	private Map<Long, Integer> labelAddresses = new HashMap<Long, Integer>();
+	private int[] regionStarts;
+	private int dataSize;
+
+	private Map<Integer, Access> accesses = new HashMap<Integer, Access>();
+	private BitSet unknownReads = new BitSet();
+	private BitSet storedBytes = new BitSet();
+	private BitSet exposedBytes = new BitSet();
+
+	// a load or store of a static address.
+	public static class Access {
+		private final int address;
+		private final int width;
+		private final boolean isStore;
+		private final int[] addressProducers;
+
+		Access(int address, int width, boolean isStore, int[] addressProducers) {
+			this.address = address;
+			this.width = width;
+			this.isStore = isStore;
+			this.addressProducers = addressProducers;
+		}
+		public int getAddress() {
+			return address;
+		}
+		public int getWidth() {
+			return width;
+		}
+		public int end() {
+			return address + width;
+		}
+		public boolean isStore() {
+			return isStore;
+		}
+		// the instructions that compute the address and nothing else, which
+		// can be killed along with the access; null if there are none.
+		public int[] getAddressProducers() {
+			return addressProducers;
+		}
+		public boolean sameSlot(Access other) {
+			return address == other.address && width == other.width;
+		}
+		public boolean overlaps(Access other) {
+			return address < other.end() && other.address < end();
+		}
+	}
+
+	// an abstract stack element.
+	private static class Value {
+		enum Kind { UNKNOWN, INTEGER, ADDRESS }
+		final Kind kind;
+		final int value;
+		final int[] producers;			// null if not removable
+
+		Value(Kind kind, int value, int[] producers) {
+			this.kind = kind;
+			this.value = value;
+			this.producers = producers;
+		}
+		static final Value UNKNOWN = new Value(Kind.UNKNOWN, 0, null);
+
+		Value pinned() {
+			return new Value(kind, value, null);
+		}
+	}
+
+	public static StaticMemoryAccesses analyze(ControlFlowGraph graph) {
+		return new StaticMemoryAccesses(graph);
+	}
+	private StaticMemoryAccesses(ControlFlowGraph graph) {
+		this.code = graph.getCode();
+		layOutData(graph.getDataDirectives());
+		for(BasicBlock block: graph.getBlocks()) {
+			executeBlock(block);
+		}
+	}
+
+
+	////////////////////////////////////////////////////////////////////
+	// results
+
+	// the static access made by the load or store at index, or null.
+	public Access access(int index) {
+		return accesses.get(index);
+	}
+	// true for loads from computed addresses and Printf, which may read any exposed byte.
+	public boolean readsUnknownMemory(int index) {
+		return unknownReads.get(index);
+	}
+	// the bytes written by static stores.
+	public BitSet getStoredBytes() {
+		return storedBytes;
+	}
+	// the bytes that may be read through computed addresses.
+	public BitSet getExposedBytes() {
+		return exposedBytes;
+	}
+	public int getDataSize() {
+		return dataSize;
+	}
+
+
+	////////////////////////////////////////////////////////////////////
+	// the data layout
+
+	private void layOutData(List<Integer> directives) {
+		List<Integer> starts = new ArrayList<Integer>();
+		int address = 0;
+		for(int index: directives) {
+			ASMOpcode opcode = code.opcode(index);
+			switch(opcode) {
+			case DLabel:
+				labelAddresses.put(code.rawOperand(index), address);
+				starts.add(address);
+				break;
+			case DataC:		address += 1;								break;
+			case DataI:		address += 4;								break;
+			case DataF:		address += 8;								break;
+			case DataD:		address += 4;								break;
+			case DataZ:		address += code.intOperand(index);			break;
+			case DataS:		address += code.stringOperand(index).length() + 1;	break;
+			default:
+				break;
+			}
+		}
+		dataSize = address;
+		regionStarts = new int[starts.size()];
+		for(int i = 0; i < regionStarts.length; i++) {
+			regionStarts[i] = starts.get(i);
+		}
+		for(int index: directives) {
+			if(code.opcode(index) == DataD && labelAddresses.containsKey(code.rawOperand(index))) {
+				expose(labelAddresses.get(code.rawOperand(index)));
+			}
+		}
+	}
+	private void expose(int address) {
+		int start = 0;
+		int end = dataSize;
+		for(int regionStart: regionStarts) {
+			if(regionStart <= address) {
+				start = Math.max(start, regionStart);
+			}
+			else {
+				end = Math.min(end, regionStart);
+			}
+		}
+		if(start < end) {
+			exposedBytes.set(start, end);
+		}
+	}
+
+
+	////////////////////////////////////////////////////////////////////
+	// abstract execution
+
+	private List<Value> stack;
+
+	private void executeBlock(BasicBlock block) {
+		stack = new ArrayList<Value>();
+		for(int i = 0; i < block.size(); i++) {
+			execute(block.instruction(i));
+		}
+		escapeAll();
+	}
+	private void execute(int index) {
+		ASMOpcode opcode = code.opcode(index);
+		switch(opcode) {
+		case PushD:
+			Integer address = labelAddresses.get(code.rawOperand(index));
+			push(address == null ? Value.UNKNOWN : new Value(Value.Kind.ADDRESS, address, new int[] { index }));
+			break;
+		case PushI:
+			push(new Value(Value.Kind.INTEGER, code.intOperand(index), new int[] { index }));
+			break;
+		case Add:
+			add(index);
+			break;
+		case Duplicate:
+			Value top = pop();
+			push(top.pinned());
+			push(top.pinned());
+			break;
+		case Exchange:
+			Value b = pop();
+			Value a = pop();
+			push(b.pinned());
+			push(a.pinned());
+			break;
+		case Pop:
+			pop();
+			break;
+
+		case LoadC:		load(index, 1);			break;
+		case LoadI:		load(index, 4);			break;
+		case LoadF:		load(index, 8);			break;
+		case StoreC:	store(index, 1);		break;
+		case StoreI:	store(index, 4);		break;
+		case StoreF:	store(index, 8);		break;
+
+		case Printf:
+			unknownReads.set(index);
+			escapeAll();
+			break;
+		default:
+			if(!StackEffect.isFixed(opcode)) {
+				escapeAll();
+				break;
+			}
+			for(int i = 0; i < StackEffect.pops(opcode); i++) {
+				escape(pop());
+			}
+			for(int i = 0; i < StackEffect.pushes(opcode); i++) {
+				push(Value.UNKNOWN);
+			}
+			break;
+		}
+	}
+
+	private void add(int index) {
+		Value b = pop();
+		Value a = pop();
+		Value address = a.kind == Value.Kind.ADDRESS ? a : b;
+		Value offset = a.kind == Value.Kind.ADDRESS ? b : a;
+		if(address.kind == Value.Kind.ADDRESS && offset.kind == Value.Kind.INTEGER) {
+			int[] producers = null;
+			if(a.producers != null && b.producers != null) {
+				producers = Arrays.copyOf(a.producers, a.producers.length + b.producers.length + 1);
+				System.arraycopy(b.producers, 0, producers, a.producers.length, b.producers.length);
+				producers[producers.length - 1] = index;
+			}
+			push(new Value(Value.Kind.ADDRESS, address.value + offset.value, producers));
+			return;
+		}
+		escape(a);
+		escape(b);
+		push(Value.UNKNOWN);
+	}
+	private void load(int index, int width) {
+		Value address = pop();
+		if(isInData(address, width)) {
+			accesses.put(index, new Access(address.value, width, false, address.producers));
+		}
+		else {
+			unknownReads.set(index);
+		}
+		push(Value.UNKNOWN);
+	}
+	private void store(int index, int width) {
+		escape(pop());
+		Value address = pop();
+		if(isInData(address, width)) {
+			accesses.put(index, new Access(address.value, width, true, address.producers));
+			storedBytes.set(address.value, address.value + width);
+		}
+	}
+	private boolean isInData(Value address, int width) {
+		return address.kind == Value.Kind.ADDRESS && address.value >= 0 && address.value + width <= dataSize;
+	}
+
+	private void escape(Value value) {
+		if(value.kind == Value.Kind.ADDRESS) {
+			expose(value.value);
+		}
+	}
+	private void escapeAll() {
+		for(Value value: stack) {
+			escape(value);
+		}
+		stack.clear();
+	}
+	private void push(Value value) {
+		stack.add(value);
+	}
+	private Value pop() {
+		if(stack.isEmpty()) {
+			return Value.UNKNOWN;
+		}
+		return stack.remove(stack.size() - 1);
+	}
+}
@@ -0,0 +1,164 @@
+package optimizer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import asmCodeGenerator.codeStorage.ASMOpcode;
+import asmCodeGenerator.codeStorage.InstructionBuffer;
+import static asmCodeGenerator.codeStorage.ASMOpcode.*;
+
+// Forwards a stored value to a later load of the same static address in the
+// same block, keeping the value on the accumulator instead of reloading it:
+//
+//     address; value; StoreI; ... address; LoadI
+//
+// becomes
+//
+//     value; Duplicate; address; Exchange; StoreI; ...
+//
+// with an Exchange in place of the load if one value was pushed between the
+// store and the load.  The copy of the value sits below everything the code
+// between pushes, so that code may not pop down to it, nor store to memory
+// the load might read, nor call anything.  StoreC is not forwarded, as LoadC
+// reads back only the low byte.  A pair is rewritten only if that removes
+// more instructions than it adds.
+public class StoreForwarder {
+	private int loadsForwarded = 0;
+	private int instructionsSaved = 0;
+
+	private InstructionBuffer code;
+	private StaticMemoryAccesses accesses;
+	private List<Integer> insertBefore;
+	private List<ASMOpcode> insertOpcodes;
+	private List<Long> insertOperands;
+	private List<String> insertComments;
+
+	public int getLoadsForwarded() {
+		return loadsForwarded;
+	}
+	public int getInstructionsSaved() {
+		return instructionsSaved;
+	}
+
+	// returns true if anything changed.
+	public boolean forward(InstructionBuffer code) {
+		this.code = code;
+		ControlFlowGraph graph = ControlFlowGraph.build(code);
+		accesses = StaticMemoryAccesses.analyze(graph);
+		insertBefore = new ArrayList<Integer>();
+		insertOpcodes = new ArrayList<ASMOpcode>();
+		insertOperands = new ArrayList<Long>();
+		insertComments = new ArrayList<String>();
+
+		for(BasicBlock block: graph.getBlocks()) {
+			forwardInBlock(block);
+		}
+		if(insertBefore.isEmpty()) {
+			return false;
+		}
+		applyInsertions();
+		return true;
+	}
+
+	// depth is the stack depth relative to the start of the block (or the
+	// last instruction with no fixed stack effect).  A pending store leaves
+	// its hidden copy of the value at depth storeDepth.  A store whose address
+	// is computed before an earlier rewritten load is not forwarded, as the
+	// analysis no longer describes its code.
+	private void forwardInBlock(BasicBlock block) {
+		int depth = 0;
+		int store = -1;
+		int storeDepth = 0;
+		int lastRewrite = -1;
+		for(int i = 0; i < block.size(); i++) {
+			int index = block.instruction(i);
+			ASMOpcode opcode = code.opcode(index);
+			if(!StackEffect.isFixed(opcode)) {
+				depth = 0;
+				store = -1;
+				continue;
+			}
+			StaticMemoryAccesses.Access access = accesses.access(index);
+
+			if(store >= 0 && access != null && !access.isStore() && matches(store, index)) {
+				int between = depth - 1 - storeDepth;
+				if(between <= 1 && saving(store, index, between) > 0) {
+					rewrite(store, index, between);
+					store = -1;
+					lastRewrite = index;
+				}
+			}
+			if(store >= 0 && (depth - StackEffect.pops(opcode) < storeDepth || isStore(opcode))) {
+				store = -1;
+			}
+
+			depth += StackEffect.pushes(opcode) - StackEffect.pops(opcode);
+			if((opcode == StoreI || opcode == StoreF) && access != null && access.getAddressProducers() != null &&
+					access.getAddressProducers()[0] > lastRewrite) {
+				store = index;
+				storeDepth = depth;
+			}
+		}
+	}
+	private static boolean isStore(ASMOpcode opcode) {
+		return opcode == StoreC || opcode == StoreI || opcode == StoreF;
+	}
+	private boolean matches(int store, int load) {
+		StaticMemoryAccesses.Access stored = accesses.access(store);
+		StaticMemoryAccesses.Access loaded = accesses.access(load);
+		boolean sameType = (code.opcode(store) == StoreI) == (code.opcode(load) == LoadI) &&
+						   (code.opcode(store) == StoreF) == (code.opcode(load) == LoadF);
+		return sameType && stored.sameSlot(loaded) && loaded.getAddressProducers() != null;
+	}
+	// instructions removed at the load less those added at the store.
+	private int saving(int store, int load, int between) {
+		int removed = accesses.access(load).getAddressProducers().length + (between == 0 ? 1 : 0);
+		return removed - 2;
+	}
+
+
+	////////////////////////////////////////////////////////////////////
+	// rewriting
+
+	private void rewrite(int store, int load, int between) {
+		int[] storeAddress = accesses.access(store).getAddressProducers();
+		insert(store, Duplicate, 0, "");
+		for(int producer: storeAddress) {
+			insert(store, code.opcode(producer), code.rawOperand(producer), code.comment(producer));
+			code.kill(producer);
+		}
+		insert(store, Exchange, 0, "");
+
+		for(int producer: accesses.access(load).getAddressProducers()) {
+			code.kill(producer);
+		}
+		if(between == 0) {
+			code.kill(load);
+		}
+		else {
+			code.replace(load, Exchange);
+		}
+		loadsForwarded++;
+		instructionsSaved += saving(store, load, between);
+	}
+	private void insert(int before, ASMOpcode opcode, long rawOperand, String comment) {
+		insertBefore.add(before);
+		insertOpcodes.add(opcode);
+		insertOperands.add(rawOperand);
+		insertComments.add(comment);
+	}
+	private void applyInsertions() {
+		int count = insertBefore.size();
+		int[] before = new int[count];
+		ASMOpcode[] opcodes = new ASMOpcode[count];
+		long[] operands = new long[count];
+		String[] comments = new String[count];
+		for(int i = 0; i < count; i++) {
+			before[i] = insertBefore.get(i);
+			opcodes[i] = insertOpcodes.get(i);
+			operands[i] = insertOperands.get(i);
+			comments[i] = insertComments.get(i);
+		}
+		code.insertRaw(before, opcodes, operands, comments);
+	}
+}
@@ -0,0 +1,170 @@
+package optimizer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import asmCodeGenerator.codeStorage.InstructionBuffer;
+import static asmCodeGenerator.codeStorage.ASMOpcode.*;
+
+// Removes the code and data that nothing in use refers to.  Starting from
+// the first block of code (the Jump to $$main), a block is in use if
+// control can reach it from a block in use or if a PushD in a block in use
+// or a DataD in data in use names its label.  Data comes in groups: one or
+// more DLabels and the directives up to the next DLabel.  A group is in use
+// if a PushD in code in use or a DataD in data in use names one of its
+// labels, so a program is assumed to reach data only through the labels of
+// the group it lies in.
+//
+// The first group ($eat-location-zero) is always kept, so that no data ever
+// sits at address 0.  Removing other data moves later data down, but every
+// group still in use keeps its labels, and the relative order of everything
+// kept (a trailing label such as the heap's included) is unchanged.
+public class TreeShaker {
+	private int instructionsRemoved = 0;
+	private int dataDirectivesRemoved = 0;
+
+	private InstructionBuffer code;
+	private ControlFlowGraph graph;
+	private List<List<Integer>> groups;
+	private Map<Long, Integer> groupOfLabel;
+	private boolean[] blockInUse;
+	private boolean[] groupInUse;
+	private Deque<BasicBlock> blockWorklist;
+	private Deque<Integer> groupWorklist;
+
+	public int getInstructionsRemoved() {
+		return instructionsRemoved;
+	}
+	public int getDataDirectivesRemoved() {
+		return dataDirectivesRemoved;
+	}
+
+	// returns true if anything was removed.
+	public boolean shake(InstructionBuffer code) {
+		this.code = code;
+		this.graph = ControlFlowGraph.build(code);
+		findGroups(graph.getDataDirectives());
+		findUses();
+		return removeUnused();
+	}
+
+
+	////////////////////////////////////////////////////////////////////
+	// data groups
+
+	private void findGroups(List<Integer> directives) {
+		groups = new ArrayList<List<Integer>>();
+		groupOfLabel = new HashMap<Long, Integer>();
+		List<Integer> current = null;
+		boolean inLabels = false;
+		for(int index: directives) {
+			boolean isLabel = (code.opcode(index) == DLabel);
+			if(current == null || (isLabel && !inLabels)) {
+				current = new ArrayList<Integer>();
+				groups.add(current);
+			}
+			current.add(index);
+			if(isLabel) {
+				groupOfLabel.put(code.rawOperand(index), groups.size() - 1);
+			}
+			inLabels = isLabel;
+		}
+	}
+
+
+	////////////////////////////////////////////////////////////////////
+	// marking
+
+	private void findUses() {
+		blockInUse = new boolean[graph.getBlocks().size()];
+		groupInUse = new boolean[groups.size()];
+		blockWorklist = new ArrayDeque<BasicBlock>();
+		groupWorklist = new ArrayDeque<Integer>();
+
+		if(!graph.getBlocks().isEmpty()) {
+			useBlock(graph.getBlocks().get(0));
+		}
+		if(!groups.isEmpty()) {
+			useGroup(0);
+		}
+		while(!blockWorklist.isEmpty() || !groupWorklist.isEmpty()) {
+			if(!blockWorklist.isEmpty()) {
+				visitBlock(blockWorklist.removeFirst());
+			}
+			else {
+				visitGroup(groupWorklist.removeFirst());
+			}
+		}
+	}
+	private void visitBlock(BasicBlock block) {
+		for(BasicBlock successor: block.getSuccessors()) {
+			useBlock(successor);
+		}
+		for(int i = 0; i < block.size(); i++) {
+			int index = block.instruction(i);
+			if(code.opcode(index) == PushD) {
+				useLabel(code.rawOperand(index));
+			}
+		}
+	}
+	private void visitGroup(int group) {
+		for(int index: groups.get(group)) {
+			if(code.opcode(index) == DataD) {
+				useLabel(code.rawOperand(index));
+			}
+		}
+	}
+	private void useLabel(long label) {
+		Integer group = groupOfLabel.get(label);
+		if(group != null) {
+			useGroup(group);
+		}
+		BasicBlock block = graph.labelledBlock(label);
+		if(block != null) {
+			useBlock(block);
+		}
+	}
+	private void useBlock(BasicBlock block) {
+		if(!blockInUse[block.getNumber()]) {
+			blockInUse[block.getNumber()] = true;
+			blockWorklist.addLast(block);
+		}
+	}
+	private void useGroup(int group) {
+		if(!groupInUse[group]) {
+			groupInUse[group] = true;
+			groupWorklist.addLast(group);
+		}
+	}
+
+
+	////////////////////////////////////////////////////////////////////
+	// removing
+
+	private boolean removeUnused() {
+		boolean changed = false;
+		for(BasicBlock block: graph.getBlocks()) {
+			if(!blockInUse[block.getNumber()]) {
+				for(int i = 0; i < block.size(); i++) {
+					code.kill(block.instruction(i));
+					instructionsRemoved++;
+				}
+				changed = true;
+			}
+		}
+		for(int group = 0; group < groups.size(); group++) {
+			if(!groupInUse[group]) {
+				for(int index: groups.get(group)) {
+					code.kill(index);
+					dataDirectivesRemoved++;
+				}
+				changed = true;
+			}
+		}
+		return changed;
+	}
+}
@@ -0,0 +1,30 @@
+package optimizer;
+
+import asmCodeGenerator.codeStorage.InstructionBuffer;
+
+// kills the code in blocks that control cannot reach.  Data is left alone.
+public class UnreachableCodeEliminator {
+	private int instructionsRemoved = 0;
+
+	public int getInstructionsRemoved() {
+		return instructionsRemoved;
+	}
+
+	// returns true if anything was removed.
+	public boolean eliminate(InstructionBuffer code) {
+		ControlFlowGraph graph = ControlFlowGraph.build(code);
+		boolean[] reachable = graph.reachable();
+		boolean changed = false;
+		for(BasicBlock block: graph.getBlocks()) {
+			if(reachable[block.getNumber()]) {
+				continue;
+			}
+			for(int i = 0; i < block.size(); i++) {
+				code.kill(block.instruction(i));
+				instructionsRemoved++;
+			}
+			changed = true;
+		}
+		return changed;
+	}
+}
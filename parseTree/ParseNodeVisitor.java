@@ -36,6 +36,9 @@ public interface ParseNodeVisitor {
 	void visitEnter(IdentifierNode node);
 	void visitLeave(IdentifierNode node);
 	
+	void visitEnter(TemporaryStoreNode node);
+	void visitLeave(TemporaryStoreNode node);
+	
 
 	// leaf nodes: visitLeaf only
 	void visit(BooleanConstantNode node);
@@ -122,6 +125,12 @@ public interface ParseNodeVisitor {
 		public void visitLeave(IdentifierNode node) {
 			defaultVisitForLeaf(node);
 		}
+		public void visitEnter(TemporaryStoreNode node) {
+			defaultVisitEnter(node);
+		}
+		public void visitLeave(TemporaryStoreNode node) {
+			defaultVisitLeave(node);
+		}
 		
 		public void visit(BooleanConstantNode node) {
 			defaultVisitForLeaf(node);
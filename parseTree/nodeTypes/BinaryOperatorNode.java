@@ -11,6 +11,7 @@ import semanticAnalyzer.signatures.FunctionSignature;
 public class BinaryOperatorNode extends OperatorNode {
 	
 	private FunctionSignature signature = FunctionSignature.nullInstance();
+	private boolean divisorIsNonzero = false;
 	
 	public BinaryOperatorNode(Token token) {
 		super(token);
@@ -31,6 +32,14 @@ public class BinaryOperatorNode extends OperatorNode {
 	public LextantToken lextantToken() {
 		return (LextantToken)token;
 	}
+	
+	// set by the optimizer when the divisor of a division is proven nonzero.
+	public void markDivisorNonzero() {
+		divisorIsNonzero = true;
+	}
+	public boolean divisorIsNonzero() {
+		return divisorIsNonzero;
+	}
 
 	
 	////////////////////////////////////////////////////////////
@@ -0,0 +1,52 @@
+package parseTree.nodeTypes;
+
+import parseTree.ParseNode;
+import parseTree.ParseNodeVisitor;
+import symbolTable.Binding;
+import tokens.Token;
+
+// compiler-generated: evaluates its child, saves a copy in a temporary binding,
+// and leaves the value as its own result.
+public class TemporaryStoreNode extends ParseNode {
+	private Binding temporary;
+
+	public TemporaryStoreNode(Token token) {
+		super(token);
+	}
+	public TemporaryStoreNode(ParseNode node) {
+		super(node);
+	}
+
+	
+////////////////////////////////////////////////////////////
+// attributes
+	
+	public void setTemporary(Binding temporary) {
+		this.temporary = temporary;
+	}
+	public Binding getTemporary() {
+		return temporary;
+	}
+	
+	
+////////////////////////////////////////////////////////////
+// convenience factory
+	
+	public static TemporaryStoreNode withChild(ParseNode expression, Binding temporary) {
+		TemporaryStoreNode node = new TemporaryStoreNode(expression.getToken());
+		node.setType(expression.getType());
+		node.setTemporary(temporary);
+		node.appendChild(expression);
+		return node;
+	}
+	
+	
+///////////////////////////////////////////////////////////
+// boilerplate for visitors
+	
+	public void accept(ParseNodeVisitor visitor) {
+		visitor.visitEnter(this);
+		visitChildren(visitor);
+		visitor.visitLeave(this);
+	}
+}
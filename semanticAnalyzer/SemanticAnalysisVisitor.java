@@ -122,6 +122,7 @@ class SemanticAnalysisVisitor extends ParseNodeVisitor.Default {
 		FunctionSignature signature = FunctionSignatures.signature(operator, childTypes);
 			
 		if (signature.accepts(childTypes)) {
+			node.setSignature(signature);
 			node.setType(signature.resultType());
 		}
 		else {
@@ -5,6 +5,7 @@ package symbolTable;
 public interface MemoryAllocator {
 	public String getBaseAddress();
 	public MemoryLocation allocate(int sizeInBytes);
+	public MemoryLocation allocateTemporary(int sizeInBytes);
 	public void saveState();
 	public void restoreState();
 	public int getMaxAllocatedSize();
@@ -29,6 +29,13 @@ public class NegativeMemoryAllocator implements MemoryAllocator {
 		updateMin();
 		return new MemoryLocation(accessor, baseAddress, currentOffset);
 	}
+	// temporaries go past the low-water mark, so they never share memory with
+	// a binding, even one whose scope has already been left.
+	@Override
+	public MemoryLocation allocateTemporary(int sizeInBytes) {
+		minOffset -= sizeInBytes;
+		return new MemoryLocation(accessor, baseAddress, minOffset);
+	}
 	private void updateMin() {
 		if(minOffset > currentOffset) {
 			minOffset = currentOffset;
@@ -30,6 +30,14 @@ public class PositiveMemoryAllocator implements MemoryAllocator {
 		updateMax();
 		return new MemoryLocation(accessor, baseAddress, offset);
 	}
+	// temporaries go past the high-water mark, so they never share memory with
+	// a binding, even one whose scope has already been left.
+	@Override
+	public MemoryLocation allocateTemporary(int sizeInBytes) {
+		int offset = maxOffset;
+		maxOffset += sizeInBytes;
+		return new MemoryLocation(accessor, baseAddress, offset);
+	}
 	private void updateMax() {
 		if(maxOffset < currentOffset) {
 			maxOffset = currentOffset;
@@ -72,6 +72,11 @@ public class Scope {
 
 		return binding;
 	}
+	// compiler-generated bindings: not installed in the symbol table.
+	public Binding createTemporaryBinding(Type type, String lexeme) {
+		MemoryLocation memoryLocation = allocator.allocateTemporary(type.getSize());
+		return new Binding(type, TextLocation.nullInstance(), memoryLocation, lexeme);
+	}
 	private Binding allocateNewBinding(Type type, TextLocation textLocation, String lexeme) {
 		MemoryLocation memoryLocation = allocator.allocate(type.getSize());
 		return new Binding(type, textLocation, memoryLocation, lexeme);
@@ -0,0 +1,376 @@
+package tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import asmCodeGenerator.codeStorage.ASMCodeFragment;
+import asmCodeGenerator.codeStorage.ASMOpcode;
+import asmCodeGenerator.codeStorage.ASMReader;
+import asmCodeGenerator.codeStorage.ASMWriter;
+import asmCodeGenerator.codeStorage.InstructionBuffer;
+import asmCodeGenerator.runtime.PrintFormatter;
+import static asmCodeGenerator.codeStorage.ASMOpcode.*;
+
+// Runs ASM code as the ASM emulator does, for tests, and returns what it
+// prints.  Memory is the data directives in order, from location 0, followed
+// by HEAP_SIZE bytes of zeros.  Labels of code name the index of the
+// instruction they label, so PushD, DataD, CallV and JumpV work with them.
+//
+// Printf handles the conversions the compilers emit: %d, %x, %X, %c and %s
+// (with flags and widths, as C has them) and a bare %g, printed as
+// PrintFormatter has it.  Anything the emulator would halt on (a value of
+// the wrong type, division by zero, a bad address, running off the end)
+// throws MachineError.
+public class ASMEmulator {
+	private static final int HEAP_SIZE = 1 << 16;
+	private static final int MAX_STEPS = 10000000;
+
+	private List<ASMOpcode> opcodes = new ArrayList<ASMOpcode>();
+	private List<Object> operands = new ArrayList<Object>();
+	private Map<String, Integer> addresses = new HashMap<String, Integer>();
+	private byte[] memory;
+
+	private List<Object> stack = new ArrayList<Object>();
+	private StringBuilder output = new StringBuilder();
+	private int steps = 0;
+
+	public static class MachineError extends RuntimeException {
+		private static final long serialVersionUID = -3160742283536520771L;
+
+		public MachineError(String message) {
+			super(message);
+		}
+	}
+
+	/** What the code prints, run as written to an ASM file and read back. */
+	public static String outputOf(ASMCodeFragment code) throws IOException {
+		File file = File.createTempFile("emulated", ".asm");
+		try {
+			ASMWriter.writeToFile(file.getPath(), code);
+			return new ASMEmulator(ASMReader.read(file.getPath())).run();
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	public ASMEmulator(InstructionBuffer code) {
+		List<byte[]> data = new ArrayList<byte[]>();
+		List<String> dataDLabels = new ArrayList<String>();
+		int dataSize = 0;
+		for(int i = code.nextLive(0); i < code.size(); i = code.nextLive(i + 1)) {
+			ASMOpcode opcode = code.opcode(i);
+			if(opcode == Label) {
+				addresses.put(code.stringOperand(i), opcodes.size());
+			}
+			else if(opcode == DLabel) {
+				addresses.put(code.stringOperand(i), dataSize);
+			}
+			else if(opcode.isDataDirective()) {
+				byte[] bytes = dataBytes(code, i);
+				data.add(bytes);
+				dataDLabels.add(opcode == DataD ? code.stringOperand(i) : null);
+				dataSize += bytes.length;
+			}
+			else {
+				opcodes.add(opcode);
+				operands.add(operand(code, i));
+			}
+		}
+
+		memory = new byte[dataSize + HEAP_SIZE];
+		int location = 0;
+		for(int k = 0; k < data.size(); k++) {
+			byte[] bytes = data.get(k);
+			System.arraycopy(bytes, 0, memory, location, bytes.length);
+			if(dataDLabels.get(k) != null) {
+				storeInt(location, address(dataDLabels.get(k)));
+			}
+			location += bytes.length;
+		}
+	}
+	private static byte[] dataBytes(InstructionBuffer code, int index) {
+		switch(code.opcode(index)) {
+		case DataC:	return new byte[] { (byte)code.intOperand(index) };
+		case DataI:	return intBytes(code.intOperand(index));
+		case DataF:	return longBytes(Double.doubleToRawLongBits(code.floatOperand(index)));
+		case DataZ:	return new byte[code.intOperand(index)];
+		case DataD:	return new byte[ASMOpcode.ASMIntSize];
+		case DataS:
+			String string = code.stringOperand(index);
+			byte[] result = new byte[string.length() + 1];
+			for(int i = 0; i < string.length(); i++) {
+				result[i] = (byte)string.charAt(i);
+			}
+			return result;
+		default:
+			throw new MachineError("not a data directive: " + code.opcode(index));
+		}
+	}
+	private static Object operand(InstructionBuffer code, int index) {
+		ASMOpcode opcode = code.opcode(index);
+		if(opcode.takesInteger()) {
+			return code.intOperand(index);
+		}
+		if(opcode.takesFloat()) {
+			return code.floatOperand(index);
+		}
+		if(opcode.takesString()) {
+			return code.stringOperand(index);
+		}
+		return null;
+	}
+
+
+	////////////////////////////////////////////////////////////////////
+	// running
+
+	public String run() {
+		int pc = 0;
+		while(true) {
+			if(pc < 0 || pc >= opcodes.size()) {
+				throw new MachineError("no instruction at " + pc);
+			}
+			if(++steps > MAX_STEPS) {
+				throw new MachineError("more than " + MAX_STEPS + " steps");
+			}
+			ASMOpcode opcode = opcodes.get(pc);
+			Object operand = operands.get(pc);
+			pc++;
+
+			switch(opcode) {
+			case Add:		{ int b = popInt(); push(popInt() + b);		break; }
+			case Subtract:	{ int b = popInt(); push(popInt() - b);		break; }
+			case Multiply:	{ int b = popInt(); push(popInt() * b);		break; }
+			case Divide:	{ int b = nonzero(popInt()); push(popInt() / b);	break; }
+			case Remainder:	{ int b = nonzero(popInt()); push(popInt() % b);	break; }
+			case Negate:	push(-popInt());							break;
+
+			case FAdd:		{ double b = popFloat(); push(popFloat() + b);	break; }
+			case FSubtract:	{ double b = popFloat(); push(popFloat() - b);	break; }
+			case FMultiply:	{ double b = popFloat(); push(popFloat() * b);	break; }
+			case FDivide:	{ double b = popFloat(); push(popFloat() / b);	break; }
+			case FNegate:	push(-popFloat());								break;
+
+			case And:		{ boolean b = popBoolean(); push(popBoolean() & b);		break; }
+			case Or:		{ boolean b = popBoolean(); push(popBoolean() | b);		break; }
+			case Nand:		{ boolean b = popBoolean(); push(!(popBoolean() & b));	break; }
+			case Nor:		{ boolean b = popBoolean(); push(!(popBoolean() | b));	break; }
+			case Xor:		{ boolean b = popBoolean(); push(popBoolean() ^ b);		break; }
+			case BEqual:	{ boolean b = popBoolean(); push(popBoolean() == b);	break; }
+			case BNegate:	push(!popBoolean());									break;
+
+			case BTAnd:		{ int b = popInt(); push(popInt() & b);		break; }
+			case BTOr:		{ int b = popInt(); push(popInt() | b);		break; }
+			case BTNand:	{ int b = popInt(); push(~(popInt() & b));	break; }
+			case BTNor:		{ int b = popInt(); push(~(popInt() | b));	break; }
+			case BTXor:		{ int b = popInt(); push(popInt() ^ b);		break; }
+			case BTEqual:	{ int b = popInt(); push(~(popInt() ^ b));	break; }
+			case BTNegate:	push(~popInt());							break;
+
+			case ConvertF:	push((double)popInt());		break;
+			case ConvertI:	push((int)popFloat());		break;
+
+			case Duplicate:	push(top());				break;
+			case Exchange:	{ Object b = pop(); Object a = pop(); push(b); push(a);	break; }
+			case Pop:		pop();						break;
+			case PushI:		push((Integer)operand);		break;
+			case PushF:		push((Double)operand);		break;
+			case PushD:		push(address((String)operand));	break;
+			case PushPC:	push(pc);					break;
+			case PopPC:		pc = popInt();				break;
+
+			case LoadC:		push(memory[checked(popInt(), 1)] & 0xff);	break;
+			case LoadI:		push(loadInt(popInt()));					break;
+			case LoadF:		push(Double.longBitsToDouble(loadLong(popInt())));	break;
+			case StoreC:	{ int b = popInt(); memory[checked(popInt(), 1)] = (byte)b;	break; }
+			case StoreI:	{ int b = popInt(); storeInt(popInt(), b);					break; }
+			case StoreF:	{ double b = popFloat(); storeLong(popInt(), Double.doubleToRawLongBits(b));	break; }
+			case Memtop:	push(memory.length);		break;
+
+			case Jump:		pc = address((String)operand);	break;
+			case JumpFalse:	if(popInt() == 0)	{ pc = address((String)operand); }	break;
+			case JumpTrue:	if(popInt() != 0)	{ pc = address((String)operand); }	break;
+			case JumpNeg:	if(popInt() < 0)	{ pc = address((String)operand); }	break;
+			case JumpPos:	if(popInt() > 0)	{ pc = address((String)operand); }	break;
+			case JumpFNeg:	if(popFloat() < 0)	{ pc = address((String)operand); }	break;
+			case JumpFPos:	if(popFloat() > 0)	{ pc = address((String)operand); }	break;
+			case JumpFZero:	if(popFloat() == 0)	{ pc = address((String)operand); }	break;
+			case Call:		push(pc); pc = address((String)operand);	break;
+			case JumpV:		pc = popInt();								break;
+			case CallV:		{ int target = popInt(); push(pc); pc = target;	break; }
+			case Return:	pc = popInt();				break;
+			case Halt:		return output.toString();
+
+			case Printf:	printf();					break;
+			case PStack:								break;
+			case Nop:									break;
+			default:
+				throw new MachineError("cannot execute " + opcode);
+			}
+		}
+	}
+	public int getSteps() {
+		return steps;
+	}
+
+	private int address(String label) {
+		Integer result = addresses.get(label);
+		if(result == null) {
+			throw new MachineError("undefined label " + label);
+		}
+		return result;
+	}
+	private static int nonzero(int divisor) {
+		if(divisor == 0) {
+			throw new MachineError("integer division by zero");
+		}
+		return divisor;
+	}
+
+
+	////////////////////////////////////////////////////////////////////
+	// the accumulator
+
+	private void push(Object value) {
+		stack.add(value);
+	}
+	private void push(boolean value) {
+		stack.add(value ? 1 : 0);
+	}
+	private Object pop() {
+		if(stack.isEmpty()) {
+			throw new MachineError("pop of an empty accumulator");
+		}
+		return stack.remove(stack.size() - 1);
+	}
+	private Object top() {
+		Object result = pop();
+		push(result);
+		return result;
+	}
+	private int popInt() {
+		Object value = pop();
+		if(!(value instanceof Integer)) {
+			throw new MachineError("integer expected, found " + value);
+		}
+		return (Integer)value;
+	}
+	private double popFloat() {
+		Object value = pop();
+		if(!(value instanceof Double)) {
+			throw new MachineError("floating expected, found " + value);
+		}
+		return (Double)value;
+	}
+	private boolean popBoolean() {
+		return popInt() != 0;
+	}
+
+
+	////////////////////////////////////////////////////////////////////
+	// memory, little-endian
+
+	private int checked(int location, int size) {
+		if(location < 0 || location + size > memory.length) {
+			throw new MachineError("bad address " + location);
+		}
+		return location;
+	}
+	private int loadInt(int location) {
+		checked(location, 4);
+		int result = 0;
+		for(int i = 3; i >= 0; i--) {
+			result = (result << 8) | (memory[location + i] & 0xff);
+		}
+		return result;
+	}
+	private long loadLong(int location) {
+		checked(location, 8);
+		long result = 0;
+		for(int i = 7; i >= 0; i--) {
+			result = (result << 8) | (memory[location + i] & 0xff);
+		}
+		return result;
+	}
+	private void storeInt(int location, int value) {
+		System.arraycopy(intBytes(value), 0, memory, checked(location, 4), 4);
+	}
+	private void storeLong(int location, long value) {
+		System.arraycopy(longBytes(value), 0, memory, checked(location, 8), 8);
+	}
+	private static byte[] intBytes(int value) {
+		byte[] result = new byte[4];
+		for(int i = 0; i < 4; i++) {
+			result[i] = (byte)(value >> (8 * i));
+		}
+		return result;
+	}
+	private static byte[] longBytes(long value) {
+		byte[] result = new byte[8];
+		for(int i = 0; i < 8; i++) {
+			result[i] = (byte)(value >> (8 * i));
+		}
+		return result;
+	}
+	private String string(int location) {
+		StringBuilder result = new StringBuilder();
+		for(int i = location; memory[checked(i, 1)] != 0; i++) {
+			result.append((char)(memory[i] & 0xff));
+		}
+		return result.toString();
+	}
+
+
+	////////////////////////////////////////////////////////////////////
+	// printf
+
+	private void printf() {
+		String format = string(popInt());
+		for(int i = 0; i < format.length(); i++) {
+			char c = format.charAt(i);
+			if(c != '%') {
+				output.append(c);
+				continue;
+			}
+			int start = i;
+			do {
+				i++;
+			} while(i < format.length() && "-+ #0123456789.".indexOf(format.charAt(i)) >= 0);
+			if(i == format.length()) {
+				throw new MachineError("unfinished conversion in " + format);
+			}
+			String specification = format.substring(start, i + 1);
+			output.append(converted(specification, format.charAt(i)));
+		}
+	}
+	private String converted(String specification, char conversion) {
+		switch(conversion) {
+		case '%':	return "%";
+		case 'd':
+		case 'x':
+		case 'X':	return String.format(specification, popInt());
+		case 'c':	return String.format(specification, (char)(popInt() & 0xff));
+		case 's':	return String.format(specification, string(popInt()));
+		case 'g':
+			if(specification.equals("%g")) {
+				return floating(popFloat());
+			}
+		default:
+			throw new MachineError("unsupported conversion " + specification);
+		}
+	}
+	private static String floating(double value) {
+		if(Double.isNaN(value)) {
+			return "nan";
+		}
+		if(Double.isInfinite(value)) {
+			return value > 0 ? "inf" : "-inf";
+		}
+		return PrintFormatter.floating(value);
+	}
+}